@@ -0,0 +1,40 @@
+package com.my.project;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行性能测试，参数与JMH命令行相同，未指定-rf时结果以JSON格式保存到jmh-result.json
+ *
+ * java -jar benchmark/target/benchmarks.jar [regexp] [-p protocol=ftp] [-rff result.json]
+ */
+public class BenchmarkMain {
+
+	/** 默认的结果文件 */
+	public static final String RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if(cmd.shouldHelp()) {
+			cmd.showHelp();
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+		if(!cmd.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+			if(!cmd.getResult().hasValue()) {
+				builder.result(RESULT_FILE);
+			}
+		}
+		Runner runner = new Runner(builder.build());
+		if(cmd.shouldList()) {
+			runner.list();
+			return;
+		}
+		runner.run();
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+
+/**
+ * 性能测试使用的内嵌FTP/SFTP服务，每轮测试(trial)启动一次，服务根目录和本地目录为临时目录，
+ * 测试数据直接在服务根目录下创建，不经过客户端
+ */
+@State(Scope.Benchmark)
+public class BenchmarkServer {
+
+	public static final String HOSTNAME = "localhost";
+	public static final String USERNAME = "username";
+	public static final String PASSWORD = "password";
+	public static final int TIMEOUT = 60 * 1000;
+
+	/** 协议类型 */
+	@Param({ "ftp", "sftp" })
+	public String protocol;
+
+	/** 服务根目录 */
+	protected File serverRoot;
+	/** 本地根目录 */
+	protected File localRoot;
+
+	private Closeable server;
+	private int port;
+
+	@Setup(Level.Trial)
+	public void startServer() throws IOException {
+		this.serverRoot = Files.createTempDirectory("hello-ftp-server").toFile();
+		this.localRoot = Files.createTempDirectory("hello-ftp-local").toFile();
+		if("ftp".equals(protocol)) {
+			EmbeddedFtpServer ftp = new EmbeddedFtpServer(HOSTNAME, USERNAME, PASSWORD, serverRoot);
+			ftp.start();
+			this.server = ftp;
+			this.port = ftp.getPort();
+		} else if("sftp".equals(protocol)) {
+			EmbeddedSftpServer sftp = new EmbeddedSftpServer(USERNAME, PASSWORD, serverRoot);
+			sftp.start();
+			this.server = sftp;
+			this.port = sftp.getPort();
+		} else {
+			throw new IllegalArgumentException("unsupported protocol: " + protocol);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void stopServer() throws IOException {
+		if(this.server != null) {
+			this.server.close();
+			this.server = null;
+		}
+		delete(serverRoot);
+		delete(localRoot);
+	}
+
+	/**
+	 * 建立一个新连接（包括登录）
+	 */
+	public RemoteClient<?> newClient() throws IOException {
+		return newClient(TransferCompression.getDefaultLevel());
+	}
+
+	/**
+	 * 建立一个指定压缩级别的新连接（包括登录）
+	 * @param compression 压缩级别，0为不压缩
+	 */
+	public RemoteClient<?> newClient(int compression) throws IOException {
+		if("ftp".equals(protocol)) {
+			return new FtpClient(HOSTNAME, port, USERNAME, PASSWORD, TIMEOUT, null, null, compression);
+		}
+		try {
+			return new SftpClient(HOSTNAME, port, USERNAME, PASSWORD, null, null, TIMEOUT, null, null, compression);
+		} catch (JSchException | SftpException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * 在服务根目录下创建指定大小的文件
+	 * @param path 相对于服务根目录的路径
+	 * @param size 文件大小
+	 */
+	public File remoteFile(String path, long size) throws IOException {
+		return createFile(new File(serverRoot, path), size);
+	}
+
+	/**
+	 * 在本地根目录下创建指定大小的文件
+	 * @param path 相对于本地根目录的路径
+	 * @param size 文件大小
+	 */
+	public File localFile(String path, long size) throws IOException {
+		return createFile(new File(localRoot, path), size);
+	}
+
+	/**
+	 * 创建目录树：每层breadth个子目录，共depth层，每个目录下files个大小为size的文件
+	 * @param root 根目录
+	 */
+	public static void createTree(File root, int breadth, int depth, int files, long size) throws IOException {
+		root.mkdirs();
+		for(int i = 0; i < files; i++) {
+			createFile(new File(root, "file" + i + ".dat"), size);
+		}
+		if(depth > 0) {
+			for(int i = 0; i < breadth; i++) {
+				createTree(new File(root, "dir" + i), breadth, depth - 1, files, size);
+			}
+		}
+	}
+
+	/**
+	 * 递归删除文件或目录
+	 */
+	public static void delete(File file) throws IOException {
+		if(file == null || !file.exists()) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(file.toPath())) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private static File createFile(File file, long size) throws IOException {
+		file.getParentFile().mkdirs();
+		// 随机内容，避免传输压缩影响结果
+		Random random = new Random(size);
+		byte[] buffer = new byte[(int) Math.min(size, 64 * 1024)];
+		try (OutputStream output = new FileOutputStream(file)) {
+			for(long written = 0; written < size; written += buffer.length) {
+				random.nextBytes(buffer);
+				output.write(buffer, 0, (int) Math.min(buffer.length, size - written));
+			}
+		}
+		return file;
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.my.project;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 不同压缩级别下的上传下载速度，结果中的megabytes为未压缩数据的MB/s
+ *
+ * 本机回环网络没有带宽限制，结果反映的是压缩的CPU开销：
+ * 链路带宽低于某一级别的速度且数据压缩比较高时，启用该级别的压缩可以缩短传输时间
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class CompressionBenchmark extends BenchmarkServer {
+
+	/** 压缩级别，0为不压缩 */
+	@Param({ "0", "1", "6" })
+	public int level;
+
+	/** 数据类型：csv为文本数据（压缩比约10:1），random为不可压缩的随机数据 */
+	@Param({ "csv", "random" })
+	public String data;
+
+	/** 文件大小(MB) */
+	@Param({ "16" })
+	public int fileMegabytes;
+
+	private RemoteClient<?> client;
+	private File upload;
+	private File download;
+
+	/**
+	 * 传输的数据量，按秒统计即为MB/s
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Transferred {
+
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		long bytes = fileMegabytes * 1024L * 1024L;
+		if("csv".equals(data)) {
+			csvFile(new File(serverRoot, "data.dat"), bytes);
+			this.upload = csvFile(new File(localRoot, "upload/data.dat"), bytes);
+		} else {
+			remoteFile("data.dat", bytes);
+			this.upload = localFile("upload/data.dat", bytes);
+		}
+		this.download = new File(localRoot, "data.dat");
+		this.client = newClient(level);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.client.close();
+	}
+
+	@Benchmark
+	public void get(Transferred transferred) throws IOException {
+		client.get("/data.dat", download);
+		transferred.megabytes += fileMegabytes;
+	}
+
+	@Benchmark
+	public void put(Transferred transferred) throws IOException {
+		client.put(upload, "/upload");
+		transferred.megabytes += fileMegabytes;
+	}
+
+	/**
+	 * 创建类似访问日志的CSV文件
+	 * @param file 文件
+	 * @param size 文件大小（近似值）
+	 */
+	private static File csvFile(File file, long size) throws IOException {
+		file.getParentFile().mkdirs();
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			long written = 0L;
+			for(int i = 0; written < size; i++) {
+				String line = i + ",2020-01-02T03:04:05." + (i % 1000) + "Z,host-" + (i % 16) + ",GET,/api/v1/items/"
+						+ (i % 5000) + "," + (i % 7 == 0 ? 404 : 200) + "," + (i * 31 % 65536) + "\n";
+				writer.write(line);
+				written += line.length();
+			}
+		}
+		return file;
+	}
+
+}
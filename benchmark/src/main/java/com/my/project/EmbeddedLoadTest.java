@@ -0,0 +1,48 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * 对内嵌的FTP/SFTP服务运行压力测试，参数与{@link LoadTest}相同（不需要host/port/user/pass）
+ *
+ * java -cp benchmark/target/benchmarks.jar com.my.project.EmbeddedLoadTest --type=SFTP --clients=200
+ */
+public class EmbeddedLoadTest {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = LoadTest.parse(args);
+		String type = options.getOrDefault("type", "FTP").toUpperCase();
+		int clients = Integer.parseInt(options.getOrDefault("clients", "10"));
+		File root = Files.createTempDirectory("hello-ftp-server").toFile();
+		Closeable server;
+		int port;
+		if("FTP".equals(type)) {
+			EmbeddedFtpServer ftp = new EmbeddedFtpServer(BenchmarkServer.HOSTNAME, BenchmarkServer.USERNAME, BenchmarkServer.PASSWORD, root);
+			// 每个客户端一个控制连接，并预留断线重连的余量
+			ftp.setMaxLogins(clients * 2);
+			ftp.start();
+			server = ftp;
+			port = ftp.getPort();
+		} else {
+			EmbeddedSftpServer sftp = new EmbeddedSftpServer(BenchmarkServer.USERNAME, BenchmarkServer.PASSWORD, root);
+			sftp.start();
+			server = sftp;
+			port = sftp.getPort();
+		}
+		options.put("host", BenchmarkServer.HOSTNAME);
+		options.put("port", String.valueOf(port));
+		options.put("user", BenchmarkServer.USERNAME);
+		options.put("pass", BenchmarkServer.PASSWORD);
+		try {
+			new LoadTest(options).run(System.out);
+		} finally {
+			server.close();
+			BenchmarkServer.delete(root);
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 大文件上传下载的速度，结果中的megabytes为MB/s
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class LargeFileBenchmark extends BenchmarkServer {
+
+	/** 文件大小(MB) */
+	@Param({ "64" })
+	public int fileMegabytes;
+
+	private RemoteClient<?> client;
+	private File upload;
+	private File download;
+
+	/**
+	 * 传输的数据量，按秒统计即为MB/s
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Transferred {
+
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		long bytes = fileMegabytes * 1024L * 1024L;
+		remoteFile("large.dat", bytes);
+		this.upload = localFile("upload/large.dat", bytes);
+		this.download = new File(localRoot, "large.dat");
+		this.client = newClient();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.client.close();
+	}
+
+	@Benchmark
+	public void get(Transferred transferred) throws IOException {
+		client.get("/large.dat", download);
+		transferred.megabytes += fileMegabytes;
+	}
+
+	@Benchmark
+	public void put(Transferred transferred) throws IOException {
+		client.put(upload, "/upload");
+		transferred.megabytes += fileMegabytes;
+	}
+
+}
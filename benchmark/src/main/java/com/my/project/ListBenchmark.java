@@ -0,0 +1,64 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 列出包含不同数量文件的目录
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ListBenchmark extends BenchmarkServer {
+
+	/** 目录下的文件数 */
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int entries;
+
+	private RemoteClient<?> client;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		File dir = new File(serverRoot, "list");
+		dir.mkdirs();
+		for(int i = 0; i < entries; i++) {
+			new File(dir, "file" + i + ".txt").createNewFile();
+		}
+		this.client = newClient();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.client.close();
+	}
+
+	@Benchmark
+	public List<?> ls() throws IOException {
+		return client.ls("/list");
+	}
+
+	@Benchmark
+	public long lsStream() throws IOException {
+		try (Stream<?> stream = client.lsStream("/list", true)) {
+			return stream.count();
+		}
+	}
+
+}
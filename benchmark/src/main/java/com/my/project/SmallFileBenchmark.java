@@ -0,0 +1,60 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 小文件上传下载的吞吐量(ops/s)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmallFileBenchmark extends BenchmarkServer {
+
+	/** 文件大小(byte) */
+	@Param({ "1024" })
+	public int size;
+
+	private RemoteClient<?> client;
+	private File upload;
+	private File download;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		remoteFile("small.dat", size);
+		this.upload = localFile("upload/small.dat", size);
+		this.download = new File(localRoot, "small.dat");
+		this.client = newClient();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.client.close();
+	}
+
+	@Benchmark
+	public void get() throws IOException {
+		client.get("/small.dat", download);
+	}
+
+	@Benchmark
+	public void put() throws IOException {
+		client.put(upload, "/upload");
+	}
+
+}
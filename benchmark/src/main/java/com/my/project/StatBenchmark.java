@@ -0,0 +1,55 @@
+package com.my.project;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 查询文件元数据（未启用元数据缓存）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatBenchmark extends BenchmarkServer {
+
+	private RemoteClient<?> client;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		remoteFile("a/b/c/hello.txt", 1024);
+		this.client = newClient();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.client.close();
+	}
+
+	@Benchmark
+	public Object stat() {
+		return client.stat("/a/b/c/hello.txt");
+	}
+
+	@Benchmark
+	public boolean exists() {
+		return client.exists("/a/b/c/hello.txt");
+	}
+
+	@Benchmark
+	public boolean notExists() {
+		return client.exists("/a/b/c/no.txt");
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 上传下载目录树：每层breadth个子目录，共depth层，每个目录下files个文件
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TreeBenchmark extends BenchmarkServer {
+
+	@Param({ "4" })
+	public int breadth;
+
+	@Param({ "3" })
+	public int depth;
+
+	@Param({ "10" })
+	public int files;
+
+	/** 文件大小(byte) */
+	@Param({ "4096" })
+	public int size;
+
+	/** 并行度（连接数） */
+	@Param({ "1", "4" })
+	public int parallelism;
+
+	private RemoteClient<?> client;
+	private File tree;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		createTree(new File(serverRoot, "tree"), breadth, depth, files, size);
+		this.tree = new File(localRoot, "tree");
+		createTree(tree, breadth, depth, files, size);
+		this.client = newClient();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.client.close();
+	}
+
+	/**
+	 * 每次下载到空目录，每次上传到不存在的远程目录
+	 */
+	@Setup(Level.Invocation)
+	public void clean() throws IOException {
+		delete(new File(localRoot, "mget"));
+		delete(new File(serverRoot, "mput"));
+	}
+
+	@Benchmark
+	public void mget() throws IOException {
+		client.mget("/tree", new File(localRoot, "mget"), parallelism);
+	}
+
+	@Benchmark
+	public void mput() throws IOException {
+		client.mput(tree, "/mput", parallelism);
+	}
+
+}
@@ -0,0 +1,237 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 返回CompletableFuture的异步操作
+ *
+ * 每个操作在executor中执行，执行时从{@link ConnectionGroup}取得一个空闲连接，没有空闲连接时创建新连接，
+ * 连接在关闭时关闭（归还）；client来自{@link RemoteClientPool}时连接从连接池借出，
+ * 同时执行的远程操作不超过连接池中空闲的名额，其余操作等待已有的连接空闲。
+ *
+ * 协议操作是阻塞的，等待中的操作占用executor的线程；
+ * Java 21及以上版本通过系统属性hello-ftp.virtual-threads=true使用虚拟线程，大量等待中的操作不再占用平台线程，
+ * 连接数仍不超过maxConnections，其余操作等待已有的连接空闲
+ */
+public class AsyncRemoteClient<T> implements Closeable {
+
+	/** 使用虚拟线程的系统属性 */
+	public static final String VIRTUAL_THREADS_PROPERTY = "hello-ftp.virtual-threads";
+
+	/** 使用外部executor且未指定最大连接数时的最大连接数 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+
+	public static final Logger logger = LoggerFactory.getLogger(AsyncRemoteClient.class);
+
+	private static final AtomicInteger threadNumber = new AtomicInteger(0);
+
+	/** 执行远程操作的连接 */
+	private final ConnectionGroup<T> connections;
+	private final Executor executor;
+	/** 自行创建的executor，关闭时一并关闭 */
+	private final ExecutorService ownedExecutor;
+
+	/**
+	 * 使用{@link #newExecutor(int)}创建的executor，最大连接数与线程数相同
+	 * @param client 用于复制连接的连接，建议使用从连接池借出的连接
+	 * @param threads 不使用虚拟线程时的线程数
+	 */
+	public AsyncRemoteClient(RemoteClient<T> client, int threads) {
+		this(client, threads, threads);
+	}
+
+	/**
+	 * 使用{@link #newExecutor(int)}创建的executor
+	 * @param client 用于复制连接的连接，建议使用从连接池借出的连接
+	 * @param threads 不使用虚拟线程时的线程数
+	 * @param maxConnections 最大连接数（不包括client）
+	 */
+	public AsyncRemoteClient(RemoteClient<T> client, int threads, int maxConnections) {
+		this(client, newExecutor(threads), true, maxConnections);
+	}
+
+	/**
+	 * 最大连接数为{@link #DEFAULT_MAX_CONNECTIONS}
+	 * @param client 用于复制连接的连接，建议使用从连接池借出的连接
+	 * @param executor 执行远程操作，关闭时不关闭executor
+	 */
+	public AsyncRemoteClient(RemoteClient<T> client, Executor executor) {
+		this(client, executor, DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * @param client 用于复制连接的连接，建议使用从连接池借出的连接
+	 * @param executor 执行远程操作，关闭时不关闭executor
+	 * @param maxConnections 最大连接数（不包括client）
+	 */
+	public AsyncRemoteClient(RemoteClient<T> client, Executor executor, int maxConnections) {
+		this(client, executor, false, maxConnections);
+	}
+
+	private AsyncRemoteClient(RemoteClient<T> client, Executor executor, boolean owned, int maxConnections) {
+		RemoteClient.assertNotNull(client, "client can not be null");
+		RemoteClient.assertNotNull(executor, "executor can not be null");
+		this.connections = new ConnectionGroup<T>(client, maxConnections, false);
+		this.executor = executor;
+		this.ownedExecutor = owned ? (ExecutorService) executor : null;
+	}
+
+	/**
+	 * 列出目录下的文件，不包括隐藏文件
+	 * @param remotePath 远程路径
+	 */
+	public CompletableFuture<List<T>> ls(String remotePath) {
+		return submit(c -> c.ls(remotePath));
+	}
+
+	/**
+	 * 获取文件元数据，文件不存在时结果为null
+	 * @param remotePath 远程路径
+	 */
+	public CompletableFuture<T> stat(String remotePath) {
+		return submit(c -> c.stat(remotePath));
+	}
+
+	/**
+	 * 下载文件
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
+	 */
+	public CompletableFuture<Void> get(String remotePath, File localFile) {
+		return run(c -> c.get(remotePath, localFile));
+	}
+
+	/**
+	 * 上传文件
+	 * @param localFile 本地文件
+	 * @param remotePath 远程目录
+	 */
+	public CompletableFuture<Void> put(File localFile, String remotePath) {
+		return run(c -> c.put(localFile, remotePath));
+	}
+
+	/**
+	 * 下载目录
+	 * @param remotePath 远程路径
+	 * @param localPath 本地目录
+	 */
+	public CompletableFuture<Void> mget(String remotePath, File localPath) {
+		return run(c -> c.mget(remotePath, localPath));
+	}
+
+	/**
+	 * 上传目录
+	 * @param localPath 本地路径
+	 * @param remotePath 远程目录
+	 */
+	public CompletableFuture<Void> mput(File localPath, String remotePath) {
+		return run(c -> c.mput(localPath, remotePath));
+	}
+
+	/**
+	 * 删除文件
+	 * @param remotePath 远程文件路径
+	 */
+	public CompletableFuture<Void> rm(String remotePath) {
+		return run(c -> c.rm(remotePath));
+	}
+
+	/**
+	 * 在executor中取得一个连接执行操作，操作抛出的异常包装为CompletionException
+	 * @param call 远程操作
+	 */
+	public <R> CompletableFuture<R> submit(RemoteCall<T, R> call) {
+		RemoteClient.assertNotNull(call, "call can not be null");
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				RemoteClient<T> c = connections.acquire();
+				try {
+					return call.call(c);
+				} finally {
+					connections.release(c);
+				}
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	private CompletableFuture<Void> run(ParallelExecutor.RemoteAction<T> action) {
+		return submit(c -> {
+			action.run(c);
+			return null;
+		});
+	}
+
+	/**
+	 * 关闭自行创建的executor并等待已提交的操作结束，然后关闭（归还）新建的连接，不关闭client；
+	 * 使用外部的executor时应在已提交的操作结束后关闭
+	 */
+	@Override
+	public void close() throws IOException {
+		if(ownedExecutor != null) {
+			ownedExecutor.shutdown();
+			try {
+				ownedExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		connections.close();
+	}
+
+	/**
+	 * 创建执行远程操作的executor：启用虚拟线程且运行在Java 21及以上版本时每个操作一个虚拟线程，
+	 * 否则使用固定数量的守护线程
+	 * @param threads 不使用虚拟线程时的线程数
+	 */
+	public static ExecutorService newExecutor(int threads) {
+		RemoteClient.assertTrue(threads > 0, "threads must be greater than 0");
+		if(Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+			ExecutorService executor = newVirtualThreadExecutor();
+			if(executor != null) {
+				return executor;
+			}
+		}
+		return Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "remote-client-async-" + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * 通过反射创建虚拟线程executor，保持Java 8编译
+	 * @return 运行时不支持虚拟线程时返回null
+	 */
+	static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.warn("virtual threads are not supported by java {}", System.getProperty("java.version"));
+			return null;
+		}
+	}
+
+	/**
+	 * 有返回值的远程操作
+	 */
+	@FunctionalInterface
+	public interface RemoteCall<T, R> { R call(RemoteClient<T> client) throws IOException; }
+
+}
@@ -0,0 +1,119 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 由多个线程共用的一组连接，连接通过{@link RemoteClient#duplicate()}创建，关闭时关闭（归还）
+ *
+ * 连接来自连接池时，第一个新连接按连接池的最大等待时间等待，之后的连接只在连接池有空闲名额时创建，
+ * 否则等待已有的连接空闲：调用方持有的连接占用了名额时，以较少的连接执行而不是等待超时后失败
+ */
+class ConnectionGroup<T> implements Closeable {
+
+	public static final Logger logger = LoggerFactory.getLogger(ConnectionGroup.class);
+
+	/** 等待空闲连接时重新尝试创建连接的间隔(ms) */
+	private static final long RETRY_INTERVAL = 100L;
+
+	/** 用于复制连接的连接 */
+	private final RemoteClient<T> client;
+	/** 最大连接数 */
+	private final int max;
+	/** 是否把client作为第一个连接使用 */
+	private final boolean shareClient;
+	/** 空闲连接 */
+	private final BlockingQueue<RemoteClient<T>> idle = new LinkedBlockingQueue<RemoteClient<T>>();
+	/** 新建的连接，关闭时关闭 */
+	private final List<RemoteClient<T>> connections = new CopyOnWriteArrayList<RemoteClient<T>>();
+	/** 已创建的连接数（包括共用的client） */
+	private final AtomicInteger created = new AtomicInteger(0);
+
+	/**
+	 * @param client 用于复制连接的连接
+	 * @param max 最大连接数
+	 * @param shareClient 是否把client作为第一个连接使用
+	 */
+	ConnectionGroup(RemoteClient<T> client, int max, boolean shareClient) {
+		RemoteClient.assertTrue(max > 0, "max connections must be greater than 0");
+		this.client = client;
+		this.max = max;
+		this.shareClient = shareClient;
+	}
+
+	/**
+	 * 取得一个空闲连接，连接数未达到上限时创建新连接
+	 */
+	RemoteClient<T> acquire() throws IOException {
+		for(;;) {
+			RemoteClient<T> c = idle.poll();
+			if(c != null) {
+				return c;
+			}
+			int n = created.get();
+			if(n < max) {
+				if(!created.compareAndSet(n, n + 1)) {
+					continue;
+				}
+				if(n == 0 && shareClient) {
+					return client;
+				}
+				try {
+					c = n == 0 ? client.duplicate() : client.tryDuplicate();
+				} catch (IOException | RuntimeException e) {
+					created.decrementAndGet();
+					throw e;
+				}
+				if(c != null) {
+					connections.add(c);
+					return c;
+				}
+				created.decrementAndGet();
+			}
+			try {
+				c = idle.poll(RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(e.getMessage());
+			}
+			if(c != null) {
+				return c;
+			}
+		}
+	}
+
+	/**
+	 * 归还连接
+	 */
+	void release(RemoteClient<T> c) {
+		idle.offer(c);
+	}
+
+	/**
+	 * 关闭新建的连接（共用的client不关闭）
+	 */
+	@Override
+	public void close() {
+		for(RemoteClient<T> c : connections) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				logger.warn(e.getMessage());
+			}
+		}
+		connections.clear();
+		idle.clear();
+		created.set(0);
+	}
+
+}
@@ -1,17 +1,44 @@
 package com.my.project;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.net.Socket;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.net.SocketFactory;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.net.MalformedServerReplyException;
@@ -19,16 +46,40 @@ import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPCmd;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
 import org.apache.commons.net.ftp.FTPFileFilter;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
 import org.apache.commons.net.ftp.parser.MLSxEntryParser;
 
+import com.my.project.TransferMetrics.Operation;
+
 public class FtpClient extends RemoteClient<FTPFile> {
 
-	private FTPClient client;
+	/** NIO传输每次调用transferTo/transferFrom的最大长度 */
+	private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+	/** MODE Z压缩/解压的缓冲区大小（默认的512字节会产生大量很小的读写） */
+	private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+
+	private InnerFtpClient client;
+	/** 数据连接是否基于SocketChannel（可以使用FileChannel.transferTo/transferFrom传输） */
+	private boolean channelTransfer;
+	/** 计算文件摘要的命令，还没有查询FEAT时为null，服务器不支持时为空字符串 */
+	private String hashCommand;
+	/** 摘要命令使用的算法 */
+	private String hashAlgorithm;
+
+	private final String hostname;
+	private final Integer port;
+	private final String username;
+	private final String password;
+	private final int timeout;
+	private final String proxyHost;
+	private final Integer proxyPort;
+	private final int compression;
 
 	/**
-	 * 创建一个FTP连接
+	 * 创建一个FTP连接，压缩级别使用{@link TransferCompression#getDefaultLevel()}
 	 * @param hostname FTP主机
 	 * @param port FTP端口
 	 * @param username FTP用户名
@@ -38,6 +89,34 @@ public class FtpClient extends RemoteClient<FTPFile> {
 	 * @param proxyPort SOCK5代理端口
 	 */
 	public FtpClient(String hostname, Integer port, String username, String password, int timeout, String proxyHost, Integer proxyPort) throws SocketException, IOException {
+		this(hostname, port, username, password, timeout, proxyHost, proxyPort, TransferCompression.getDefaultLevel());
+	}
+
+	/**
+	 * 创建一个FTP连接
+	 * @param hostname FTP主机
+	 * @param port FTP端口
+	 * @param username FTP用户名
+	 * @param password FTP用户密码
+	 * @param timeout 连接超时时间(ms)
+	 * @param proxyHost SOCK5代理主机
+	 * @param proxyPort SOCK5代理端口
+	 * @param compression MODE Z压缩级别(0-9)，0表示不压缩，服务器不支持MODE Z时不压缩
+	 */
+	public FtpClient(String hostname, Integer port, String username, String password, int timeout, String proxyHost, Integer proxyPort, int compression) throws SocketException, IOException {
+		this.hostname = hostname;
+		this.port = port;
+		this.username = username;
+		this.password = password;
+		this.timeout = timeout;
+		this.proxyHost = proxyHost;
+		this.proxyPort = proxyPort;
+		this.compression = TransferCompression.checkLevel(compression);
+		setMetrics(TransferMetrics.of("FTP", hostname, port));
+		if(TransferTuning.isEnabled()) {
+			setTuning(TransferTuning.of("FTP", hostname, port));
+		}
+		long start = System.nanoTime();
 		this.client = new InnerFtpClient();
 		this.client.setListHiddenFiles(true);
 		this.client.setConnectTimeout(timeout);
@@ -47,65 +126,340 @@ public class FtpClient extends RemoteClient<FTPFile> {
 			this.client.setProxy(new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(proxyHost, proxyPort)));
 		}
 		this.client.connect(hostname, port);
+		// 控制连接建立后再替换SocketFactory，之后的被动模式数据连接基于SocketChannel，使用代理时仍使用普通Socket
+		this.channelTransfer = this.client.getProxy() == null;
+		if(this.channelTransfer) {
+			this.client.setSocketFactory(new ChannelSocketFactory());
+		}
 		exec(() -> this.client.login(username, password));
 		exec(() -> this.client.setFileType(FTP.BINARY_FILE_TYPE));
-		this.client.setBufferSize(100 * 1024);
+		if(compression > TransferCompression.NONE && this.client.hasFeature("MODE", "Z")) {
+			exec(() -> FTPReply.isPositiveCompletion(this.client.sendCommand(FTPCmd.MODE, "Z")));
+			this.client.deflateLevel = compression;
+			// 压缩后的数据需要经过Inflater/Deflater，不能直接在FileChannel和SocketChannel之间传输
+			this.channelTransfer = false;
+		}
+		this.client.setBufferSize(TransferTuning.DEFAULT_BUFFER_SIZE);
+		this.tune();
 		this.client.enterLocalPassiveMode();
 		exec(() -> this.client.changeWorkingDirectory("/"));
+		getMetrics().connected(start);
+		if(getTuning() != null) {
+			long rtt = System.nanoTime();
+			this.client.sendNoOp();
+			getTuning().roundTrip(System.nanoTime() - rtt);
+		}
+	}
+
+	/**
+	 * 是否使用MODE Z压缩传输（指定了压缩级别并且服务器支持）
+	 */
+	public boolean isCompressed() {
+		return client.deflateLevel > 0;
 	}
 
 	@Override
 	public List<FTPFile> ls(String remotePath, boolean filterHiddenFile) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
 
-		if(!this.exists(remotePath)) {
+		FTPFile entry = this.stat(remotePath);
+		if(entry == null) {
 			return Collections.emptyList();
 		}
 
 		List<FTPFile> list = new ArrayList<FTPFile>();
+		List<FTPFile> files = isDir(entry) ? this.doLs(remotePath) : cachedList(remotePath, () -> this.listAll(remotePath));
+		for(FTPFile ftpFile : files) {
+			if(!filterHiddenFile || !ftpFile.getName().startsWith(".")) {
+				list.add(ftpFile);
+			}
+		}
+		return list;
+	}
+
+	@Override
+	protected RemoteIterator<FTPFile> iterate(String remotePath) throws IOException {
+		return new ListIterator(remotePath);
+	}
+
+	@Override
+	protected List<FTPFile> doLs(String remotePath) throws IOException {
+		return cachedList(remotePath, () -> {
+			List<FTPFile> all = this.listAll(remotePath);
+			cacheChildren(remotePath, all);
+			return all;
+		});
+	}
+
+	/**
+	 * 列出指定目录下的所有文件（包括隐藏文件，不包括.和..）
+	 * @param remotePath 远程目录
+	 * @return 文件列表
+	 */
+	private List<FTPFile> listAll(String remotePath) throws IOException {
 		FTPFileFilter filter = (ftpFile) -> {
 			String name = ftpFile.getName();
-			if(!".".equals(name) && !"..".equals(name)) {
-				if(filterHiddenFile) {
-					if(!name.startsWith(".")) {
-						return true;
-					}
-				} else {
-					return true;
-				}
-			}
-			return false;
+			return !".".equals(name) && !"..".equals(name);
 		};
-		for(FTPFile ftpFile : client.listFiles(remotePath, filter)) {
-			list.add(ftpFile);
+		long start = System.nanoTime();
+		try {
+			return Arrays.asList(client.listFiles(remotePath, filter));
+		} finally {
+			getMetrics().record(Operation.LS, start);
 		}
-		return list;
 	}
 
 	@Override
 	public void mkdir(String remotePath) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
 		if(!this.exists(remotePath)) {
-			exec(() -> client.makeDirectory(remotePath));
+			this.doMkdir(remotePath);
 		} else {
 			logger.warn("{} already exists", remotePath);
 		}
 	}
 
+	@Override
+	protected void doMkdir(String remotePath) throws IOException {
+		long start = System.nanoTime();
+		try {
+			exec(() -> client.makeDirectory(remotePath));
+		} finally {
+			invalidate(remotePath);
+			getMetrics().record(Operation.MKDIR, start);
+		}
+	}
+
 	@Override
 	public void get(String remotePath, File localFile) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
 		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
-		if(this.exists(remotePath)) {
-			assertFalse(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
-			try (OutputStream output = new FileOutputStream(localFile)) {
-				exec(() -> client.retrieveFile(remotePath, output));
-			}
+		FTPFile entry = this.stat(remotePath);
+		if(entry != null) {
+			this.get(entry, remotePath, localFile, this.defaultSegments(getSize(entry)));
 		} else {
 			logger.warn("{} does not exists", remotePath);
 		}
 	}
 
+	@Override
+	protected void doGet(String remotePath, File localFile, long offset) throws IOException {
+		this.tune();
+		TransferHash hash = newHash();
+		if(hash != null && offset > 0) {
+			hash.update(localFile, offset);
+		}
+		long start = System.nanoTime();
+		try {
+			client.setRestartOffset(offset);
+			// 校验摘要时数据需要经过流，不使用NIO传输
+			if(channelTransfer && hash == null) {
+				this.transferFrom(remotePath, localFile, offset);
+			} else {
+				OutputStream counted = getMetrics().inbound(new FileOutputStream(localFile, offset > 0));
+				try (OutputStream output = hash != null ? hash.wrap(counted) : counted) {
+					exec(() -> client.retrieveFile(remotePath, output));
+				}
+			}
+		} finally {
+			client.setRestartOffset(0L);
+			getMetrics().record(Operation.GET, start);
+		}
+		learn(localFile.length() - offset, start);
+		verifyGet(hash, remotePath, localFile);
+	}
+
+	/**
+	 * 下载文件：数据连接的SocketChannel直接写入FileChannel，不经过commons-net的流拷贝
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
+	 * @param offset 开始下载的位置（REST已由restartOffset设置）
+	 */
+	private void transferFrom(String remotePath, File localFile, long offset) throws IOException {
+		Socket socket = client.openDataConnection(FTPCmd.RETR, remotePath);
+		if(socket == null) {
+			exec(() -> false);
+		}
+		long start = System.nanoTime();
+		long position = offset;
+		try {
+			SocketChannel input = socket.getChannel();
+			Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+			if(offset == 0) {
+				options.add(StandardOpenOption.TRUNCATE_EXISTING);
+			}
+			try (FileChannel output = FileChannel.open(localFile.toPath(), options);
+					Selector selector = Selector.open()) {
+				input.configureBlocking(false);
+				input.register(selector, SelectionKey.OP_READ);
+				while(true) {
+					long n = output.transferFrom(input, position, TRANSFER_CHUNK);
+					if(n == 0) {
+						await(selector);
+						// 可读但读不到数据说明对端已关闭数据连接
+						if((n = output.transferFrom(input, position, TRANSFER_CHUNK)) == 0) {
+							break;
+						}
+					}
+					position += n;
+				}
+			}
+		} finally {
+			socket.close();
+			getMetrics().received(position - offset, start);
+		}
+		exec(client::completePendingCommand);
+	}
+
+	/**
+	 * 上传文件：FileChannel直接写入数据连接的SocketChannel，由内核完成拷贝(sendfile)
+	 * @param localFile 本地文件
+	 * @param remoteFile 远程文件完整路径
+	 * @param offset 开始上传的位置（REST已由restartOffset设置）
+	 */
+	private void transferTo(File localFile, String remoteFile, long offset) throws IOException {
+		Socket socket = client.openDataConnection(FTPCmd.STOR, remoteFile);
+		if(socket == null) {
+			exec(() -> false);
+		}
+		long start = System.nanoTime();
+		long position = offset;
+		try {
+			SocketChannel output = socket.getChannel();
+			try (FileChannel input = FileChannel.open(localFile.toPath(), StandardOpenOption.READ);
+					Selector selector = Selector.open()) {
+				output.configureBlocking(false);
+				output.register(selector, SelectionKey.OP_WRITE);
+				long size = input.size();
+				while(position < size) {
+					long n = input.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), output);
+					if(n == 0) {
+						await(selector);
+					}
+					position += n;
+				}
+			}
+		} finally {
+			socket.close();
+			getMetrics().sent(position - offset, start);
+		}
+		exec(client::completePendingCommand);
+	}
+
+	/**
+	 * 等待数据连接可读/可写，超过数据超时时间抛出SocketTimeoutException
+	 */
+	private void await(Selector selector) throws IOException {
+		if(selector.select(timeout) == 0) {
+			throw new SocketTimeoutException("data connection timed out after " + timeout + "ms");
+		}
+		selector.selectedKeys().clear();
+	}
+
+	/**
+	 * 按自动调整参数设置缓冲区大小，数据连接在每次传输时新建，套接字缓冲区大小对之后的传输生效
+	 */
+	private void tune() {
+		TransferTuning tuning = getTuning();
+		if(tuning != null) {
+			client.setBufferSize(tuning.getBufferSize());
+			int size = tuning.getSocketBufferSize();
+			if(size > 0) {
+				client.setSendDataSocketBufferSize(size);
+				client.setReceieveDataSocketBufferSize(size);
+			}
+		}
+	}
+
+	@Override
+	protected InputStream retrieveStream(String remotePath, long offset) throws IOException {
+		this.tune();
+		InputStream input = null;
+		try {
+			client.setRestartOffset(offset);
+			input = client.retrieveFileStream(remotePath);
+		} finally {
+			client.setRestartOffset(0L);
+		}
+		if(input == null) {
+			getMetrics().error("FTP " + client.getReplyCode());
+			throw new IOException(client.getReplyString());
+		}
+		return getMetrics().inbound(new FilterInputStream(input) {
+			private boolean eof = false;
+			private boolean closed = false;
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				eof = b < 0;
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				eof = n < 0;
+				return n;
+			}
+
+			@Override
+			public void close() throws IOException {
+				if(closed) {
+					return;
+				}
+				closed = true;
+				try {
+					super.close();
+				} finally {
+					// 提前关闭时服务器可能返回426，只有完整读取后才检查返回码
+					boolean success = client.completePendingCommand();
+					if(!success && eof) {
+						getMetrics().error("FTP " + client.getReplyCode());
+						throw new IOException(client.getReplyString());
+					}
+				}
+			}
+		});
+	}
+
+	@Override
+	protected OutputStream storeStream(String remoteFile) throws IOException {
+		this.tune();
+		long start = System.nanoTime();
+		OutputStream output = client.storeFileStream(remoteFile);
+		if(output == null) {
+			invalidate(remoteFile);
+			getMetrics().error("FTP " + client.getReplyCode());
+			getMetrics().record(Operation.PUT, start);
+			throw new IOException(client.getReplyString());
+		}
+		return new FilterOutputStream(getMetrics().outbound(output)) {
+			private boolean closed = false;
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				if(closed) {
+					return;
+				}
+				closed = true;
+				try {
+					// 关闭数据连接后服务器才返回226
+					super.close();
+					exec(client::completePendingCommand);
+				} finally {
+					invalidate(remoteFile);
+					getMetrics().record(Operation.PUT, start);
+				}
+			}
+		};
+	}
+
 	@Override
 	public void put(File localFile, String remotePath) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
@@ -117,9 +471,39 @@ public class FtpClient extends RemoteClient<FTPFile> {
 		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
 		assertTrue(localFile.exists(), String.format(LOCAL_PATH_MUST_BE_EXISTS, localFile.getAbsolutePath()));
 		assertTrue(localFile.isFile(), String.format(LOCAL_PATH_MUST_BE_A_FILE, localFile.getAbsolutePath()));
-		try (InputStream input = new FileInputStream(localFile)) {
-			exec(() -> client.storeFile(remotePath + (remotePath.endsWith("/") ? "" : "/") + localFile.getName(), input));
+		this.doPut(localFile, remotePath + (remotePath.endsWith("/") ? "" : "/") + localFile.getName());
+	}
+
+	@Override
+	protected void doPut(File localFile, String remoteFile, long offset) throws IOException {
+		this.tune();
+		TransferHash hash = newHash();
+		if(hash != null && offset > 0) {
+			hash.update(localFile, offset);
 		}
+		long start = System.nanoTime();
+		try {
+			client.setRestartOffset(offset);
+			// 校验摘要时数据需要经过流，不使用NIO传输
+			if(channelTransfer && hash == null) {
+				this.transferTo(localFile, remoteFile, offset);
+			} else {
+				try (FileInputStream input = new FileInputStream(localFile)) {
+					input.getChannel().position(offset);
+					// 关闭时记录上传耗时
+					try (InputStream counted = getMetrics().outbound(input)) {
+						InputStream hashed = hash != null ? hash.wrap(counted) : counted;
+						exec(() -> client.storeFile(remoteFile, hashed));
+					}
+				}
+			}
+		} finally {
+			client.setRestartOffset(0L);
+			invalidate(remoteFile);
+			getMetrics().record(Operation.PUT, start);
+		}
+		learn(localFile.length() - offset, start);
+		verifyPut(hash, remoteFile);
 	}
 	
 	@Override
@@ -128,12 +512,22 @@ public class FtpClient extends RemoteClient<FTPFile> {
 		if(this.exists(remotePath)) {
 			remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_CAN_NOT_BE_REMOVED);
 			assertFalse(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
-			final String finalRemotePath = remotePath;
-			exec(() -> client.deleteFile(finalRemotePath));
+			this.doRm(remotePath);
 		} else {
 			logger.warn("{} does not exists", remotePath);
 		}
 	}
+
+	@Override
+	protected void doRm(String remotePath) throws IOException {
+		long start = System.nanoTime();
+		try {
+			exec(() -> client.deleteFile(remotePath));
+		} finally {
+			invalidate(remotePath);
+			getMetrics().record(Operation.RM, start);
+		}
+	}
 	
 	@Override
 	public void rmdir(String remotePath) throws IOException {
@@ -141,29 +535,45 @@ public class FtpClient extends RemoteClient<FTPFile> {
 		if(this.exists(remotePath)) {
 			remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_CAN_NOT_BE_REMOVED);
 			assertTrue(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
-			final String finalRemotePath = remotePath;
-			exec(() -> client.removeDirectory(finalRemotePath));
+			this.doRmdir(remotePath);
 		} else {
 			logger.warn("{} does not exists", remotePath);
 		}
 	}
 
+	@Override
+	protected void doRmdir(String remotePath) throws IOException {
+		long start = System.nanoTime();
+		try {
+			exec(() -> client.removeDirectory(remotePath));
+		} finally {
+			invalidateTree(remotePath);
+			getMetrics().record(Operation.RMDIR, start);
+		}
+	}
+
 	@Override
 	public boolean exists(String remotePath) {
+		long start = System.nanoTime();
 		try {
 			return this.getFTPFile(remotePath) != null;
 		} catch (IOException e) {
 			logger.warn(e.getMessage());
 			return false;
+		} finally {
+			getMetrics().record(Operation.EXISTS, start);
 		}
 	}
 
 	@Override
 	public FTPFile stat(String remotePath) {
+		long start = System.nanoTime();
 		try {
 			return this.getFTPFile(remotePath);
 		} catch (IOException e) {
 			logger.warn(e.getMessage());
+		} finally {
+			getMetrics().record(Operation.STAT, start);
 		}
 		return null;
 	}
@@ -184,7 +594,52 @@ public class FtpClient extends RemoteClient<FTPFile> {
 	}
 
 	@Override
-	public void close() throws IOException {
+	protected long getModificationTime(FTPFile entry, String remotePath) throws IOException {
+		Calendar timestamp = entry != null ? entry.getTimestamp() : null;
+		if(timestamp != null && timestamp.get(Calendar.SECOND) == 0 && timestamp.get(Calendar.MILLISECOND) == 0) {
+			// LIST返回的修改时间只精确到分钟或天，使用MDTM查询
+			FTPFile file = client.mdtmFile(remotePath);
+			if(file != null) {
+				return file.getTimestamp().getTimeInMillis();
+			}
+		}
+		return getModificationTime(entry);
+	}
+
+	@Override
+	public void setModificationTime(String remotePath, long time) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		try {
+			exec(() -> client.setModificationTime(remotePath, format.format(new Date(time))));
+		} finally {
+			invalidate(remotePath);
+		}
+	}
+
+	@Override
+	public long getSize(FTPFile entry) {
+		return entry != null ? entry.getSize() : 0L;
+	}
+
+	@Override
+	public boolean isAlive() {
+		try {
+			return client != null && client.isConnected() && client.sendNoOp();
+		} catch (IOException e) {
+			logger.warn(e.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	protected FtpClient connect() throws IOException {
+		return new FtpClient(hostname, port, username, password, timeout, proxyHost, proxyPort, compression);
+	}
+
+	@Override
+	protected void disconnect() throws IOException {
 		if(client != null) {
 			client.disconnect();
 			client = null;
@@ -195,7 +650,36 @@ public class FtpClient extends RemoteClient<FTPFile> {
 		if(StringUtils.isBlank(remotePath)) {
 			return null;
 		}
-		if (client.hasFeature(FTPCmd.MLST.name())) {
+		return cachedStat(remotePath, () -> this.lookupFTPFile(remotePath));
+	}
+
+	/**
+	 * 服务器支持MLST时通过MLST查询单个路径，不使用缓存；否则列出父目录
+	 */
+	@Override
+	protected FTPFile doStat(String remotePath) throws IOException {
+		return hasMlst() ? client.mlistFile(remotePath) : super.doStat(remotePath);
+	}
+
+	@Override
+	protected boolean isStatDirect() {
+		try {
+			return hasMlst();
+		} catch (IOException e) {
+			logger.warn(e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * 服务器是否支持MLST
+	 */
+	boolean hasMlst() throws IOException {
+		return client.hasFeature(FTPCmd.MLST.name());
+	}
+
+	private FTPFile lookupFTPFile(String remotePath) throws IOException {
+		if (hasMlst()) {
 			return client.mlistFile(remotePath);
 		} else {
 			remotePath = remotePath.trim();
@@ -213,16 +697,83 @@ public class FtpClient extends RemoteClient<FTPFile> {
 				return (files != null && files.length > 0) ? files[0] : null;
 			}
 			String parent = remotePath.substring(0, remotePath.lastIndexOf("/"));
-			parent = StringUtils.isBlank(parent) ? "/" : parent;
+			String parentPath = StringUtils.isBlank(parent) ? "/" : parent;
 			String name = remotePath.substring(remotePath.lastIndexOf("/") + 1);
-			FTPFile[] files = client.listFiles(parent, ftpFile -> {
+			// 启用缓存时整个父目录列表一起缓存，同一目录下其他文件的查询不再列目录
+			for(FTPFile ftpFile : cachedList(parentPath, () -> this.listAll(parentPath))) {
 				if(ftpFile != null && ftpFile.getName().equals(name)) {
-					return true;
+					return ftpFile;
 				}
-				return false;
-			});
-			return (files != null && files.length > 0) ? files[0] : null;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * 按服务器FEAT选择摘要命令，优先使用HASH(SHA-256/SHA-512/SHA-1/MD5/CRC32)，
+	 * 其次为XSHA256、XSHA512、XSHA1、XMD5、MD5、XCRC
+	 */
+	@Override
+	protected String hashAlgorithm() throws IOException {
+		if(hashCommand != null) {
+			return hashAlgorithm;
+		}
+		String[] hashes = client.featureValues("HASH");
+		if(hashes != null && hashes.length > 0) {
+			// 例如：SHA-1;SHA-256*;MD5，*表示当前选择的算法
+			List<String> algorithms = Arrays.asList(hashes[0].toUpperCase().split(";"));
+			for(String algorithm : new String[] { TransferHash.SHA_256, TransferHash.SHA_512, TransferHash.SHA_1, TransferHash.MD5, TransferHash.CRC32 }) {
+				if(algorithms.contains(algorithm) || algorithms.contains(algorithm + "*")) {
+					// 服务器拒绝切换算法时尝试下一个算法，不断开连接
+					if(!algorithms.contains(algorithm + "*") && !FTPReply.isPositiveCompletion(client.sendCommand("OPTS", "HASH " + algorithm))) {
+						logger.warn("{} refused OPTS HASH {}: {}", hostname, algorithm, client.getReplyString().trim());
+						continue;
+					}
+					hashCommand = "HASH";
+					hashAlgorithm = algorithm;
+					return hashAlgorithm;
+				}
+			}
+		}
+		String[][] commands = {
+				{ "XSHA256", TransferHash.SHA_256 }, { "XSHA512", TransferHash.SHA_512 }, { "XSHA1", TransferHash.SHA_1 },
+				{ "XMD5", TransferHash.MD5 }, { "MD5", TransferHash.MD5 }, { "XCRC", TransferHash.CRC32 } };
+		for(String[] command : commands) {
+			if(client.hasFeature(command[0])) {
+				hashCommand = command[0];
+				hashAlgorithm = command[1];
+				return hashAlgorithm;
+			}
+		}
+		logger.warn("{} does not support checksum commands", hostname);
+		hashCommand = "";
+		return null;
+	}
+
+	@Override
+	protected String remoteHash(String remotePath, String algorithm) throws IOException {
+		if(StringUtils.isEmpty(hashCommand)) {
+			return null;
+		}
+		int code = client.sendCommand(hashCommand, remotePath);
+		if(!FTPReply.isPositiveCompletion(code)) {
+			// 摘要命令失败不影响传输，不断开连接；命令不可用时不再尝试
+			logger.warn("{} {} {} failed: {}", hostname, hashCommand, remotePath, client.getReplyString().trim());
+			if(code == FTPReply.UNRECOGNIZED_COMMAND || code == FTPReply.COMMAND_NOT_IMPLEMENTED
+					|| code == FTPReply.COMMAND_NOT_IMPLEMENTED_FOR_PARAMETER) {
+				hashCommand = "";
+				hashAlgorithm = null;
+			}
+			return null;
+		}
+		String[] reply = client.getReplyStrings();
+		String[] tokens = reply[reply.length - 1].trim().split("\\s+");
+		if("HASH".equals(hashCommand)) {
+			// 213 SHA-256 0-49 9f86d0... filename
+			return tokens.length > 3 ? tokens[3] : null;
 		}
+		// 251 filename 9F86D0...（MD5）或 250 9F86D0...（XMD5等）
+		return tokens.length > 1 ? tokens[tokens.length - 1] : null;
 	}
 
 	/**
@@ -233,6 +784,7 @@ public class FtpClient extends RemoteClient<FTPFile> {
 	private void exec(FtpCommand cmd) throws IOException {
 		boolean success = cmd.exec();
 		if(!success) {
+			getMetrics().error("FTP " + this.client.getReplyCode());
 			String response = this.client.getReplyString();
 			this.client.logout();
 			throw new IOException(response);
@@ -243,12 +795,241 @@ public class FtpClient extends RemoteClient<FTPFile> {
 	private interface FtpCommand { boolean exec() throws IOException; }
 
 	/**
-	 * Fix MLST command error
-	 * 
-	 * https://tools.ietf.org/html/rfc3659#page-24
-	 * Note that for MLST the fact set is preceded by a space.
+	 * 从LIST数据连接中逐条读取并解析目录列表
+	 *
+	 * FTPListParseEngine会先把整个目录列表读入内存，这里直接从数据连接读取，每次只解析一条
+	 */
+	private class ListIterator implements RemoteIterator<FTPFile> {
+
+		private final Socket socket;
+		private final BufferedReader reader;
+		private final FTPFileEntryParser parser;
+		private FTPFile next;
+		/** 已读取到数据连接末尾 */
+		private boolean finished = false;
+		private boolean closed = false;
+
+		ListIterator(String remotePath) throws IOException {
+			this.parser = client.getEntryParser();
+			this.socket = client.openListConnection(remotePath);
+			if(this.socket == null) {
+				throw new IOException(client.getReplyString());
+			}
+			this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), client.getControlEncoding()));
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(next != null) {
+				return true;
+			}
+			if(finished || closed) {
+				return false;
+			}
+			try {
+				String line = null;
+				while((line = parser.readNextEntry(reader)) != null) {
+					FTPFile ftpFile = parser.parseFTPEntry(line);
+					if(ftpFile != null && !".".equals(ftpFile.getName()) && !"..".equals(ftpFile.getName())) {
+						next = ftpFile;
+						return true;
+					}
+				}
+				finished = true;
+				close();
+				return false;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public FTPFile next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			FTPFile ftpFile = next;
+			next = null;
+			return ftpFile;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if(closed) {
+				return;
+			}
+			closed = true;
+			try {
+				reader.close();
+				socket.close();
+			} finally {
+				// 提前关闭时服务器可能返回426，只有完整读取后才检查返回码
+				boolean success = client.completePendingCommand();
+				if(!success && finished) {
+					throw new IOException(client.getReplyString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * 创建基于SocketChannel的Socket，连接、超时等仍通过Socket接口设置
+	 */
+	private static class ChannelSocketFactory extends SocketFactory {
+
+		@Override
+		public Socket createSocket() throws IOException {
+			return SocketChannel.open().socket();
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return createSocket(InetAddress.getByName(host), port);
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			return createSocket(InetAddress.getByName(host), port, localHost, localPort);
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			Socket socket = createSocket();
+			socket.connect(new InetSocketAddress(host, port));
+			return socket;
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+			Socket socket = createSocket();
+			socket.bind(new InetSocketAddress(localAddress, localPort));
+			socket.connect(new InetSocketAddress(address, port));
+			return socket;
+		}
+	}
+
+	/**
+	 * MODE Z的数据连接：读取时解压，写入时压缩，其他操作委托给实际的数据连接
 	 */
+	private static class DeflateSocket extends Socket {
+
+		private final Socket socket;
+		private final int level;
+
+		DeflateSocket(Socket socket, int level) {
+			this.socket = socket;
+			this.level = level;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			Inflater inflater = new Inflater();
+			return new InflaterInputStream(socket.getInputStream(), inflater, DEFLATE_BUFFER_SIZE) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						inflater.end();
+					}
+				}
+			};
+		}
+
+		@Override
+		public OutputStream getOutputStream() throws IOException {
+			Deflater deflater = new Deflater(level);
+			return new DeflaterOutputStream(socket.getOutputStream(), deflater, DEFLATE_BUFFER_SIZE) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						deflater.end();
+					}
+				}
+			};
+		}
+
+		@Override
+		public void setSoTimeout(int timeout) throws SocketException {
+			socket.setSoTimeout(timeout);
+		}
+
+		@Override
+		public int getSoTimeout() throws SocketException {
+			return socket.getSoTimeout();
+		}
+
+		@Override
+		public InetAddress getInetAddress() {
+			return socket.getInetAddress();
+		}
+
+		@Override
+		public boolean isConnected() {
+			return socket.isConnected();
+		}
+
+		@Override
+		public boolean isClosed() {
+			return socket.isClosed();
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
 	private static class InnerFtpClient extends FTPClient {
+
+		private FTPFileEntryParser entryParser;
+		/** MODE Z的压缩级别（上传时使用），为0时使用流模式 */
+		private int deflateLevel = 0;
+
+		/**
+		 * 按服务器系统类型创建目录列表解析器（与listFiles使用的解析器一致）
+		 */
+		FTPFileEntryParser getEntryParser() throws IOException {
+			if(entryParser == null) {
+				String systemType = System.getProperty(FTP_SYSTEM_TYPE);
+				entryParser = new DefaultFTPFileEntryParserFactory().createFileEntryParser(systemType != null ? systemType : getSystemType());
+			}
+			return entryParser;
+		}
+
+		/**
+		 * 发送LIST命令并打开数据连接
+		 * @param pathname 远程目录
+		 * @return 数据连接，命令失败时返回null
+		 */
+		Socket openListConnection(String pathname) throws IOException {
+			return _openDataConnection_(FTPCmd.LIST, getListArguments(pathname));
+		}
+
+		/**
+		 * 发送命令并打开数据连接，restartOffset大于0时先发送REST
+		 * @param command 命令
+		 * @param arg 命令参数
+		 * @return 数据连接，命令失败时返回null
+		 */
+		Socket openDataConnection(FTPCmd command, String arg) throws IOException {
+			return _openDataConnection_(command, arg);
+		}
+
+		@Override
+		protected Socket _openDataConnection_(String command, String arg) throws IOException {
+			Socket socket = super._openDataConnection_(command, arg);
+			return socket != null && deflateLevel > 0 ? new DeflateSocket(socket, deflateLevel) : socket;
+		}
+
+		/**
+		 * Fix MLST command error
+		 * 
+		 * https://tools.ietf.org/html/rfc3659#page-24
+		 * Note that for MLST the fact set is preceded by a space.
+		 */
 		@Override
 		public FTPFile mlistFile(String pathname) throws IOException {
 			boolean success = FTPReply.isPositiveCompletion(sendCommand(FTPCmd.MLST, pathname));
@@ -0,0 +1,200 @@
+package com.my.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 以{@link RemoteIterator}为数据源的发布者，每个订阅者打开一个新的迭代器
+ *
+ * 只在订阅者有未满足的需求时读取迭代器，需求为0时停止读取：FTP不再读取数据连接，由TCP流量控制使服务器暂停发送，
+ * SFTP的LsEntrySelector在缓冲队列满时阻塞。读取迭代器是阻塞操作，在executor中执行，request()和cancel()不会阻塞；
+ * 没有指定executor时每个订阅使用一个守护线程，订阅结束后线程退出
+ */
+class IteratorPublisher<T> implements RemoteFlow.Publisher<T> {
+
+	public static final Logger logger = LoggerFactory.getLogger(IteratorPublisher.class);
+
+	private final Opener<T> opener;
+	private final Executor executor;
+	/** 每个订阅的读取线程的名称 */
+	private final String threadName;
+
+	/**
+	 * @param opener 打开迭代器，在executor中调用
+	 * @param executor 读取迭代器并发送元素，为null时每个订阅使用一个守护线程
+	 * @param threadName executor为null时读取线程的名称
+	 */
+	IteratorPublisher(Opener<T> opener, Executor executor, String threadName) {
+		this.opener = opener;
+		this.executor = executor;
+		this.threadName = threadName;
+	}
+
+	@Override
+	public void subscribe(RemoteFlow.Subscriber<? super T> subscriber) {
+		RemoteClient.assertNotNull(subscriber, "subscriber can not be null");
+		IteratorSubscription subscription = new IteratorSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * 打开迭代器
+	 */
+	@FunctionalInterface
+	interface Opener<T> { RemoteIterator<T> open() throws IOException; }
+
+	/**
+	 * 订阅关系：request()和cancel()只修改状态并调度drain()，同一时间最多只有一个线程执行drain()
+	 */
+	private class IteratorSubscription implements RemoteFlow.Subscription, Runnable {
+
+		private final RemoteFlow.Subscriber<? super T> subscriber;
+		/** 执行drain()的executor */
+		private final Executor executor;
+		/** 订阅自己的读取线程，结束后关闭；使用外部的executor时为null */
+		private final ExecutorService owned;
+		/** 未满足的需求，Long.MAX_VALUE表示无限 */
+		private final AtomicLong requested = new AtomicLong(0L);
+		/** 待执行的drain次数 */
+		private final AtomicInteger wip = new AtomicInteger(0);
+		private volatile boolean cancelled = false;
+		private volatile Throwable invalid;
+		private RemoteIterator<T> iterator;
+		private volatile boolean done = false;
+
+		IteratorSubscription(RemoteFlow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+			if(IteratorPublisher.this.executor != null) {
+				this.executor = IteratorPublisher.this.executor;
+				this.owned = null;
+			} else {
+				// 线程在第一次调度时创建，同一个订阅的drain()在同一个线程中依次执行
+				this.owned = Executors.newSingleThreadExecutor(r -> {
+					Thread t = new Thread(r, threadName);
+					t.setDaemon(true);
+					return t;
+				});
+				this.executor = this.owned;
+			}
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0) {
+				invalid = new IllegalArgumentException("request must be greater than 0: " + n);
+			} else {
+				requested.accumulateAndGet(n, (r, m) -> r + m < 0 ? Long.MAX_VALUE : r + m);
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			// 结束后不再调度，订阅自己的线程已关闭
+			if(wip.getAndIncrement() == 0 && !done) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = wip.addAndGet(-missed);
+			} while(missed != 0);
+			if(done && owned != null) {
+				owned.shutdown();
+			}
+		}
+
+		private void drain() {
+			long r = requested.get();
+			while(!done) {
+				if(cancelled) {
+					finish(null, false);
+					return;
+				}
+				if(invalid != null) {
+					finish(invalid, true);
+					return;
+				}
+				if(r == 0L) {
+					return;
+				}
+				T item = null;
+				try {
+					if(iterator == null) {
+						iterator = opener.open();
+					}
+					if(!iterator.hasNext()) {
+						finish(null, true);
+						return;
+					}
+					item = iterator.next();
+				} catch (IOException e) {
+					finish(e, true);
+					return;
+				} catch (UncheckedIOException e) {
+					finish(e.getCause(), true);
+					return;
+				} catch (RuntimeException e) {
+					finish(e, true);
+					return;
+				}
+				try {
+					subscriber.onNext(item);
+				} catch (Throwable e) {
+					// 订阅者违反规范抛出异常时视为已取消，关闭迭代器但不再通知订阅者
+					logger.warn("subscriber failed on next: {}", e.toString());
+					finish(e, false);
+					return;
+				}
+				r = r == Long.MAX_VALUE ? r : requested.decrementAndGet();
+			}
+		}
+
+		/**
+		 * 关闭迭代器并结束订阅
+		 * @param error 失败的异常，正常结束时为null
+		 * @param signal 是否通知订阅者（取消时不通知）
+		 */
+		private void finish(Throwable error, boolean signal) {
+			done = true;
+			if(iterator != null) {
+				try {
+					iterator.close();
+				} catch (IOException e) {
+					logger.warn(e.getMessage());
+				}
+				iterator = null;
+			}
+			if(!signal) {
+				return;
+			}
+			try {
+				if(error != null) {
+					subscriber.onError(error);
+				} else {
+					subscriber.onComplete();
+				}
+			} catch (Throwable e) {
+				logger.warn("subscriber failed on {}: {}", error != null ? "error" : "complete", e.toString());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,525 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+import com.my.project.TransferMetrics.Operation;
+
+/**
+ * 多客户端并发压力测试
+ *
+ * 启动N个客户端（每个客户端一个连接、一个线程），按配置的比例随机执行ls/stat/get/put/rm，
+ * 先运行预热阶段（结果不计入统计）再运行测量阶段，输出各操作的吞吐量和延迟分位数，
+ * 并按固定间隔将每个时间段的统计写入CSV文件
+ *
+ * 每个客户端只操作远程目录下自己的子目录load-N，结束后删除
+ */
+public class LoadTest {
+
+	public static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+	public static final String USAGE = "Usage: java -jar ftp.jar load" +
+			" --type=FTP" +
+			" --host=example.com" +
+			" --port=21" +
+			" --user=user1" +
+			" --pass=user1pass" +
+			" [--remotePath=/tmp]" +
+			" [--clients=200]" +
+			" [--warmup=10]" +
+			" [--duration=60]" +
+			" [--interval=1]" +
+			" [--mix=ls:20,stat:40,get:20,put:15,rm:5]" +
+			" [--size=4096]" +
+			" [--output=load.csv]" +
+			" [--proxy=example.proxy.com --proxyPort=8080]";
+	public static final String INVALID_MIX = "invalid operation mix: %s";
+
+	/** 操作比例 */
+	private final Map<Operation, Integer> mix = new EnumMap<Operation, Integer>(Operation.class);
+	/** 各操作的统计 */
+	private final Map<Operation, Stats> stats = new EnumMap<Operation, Stats>(Operation.class);
+	private final RemoteClientPool.ClientFactory<RemoteClient<?>> factory;
+	private final String remotePath;
+	private final int clients;
+	private final long warmup;
+	private final long duration;
+	private final long interval;
+	private final int size;
+	private final File output;
+
+	private volatile boolean running = true;
+	private final LongAdder connectErrors = new LongAdder();
+
+	/**
+	 * @param options 参数，与命令行参数同名（不包括--）
+	 */
+	public LoadTest(Map<String, String> options) {
+		String type = options.getOrDefault("type", "FTP").toUpperCase();
+		String host = options.get("host");
+		String port = options.get("port");
+		String user = options.get("user");
+		String pass = options.get("pass");
+		String proxy = options.get("proxy");
+		Integer proxyPort = options.containsKey("proxyPort") ? Integer.valueOf(options.get("proxyPort")) : null;
+		RemoteClient.assertNotBlank(host, "host can not be null or blank");
+		RemoteClient.assertNotBlank(port, "port can not be null or blank");
+		RemoteClient.assertTrue("FTP".equals(type) || "SFTP".equals(type), "type must be FTP or SFTP");
+		this.factory = () -> {
+			if("FTP".equals(type)) {
+				return new FtpClient(host, Integer.valueOf(port), user, pass, 60000, proxy, proxyPort);
+			}
+			try {
+				return new SftpClient(host, Integer.valueOf(port), user, pass, null, null, 60000, proxy, proxyPort);
+			} catch (JSchException | SftpException e) {
+				throw new IOException(e);
+			}
+		};
+		this.remotePath = options.getOrDefault("remotePath", "/");
+		this.clients = Integer.parseInt(options.getOrDefault("clients", "10"));
+		this.warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "10")));
+		this.duration = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "60")));
+		this.interval = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("interval", "1")));
+		this.size = Integer.parseInt(options.getOrDefault("size", "4096"));
+		this.output = new File(options.getOrDefault("output", "load.csv"));
+		String m = options.getOrDefault("mix", "ls:20,stat:40,get:20,put:15,rm:5");
+		for(String s : m.split(",")) {
+			String[] kv = s.split(":");
+			RemoteClient.assertTrue(kv.length == 2, String.format(INVALID_MIX, m));
+			Operation op;
+			try {
+				op = Operation.valueOf(kv[0].trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(String.format(INVALID_MIX, m), e);
+			}
+			RemoteClient.assertTrue(op == Operation.LS || op == Operation.STAT || op == Operation.GET
+					|| op == Operation.PUT || op == Operation.RM, String.format(INVALID_MIX, m));
+			mix.put(op, Integer.parseInt(kv[1].trim()));
+		}
+		RemoteClient.assertTrue(clients > 0, "clients must be greater than 0");
+		RemoteClient.assertTrue(interval > 0, "interval must be greater than 0");
+		RemoteClient.assertTrue(mix.values().stream().mapToInt(Integer::intValue).sum() > 0, String.format(INVALID_MIX, m));
+		for(Operation op : mix.keySet()) {
+			stats.put(op, new Stats());
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = parse(args);
+		if(!options.containsKey("host") || !options.containsKey("port")) {
+			System.out.println(USAGE);
+			return;
+		}
+		new LoadTest(options).run(System.out);
+	}
+
+	/**
+	 * 解析--key=value形式的参数
+	 */
+	public static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		for(String arg : args) {
+			if(arg.startsWith("--") && arg.indexOf('=') > 2) {
+				options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * 运行压力测试
+	 * @param report 输出测试结果
+	 * @return 测量阶段的统计，按操作分组
+	 */
+	public Map<Operation, Result> run(PrintStream report) throws IOException, InterruptedException {
+		File local = Files.createTempDirectory("load").toFile();
+		List<Thread> workers = new ArrayList<Thread>(clients);
+		CountDownLatch ready = new CountDownLatch(clients);
+		CountDownLatch start = new CountDownLatch(1);
+		for(int i = 0; i < clients; i++) {
+			Worker worker = new Worker(i, new File(local, "load-" + i), ready, start);
+			Thread t = new Thread(worker, "load-" + i);
+			t.setDaemon(true);
+			t.start();
+			workers.add(t);
+		}
+		ready.await();
+		report.printf("%d clients connected, %d failed%n", clients - connectErrors.intValue(), connectErrors.intValue());
+
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "load-timer");
+			t.setDaemon(true);
+			return t;
+		});
+		long begin = System.nanoTime();
+		long measured;
+		try (PrintWriter csv = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))) {
+			csv.println("time,phase,operation,count,throughput,p50,p95,p99,p999,errors");
+			timer.scheduleAtFixedRate(() -> this.tick(csv, begin), interval, interval, TimeUnit.NANOSECONDS);
+			start.countDown();
+			TimeUnit.NANOSECONDS.sleep(warmup);
+			// 预热结束，清空统计
+			for(Stats s : stats.values()) {
+				s.total.set(new Sample());
+			}
+			long measureStart = System.nanoTime();
+			TimeUnit.NANOSECONDS.sleep(duration);
+			running = false;
+			measured = System.nanoTime() - measureStart;
+			for(Thread t : workers) {
+				t.join();
+			}
+			timer.shutdown();
+			timer.awaitTermination(interval, TimeUnit.NANOSECONDS);
+		} finally {
+			running = false;
+			timer.shutdownNow();
+			delete(local);
+		}
+
+		Map<Operation, Result> results = new EnumMap<Operation, Result>(Operation.class);
+		report.printf(Locale.ROOT, "%-6s %10s %12s %10s %10s %10s %10s %8s%n", "op", "count", "ops/s", "p50(ms)", "p95(ms)", "p99(ms)", "p999(ms)", "errors");
+		stats.forEach((op, s) -> {
+			Result r = new Result(s.total.get(), measured);
+			results.put(op, r);
+			report.printf(Locale.ROOT, "%-6s %10d %12.1f %10.3f %10.3f %10.3f %10.3f %8d%n", op.name().toLowerCase(),
+					r.getCount(), r.getThroughput(), r.getP50(), r.getP95(), r.getP99(), r.getP999(), r.getErrors());
+		});
+		report.printf("time series written to %s%n", output.getAbsolutePath());
+		return results;
+	}
+
+	/**
+	 * 输出一个时间段的统计
+	 */
+	private void tick(PrintWriter csv, long begin) {
+		long elapsed = System.nanoTime() - begin;
+		String phase = elapsed <= warmup + interval / 2 ? "warmup" : "measure";
+		double seconds = interval / 1e9;
+		stats.forEach((op, s) -> {
+			Sample sample = s.interval.getAndSet(new Sample());
+			Histogram h = sample.latency;
+			csv.printf(Locale.ROOT, "%.3f,%s,%s,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%d%n", elapsed / 1e9, phase, op.name().toLowerCase(),
+					h.count(), h.count() / seconds, millis(h.percentile(0.5)), millis(h.percentile(0.95)),
+					millis(h.percentile(0.99)), millis(h.percentile(0.999)), sample.errors.sum());
+		});
+		csv.flush();
+	}
+
+	/**
+	 * 按比例随机选择一个操作
+	 */
+	private Operation next() {
+		int total = 0;
+		for(int w : mix.values()) {
+			total += w;
+		}
+		int r = ThreadLocalRandom.current().nextInt(total);
+		for(Map.Entry<Operation, Integer> e : mix.entrySet()) {
+			r -= e.getValue();
+			if(r < 0) {
+				return e.getKey();
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	private void record(Operation op, long start, boolean success) {
+		long micros = (System.nanoTime() - start) / 1000L;
+		Stats s = stats.get(op);
+		for(Sample sample : new Sample[] { s.interval.get(), s.total.get() }) {
+			if(success) {
+				sample.latency.record(micros);
+			} else {
+				sample.errors.increment();
+			}
+		}
+	}
+
+	private static double millis(long micros) {
+		return micros / 1000d;
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if(files != null) {
+			for(File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * 一个客户端：建立连接，在远程目录下创建自己的子目录和测试文件，循环执行操作直到测试结束
+	 */
+	private class Worker implements Runnable {
+
+		private final int id;
+		private final File local;
+		private final CountDownLatch ready;
+		private final CountDownLatch start;
+		private final String dir;
+		private RemoteClient<?> client;
+		/** put上传、rm删除的文件是否存在 */
+		private boolean uploaded = false;
+
+		Worker(int id, File local, CountDownLatch ready, CountDownLatch start) {
+			this.id = id;
+			this.local = local;
+			this.ready = ready;
+			this.start = start;
+			this.dir = remotePath + (remotePath.endsWith("/") ? "" : "/") + "load-" + id;
+		}
+
+		@Override
+		public void run() {
+			try {
+				try {
+					prepare();
+				} catch (IOException | RuntimeException e) {
+					logger.warn("client {} failed to connect: {}", id, e.getMessage());
+					connectErrors.increment();
+					client = null;
+				} finally {
+					ready.countDown();
+				}
+				start.await();
+				while(running && client != null) {
+					execute(next());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				cleanup();
+			}
+		}
+
+		private void prepare() throws IOException {
+			local.mkdirs();
+			File data = new File(local, "data.dat");
+			try (RandomAccessFile raf = new RandomAccessFile(data, "rw")) {
+				byte[] bytes = new byte[size];
+				ThreadLocalRandom.current().nextBytes(bytes);
+				raf.write(bytes);
+			}
+			client = factory.create();
+			client.put(data, dir);
+		}
+
+		private void execute(Operation op) {
+			File data = new File(local, "data.dat");
+			File file = new File(local, "file.dat");
+			String remote = dir + "/data.dat";
+			long start = System.nanoTime();
+			boolean success = true;
+			try {
+				switch(op) {
+				case LS:
+					client.ls(dir);
+					break;
+				case STAT:
+					client.stat(remote);
+					break;
+				case GET:
+					client.get(remote, new File(local, "get.dat"));
+					break;
+				case PUT:
+					if(!file.exists()) {
+						Files.copy(data.toPath(), file.toPath());
+					}
+					client.put(file, dir);
+					uploaded = true;
+					break;
+				case RM:
+					if(!uploaded) {
+						// 没有可删除的文件时先上传（不计入统计）
+						if(!file.exists()) {
+							Files.copy(data.toPath(), file.toPath());
+						}
+						client.put(file, dir);
+						start = System.nanoTime();
+					}
+					client.rm(dir + "/file.dat");
+					uploaded = false;
+					break;
+				default:
+					throw new IllegalStateException(op.name());
+				}
+			} catch (IOException | RuntimeException e) {
+				success = false;
+				logger.debug("{} failed: {}", op, e.getMessage());
+				reconnect();
+			}
+			record(op, start, success);
+		}
+
+		/**
+		 * 连接已断开时重新建立连接
+		 */
+		private void reconnect() {
+			if(client.isAlive()) {
+				return;
+			}
+			try {
+				client.close();
+			} catch (IOException e) {
+				logger.debug(e.getMessage());
+			}
+			try {
+				client = factory.create();
+			} catch (IOException e) {
+				logger.warn("client {} failed to reconnect: {}", id, e.getMessage());
+				client = null;
+			}
+		}
+
+		private void cleanup() {
+			if(client == null) {
+				return;
+			}
+			try {
+				client.rmRecursive(dir);
+			} catch (IOException | RuntimeException e) {
+				logger.warn("client {} failed to remove {}: {}", id, dir, e.getMessage());
+			}
+			try {
+				client.close();
+			} catch (IOException e) {
+				logger.warn(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 一个操作的统计：测量阶段的总计和当前时间段
+	 */
+	private static class Stats {
+		final AtomicReference<Sample> total = new AtomicReference<Sample>(new Sample());
+		final AtomicReference<Sample> interval = new AtomicReference<Sample>(new Sample());
+	}
+
+	private static class Sample {
+		final Histogram latency = new Histogram();
+		final LongAdder errors = new LongAdder();
+	}
+
+	/**
+	 * 一个操作在测量阶段的结果，延迟单位为毫秒
+	 */
+	public static final class Result {
+
+		private final long count;
+		private final long errors;
+		private final double throughput;
+		private final double p50;
+		private final double p95;
+		private final double p99;
+		private final double p999;
+
+		Result(Sample sample, long nanos) {
+			Histogram h = sample.latency;
+			this.count = h.count();
+			this.errors = sample.errors.sum();
+			this.throughput = nanos > 0 ? count * 1e9 / nanos : 0d;
+			this.p50 = millis(h.percentile(0.5));
+			this.p95 = millis(h.percentile(0.95));
+			this.p99 = millis(h.percentile(0.99));
+			this.p999 = millis(h.percentile(0.999));
+		}
+
+		public long getCount() { return count; }
+		public long getErrors() { return errors; }
+		public double getThroughput() { return throughput; }
+		public double getP50() { return p50; }
+		public double getP95() { return p95; }
+		public double getP99() { return p99; }
+		public double getP999() { return p999; }
+	}
+
+	/**
+	 * 对数分段的延迟直方图（单位微秒），每个2的幂区间再等分为32段，相对误差不超过1/32
+	 */
+	static final class Histogram {
+
+		private static final int SUB_BITS = 5;
+		private static final int SUB = 1 << SUB_BITS;
+
+		private final AtomicLongArray counts = new AtomicLongArray(64 * SUB);
+
+		void record(long value) {
+			counts.incrementAndGet(index(Math.max(0L, value)));
+		}
+
+		long count() {
+			long n = 0;
+			for(int i = 0; i < counts.length(); i++) {
+				n += counts.get(i);
+			}
+			return n;
+		}
+
+		/**
+		 * @param p 分位(0~1)
+		 * @return 分位数所在区间的上限，没有记录时返回0
+		 */
+		long percentile(double p) {
+			long total = count();
+			if(total == 0) {
+				return 0L;
+			}
+			long rank = Math.max(1L, (long) Math.ceil(total * p));
+			long seen = 0;
+			for(int i = 0; i < counts.length(); i++) {
+				seen += counts.get(i);
+				if(seen >= rank) {
+					return value(i);
+				}
+			}
+			return value(counts.length() - 1);
+		}
+
+		static int index(long value) {
+			if(value < SUB) {
+				return (int) value;
+			}
+			int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+			return (shift + 1) * SUB + (int) (value >>> shift) - SUB;
+		}
+
+		static long value(int index) {
+			if(index < SUB) {
+				return index;
+			}
+			int shift = index / SUB - 1;
+			return ((long) (index % SUB + SUB + 1) << shift) - 1;
+		}
+	}
+
+}
@@ -5,9 +5,14 @@ import com.jcraft.jsch.SftpException;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class Main {
-    public static void main(String[] args) throws IOException, SftpException, JSchException {
+    public static void main(String[] args) throws IOException, SftpException, JSchException, InterruptedException {
+        if(args != null && args.length > 0 && "load".equals(args[0])) {
+            LoadTest.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         if(args == null || args.length < 7) {
             System.out.println("Usage: java -jar ftp.jar" +
                     " --type=FTP" +
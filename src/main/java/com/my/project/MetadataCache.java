@@ -0,0 +1,198 @@
+package com.my.project;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 远程文件元数据缓存
+ *
+ * 缓存stat结果（包括不存在的路径）和目录列表，超过有效期的条目视为失效，
+ * 条目数超过上限时淘汰最近最少使用的条目
+ */
+public class MetadataCache<T> {
+
+	/** 缓存有效期(ms) */
+	private final long ttl;
+	/** 最大缓存条目数 */
+	private final int maxEntries;
+	/** 路径 -> 文件元数据 */
+	private final Map<String, Entry<T>> stats;
+	/** 目录 -> 目录列表 */
+	private final Map<String, Entry<List<T>>> lists;
+
+	/**
+	 * @param ttl 缓存有效期(ms)
+	 * @param maxEntries 最大缓存条目数
+	 */
+	public MetadataCache(long ttl, int maxEntries) {
+		RemoteClient.assertTrue(ttl > 0, "ttl must be greater than 0");
+		RemoteClient.assertTrue(maxEntries > 0, "maxEntries must be greater than 0");
+		this.ttl = ttl;
+		this.maxEntries = maxEntries;
+		this.stats = newLruMap();
+		this.lists = newLruMap();
+	}
+
+	/**
+	 * 查询文件元数据，缓存未命中时通过loader加载并缓存（包括不存在的结果）
+	 * @param path 远程路径
+	 * @param loader 加载元数据
+	 * @return 文件元数据，不存在返回null
+	 */
+	public T stat(String path, Loader<T> loader) throws IOException {
+		String key = normalize(path);
+		synchronized (this) {
+			Entry<T> entry = get(stats, key);
+			if(entry != null) {
+				return entry.value;
+			}
+		}
+		T value = loader.load();
+		putStat(key, value);
+		return value;
+	}
+
+	/**
+	 * 查询目录列表，缓存未命中时通过loader加载并缓存
+	 * @param path 远程目录
+	 * @param loader 加载目录列表
+	 * @return 目录列表
+	 */
+	public List<T> list(String path, Loader<List<T>> loader) throws IOException {
+		String key = normalize(path);
+		synchronized (this) {
+			Entry<List<T>> entry = get(lists, key);
+			if(entry != null) {
+				return entry.value;
+			}
+		}
+		List<T> value = loader.load();
+		synchronized (this) {
+			lists.put(key, new Entry<List<T>>(value, System.currentTimeMillis() + ttl));
+		}
+		return value;
+	}
+
+	/**
+	 * 缓存文件元数据
+	 * @param path 远程路径
+	 * @param value 文件元数据，null表示不存在
+	 */
+	public synchronized void putStat(String path, T value) {
+		stats.put(normalize(path), new Entry<T>(value, System.currentTimeMillis() + ttl));
+	}
+
+	/**
+	 * 文件或目录被修改后清除其元数据、自身的目录列表以及父目录的目录列表
+	 * @param path 远程路径
+	 */
+	public synchronized void invalidate(String path) {
+		String key = normalize(path);
+		stats.remove(key);
+		lists.remove(key);
+		lists.remove(parent(key));
+	}
+
+	/**
+	 * 目录被删除后清除其下所有路径的缓存
+	 * @param path 远程目录
+	 */
+	public synchronized void invalidateTree(String path) {
+		invalidate(path);
+		String prefix = normalize(path);
+		prefix = "/".equals(prefix) ? prefix : prefix + "/";
+		removePrefix(stats, prefix);
+		removePrefix(lists, prefix);
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public synchronized void clear() {
+		stats.clear();
+		lists.clear();
+	}
+
+	/**
+	 * 缓存条目数
+	 */
+	public synchronized int size() {
+		return stats.size() + lists.size();
+	}
+
+	private <V> Entry<V> get(Map<String, Entry<V>> map, String key) {
+		Entry<V> entry = map.get(key);
+		if(entry != null && entry.expireAt <= System.currentTimeMillis()) {
+			map.remove(key);
+			return null;
+		}
+		return entry;
+	}
+
+	private <V> void removePrefix(Map<String, Entry<V>> map, String prefix) {
+		Iterator<String> iterator = map.keySet().iterator();
+		while(iterator.hasNext()) {
+			if(iterator.next().startsWith(prefix)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private <V> Map<String, Entry<V>> newLruMap() {
+		return new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * 统一路径格式：以/开头，不以/结尾（根目录除外）
+	 * @param path 远程路径
+	 * @return 统一格式后的路径
+	 */
+	static String normalize(String path) {
+		String p = StringUtils.trimToEmpty(path);
+		if(!p.startsWith("/")) {
+			p = "/" + p;
+		}
+		while(p.length() > 1 && p.endsWith("/")) {
+			p = p.substring(0, p.length() - 1);
+		}
+		return p;
+	}
+
+	/**
+	 * 获取父目录
+	 * @param path 统一格式后的路径
+	 * @return 父目录，根目录的父目录为根目录
+	 */
+	static String parent(String path) {
+		int index = path.lastIndexOf("/");
+		return index <= 0 ? "/" : path.substring(0, index);
+	}
+
+	/**
+	 * 加载元数据
+	 */
+	@FunctionalInterface
+	public interface Loader<V> { V load() throws IOException; }
+
+	private static class Entry<V> {
+		private final V value;
+		private final long expireAt;
+
+		Entry(V value, long expireAt) {
+			this.value = value;
+			this.expireAt = expireAt;
+		}
+	}
+
+}
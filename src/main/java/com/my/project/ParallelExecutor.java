@@ -0,0 +1,190 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 在多个连接上并行执行远程操作
+ *
+ * 任务在ForkJoinPool的工作窃取队列中调度，目录任务将子目录和文件作为子任务fork到当前线程的队列，
+ * 空闲线程从其他线程的队列中窃取任务。任务之间通过CountedCompleter维护完成关系，不会阻塞等待子任务。
+ * 连接数不超过并行度，第一个连接复用调用方的连接，其余连接通过{@link ConnectionGroup}创建，
+ * 连接池没有空闲名额时以较少的连接执行。
+ * 任意任务失败后不再执行新任务，invoke()抛出第一个失败的异常。
+ */
+class ParallelExecutor<T> implements Closeable {
+
+	public static final Logger logger = LoggerFactory.getLogger(ParallelExecutor.class);
+
+	private final ForkJoinPool pool;
+	/** 调用方的连接和新建的连接 */
+	private final ConnectionGroup<T> connections;
+	/** 第一个失败的异常 */
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	/**
+	 * @param client 调用方的连接
+	 * @param parallelism 并行度（最大连接数）
+	 */
+	ParallelExecutor(RemoteClient<T> client, int parallelism) {
+		RemoteClient.assertTrue(parallelism > 0, "parallelism must be greater than 0");
+		this.pool = new ForkJoinPool(parallelism);
+		this.connections = new ConnectionGroup<T>(client, parallelism, true);
+	}
+
+	/**
+	 * 执行任务并等待所有子任务完成
+	 * @param root 根任务
+	 */
+	void invoke(Task root) throws IOException {
+		try {
+			pool.invoke(root);
+		} catch (RuntimeException e) {
+			failure.compareAndSet(null, e);
+		}
+		Throwable t = failure.get();
+		if(t instanceof IOException) {
+			throw (IOException) t;
+		} else if(t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if(t instanceof Error) {
+			throw (Error) t;
+		} else if(t != null) {
+			throw new IOException(t);
+		}
+	}
+
+	/**
+	 * 并行执行一组相互独立的远程操作并等待全部完成
+	 * @param actions 远程操作
+	 */
+	void invokeAll(Collection<? extends RemoteAction<T>> actions) throws IOException {
+		invoke(new Task(null) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void execute() throws IOException {
+				for(RemoteAction<T> action : actions) {
+					fork(new Task(this) {
+						private static final long serialVersionUID = 1L;
+						@Override
+						protected void execute() throws IOException {
+							ParallelExecutor.this.run(action);
+						}
+					});
+				}
+			}
+		});
+	}
+
+	/**
+	 * 是否已有任务失败
+	 */
+	boolean isFailed() {
+		return failure.get() != null;
+	}
+
+	/**
+	 * 取得一个空闲连接，连接数未达到并行度时创建新连接
+	 */
+	RemoteClient<T> acquire() throws IOException {
+		return connections.acquire();
+	}
+
+	/**
+	 * 归还连接
+	 */
+	void release(RemoteClient<T> c) {
+		connections.release(c);
+	}
+
+	/**
+	 * 在一个空闲连接上执行操作
+	 * @param action 远程操作
+	 */
+	void run(RemoteAction<T> action) throws IOException {
+		RemoteClient<T> c = acquire();
+		try {
+			action.run(c);
+		} finally {
+			release(c);
+		}
+	}
+
+	/**
+	 * 等待所有任务结束并关闭新建的连接（调用方的连接不关闭）
+	 */
+	@Override
+	public void close() throws IOException {
+		pool.shutdown();
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		connections.close();
+	}
+
+	/**
+	 * 远程操作
+	 */
+	@FunctionalInterface
+	interface RemoteAction<T> { void run(RemoteClient<T> client) throws IOException; }
+
+	/**
+	 * 并行任务，子任务通过{@link #fork(Task)}提交，所有子任务完成后调用onCompletion
+	 */
+	abstract class Task extends CountedCompleter<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		Task(Task parent) {
+			super(parent);
+		}
+
+		@Override
+		public final void compute() {
+			if(!isFailed()) {
+				try {
+					execute();
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+					completeExceptionally(e);
+					return;
+				}
+			}
+			tryComplete();
+		}
+
+		/**
+		 * 执行任务
+		 */
+		protected abstract void execute() throws IOException;
+
+		/**
+		 * 提交子任务
+		 * @param child 子任务
+		 */
+		protected void fork(Task child) {
+			addToPendingCount(1);
+			child.fork();
+		}
+
+		/**
+		 * 标记任务失败
+		 * @param e 异常
+		 */
+		protected void fail(Throwable e) {
+			failure.compareAndSet(null, e);
+			getRoot().completeExceptionally(e);
+		}
+	}
+
+}
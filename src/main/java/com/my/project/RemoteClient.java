@@ -1,14 +1,45 @@
 package com.my.project;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.my.project.ParallelExecutor.RemoteAction;
+
 public abstract class RemoteClient<T> implements Closeable {
 
 	public static final String REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK = "remote path can not be null or blank";
@@ -16,13 +47,48 @@ public abstract class RemoteClient<T> implements Closeable {
 	public static final String REMOTE_ROOT_PATH_IS_NOT_ALLOWED = "remote root path is not allowed";
 	public static final String REMOTE_PATH_MUST_BE_A_FILE = "remote path must be a file: %s";
 	public static final String REMOTE_PATH_MUST_BE_A_DIRECTORY = "remote path must be a directory: %s";
+	public static final String REMOTE_PATH_MUST_BE_EXISTS = "remote path must be exists: %s";
+	public static final String REMOTE_ENTRY_CAN_NOT_BE_NULL = "remote entry can not be null";
+	public static final String REMOTE_FILE_IS_TOO_LARGE = "remote file is too large: %s";
+	public static final String DATA_CAN_NOT_BE_NULL = "data can not be null";
+	public static final String CHECKSUM_MISMATCH = "%s checksum mismatch: %s local=%s remote=%s";
 	public static final String LOCAL_PATH_CAN_NOT_BE_NULL = "local path can not be null";
 	public static final String LOCAL_PATH_MUST_BE_EXISTS = "local path must be exists: %s";
 	public static final String LOCAL_PATH_MUST_BE_A_FILE = "local path must be a file: %s";
 	public static final String LOCAL_PATH_MUST_BE_A_DIRECTORY = "local path must be a directory: %s";
+	public static final String SYNC_DIRECTION_CAN_NOT_BE_NULL = "sync direction can not be null";
 
 	public static final Logger logger = LoggerFactory.getLogger(RemoteClient.class);
 
+	/** 是否默认校验传输的文件摘要的系统属性 */
+	public static final String VERIFY_PROPERTY = "hello-ftp.verify";
+
+	/** 分段下载时每段的最大重试次数 */
+	private static final int SEGMENT_RETRIES = 3;
+	/** 未指定分段数时每段的最小长度，较小的文件建立连接的开销超过分段的收益 */
+	static final long MIN_SEGMENT_SIZE = 4L * 1024 * 1024;
+	/** 分段下载的缓冲区大小 */
+	private static final int SEGMENT_BUFFER_SIZE = 64 * 1024;
+	/** 可以分配的最大数组长度 */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	/** 发布者读取线程的名称前缀 */
+	private static final String PUBLISHER_THREAD_PREFIX = "remote-publisher-";
+
+	/** 所属连接池，非池化连接为null */
+	private RemoteClientPool pool;
+	/** 在连接池中对应的key */
+	private RemoteClientPool.Key poolKey;
+	/** 元数据缓存，未启用时为null */
+	private volatile MetadataCache<T> cache;
+	/** 当前连接上已确认存在或已创建的目录 */
+	private final Set<String> knownDirs = ConcurrentHashMap.newKeySet();
+	/** 按协议和主机统计的传输指标 */
+	private TransferMetrics metrics;
+	/** 是否在get/put时校验文件摘要 */
+	private boolean verify = Boolean.getBoolean(VERIFY_PROPERTY);
+	/** 自动调整的传输参数，未启用时为null */
+	private TransferTuning tuning;
+
 	/**
 	 * 列出指定目录下的文件
 	 * @param remotePath 远程目录
@@ -41,35 +107,314 @@ public abstract class RemoteClient<T> implements Closeable {
 	 */
 	public abstract List<T> ls(String remotePath, boolean filterHiddenFile) throws IOException;
 
+	/**
+	 * 列出指定目录下的文件，使用已获取的目录元数据，不再查询目录是否存在
+	 * @param entry 目录元数据（如父目录列表中的条目）
+	 * @param remotePath 远程目录
+	 * @param filterHiddenFile 是否过滤隐藏文件
+	 * @return 文件列表，entry为文件时返回该文件
+	 */
+	public List<T> ls(T entry, String remotePath, boolean filterHiddenFile) throws IOException {
+		assertNotNull(entry, REMOTE_ENTRY_CAN_NOT_BE_NULL);
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		List<T> list = new ArrayList<T>();
+		for(T e : isDir(entry) ? this.doLs(remotePath) : Collections.singletonList(entry)) {
+			if(!filterHiddenFile || !getFileName(e).startsWith(".")) {
+				list.add(e);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * 以流的方式列出目录下的文件，边读取边返回，内存占用与目录大小无关
+	 *
+	 * 返回的Stream使用完毕后必须关闭（建议使用try-with-resources），遍历过程中的IOException以UncheckedIOException抛出；
+	 * FTP在Stream读取完毕或关闭之前控制连接被占用，不能在同一个连接上执行其他命令
+	 * @param remotePath 远程目录
+	 * @param filterHiddenFile 是否过滤隐藏文件
+	 * @return 文件流，目录不存在时返回空的流
+	 */
+	public Stream<T> lsStream(String remotePath, boolean filterHiddenFile) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		if(!this.exists(remotePath)) {
+			return Stream.empty();
+		}
+		RemoteIterator<T> iterator = this.iterate(remotePath);
+		Stream<T> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(() -> {
+					try {
+						iterator.close();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+		return filterHiddenFile ? stream.filter(e -> !getFileName(e).startsWith(".")) : stream;
+	}
+
+	/**
+	 * 以发布者的方式列出目录下的文件，只在订阅者请求时读取目录列表
+	 *
+	 * 每个订阅在自己的守护线程中读取目录列表（订阅结束后线程退出），订阅者的需求为0时停止读取；
+	 * 与{@link #lsStream(String, boolean)}相同，FTP在订阅结束之前控制连接被占用（取消订阅后目录列表在读取线程中异步关闭）
+	 * @param remotePath 远程目录
+	 * @param filterHiddenFile 是否过滤隐藏文件
+	 * @return 文件的发布者，目录不存在时直接结束
+	 */
+	public RemoteFlow.Publisher<T> lsPublisher(String remotePath, boolean filterHiddenFile) {
+		return this.lsPublisher(remotePath, filterHiddenFile, null);
+	}
+
+	/**
+	 * 以发布者的方式列出目录下的文件，在指定的executor中读取目录列表
+	 * @param remotePath 远程目录
+	 * @param filterHiddenFile 是否过滤隐藏文件
+	 * @param executor 读取目录列表并发送元素，读取是阻塞操作，会占用executor的线程；为null时每个订阅使用一个守护线程
+	 * @return 文件的发布者，目录不存在时直接结束
+	 */
+	public RemoteFlow.Publisher<T> lsPublisher(String remotePath, boolean filterHiddenFile, Executor executor) {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		return new IteratorPublisher<T>(
+				() -> new FilteredIterator(this.exists(remotePath) ? this.iterate(remotePath) : null, filterHiddenFile),
+				executor, PUBLISHER_THREAD_PREFIX + remotePath);
+	}
+
+	/**
+	 * 以发布者的方式遍历目录树，只在订阅者请求时读取目录列表
+	 *
+	 * 逐个目录读取（同一时间只打开一个目录列表），子目录在当前目录读取完毕后读取，订阅者的需求为0时停止读取；
+	 * 每个订阅在自己的守护线程中读取，FTP在订阅结束之前控制连接被占用
+	 * @param remotePath 远程目录
+	 * @param filterHiddenFile 是否过滤隐藏文件和隐藏目录
+	 * @return 目录下所有文件和目录（不包括remotePath本身）的发布者，目录不存在时直接结束
+	 */
+	public RemoteFlow.Publisher<RemoteFlow.Entry<T>> walkPublisher(String remotePath, boolean filterHiddenFile) {
+		return this.walkPublisher(remotePath, filterHiddenFile, null);
+	}
+
+	/**
+	 * 以发布者的方式遍历目录树，在指定的executor中读取目录列表
+	 * @param remotePath 远程目录
+	 * @param filterHiddenFile 是否过滤隐藏文件和隐藏目录
+	 * @param executor 读取目录列表并发送元素，读取是阻塞操作，会占用executor的线程；为null时每个订阅使用一个守护线程
+	 * @return 目录下所有文件和目录（不包括remotePath本身）的发布者，目录不存在时直接结束
+	 */
+	public RemoteFlow.Publisher<RemoteFlow.Entry<T>> walkPublisher(String remotePath, boolean filterHiddenFile, Executor executor) {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		return new IteratorPublisher<RemoteFlow.Entry<T>>(
+				() -> new WalkIterator(this.exists(remotePath) ? remotePath : null, filterHiddenFile),
+				executor, PUBLISHER_THREAD_PREFIX + remotePath);
+	}
+
+	/**
+	 * 创建下载阶段，订阅{@link #walkPublisher(String, boolean)}的条目并下载，与mget相同，下载到localPath下同名的目录中
+	 * @param remotePath 遍历的远程目录
+	 * @param localPath 本地目录
+	 * @param parallelism 并行度（最大连接数），下载使用新建的连接
+	 * @return 下载阶段，发送下载后的本地文件和创建的本地目录
+	 */
+	public TransferProcessor<T> downloader(String remotePath, File localPath, int parallelism) {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		assertNotNull(localPath, LOCAL_PATH_CAN_NOT_BE_NULL);
+		return new TransferProcessor<T>(this, remotePath, localPath, parallelism);
+	}
+
+	/**
+	 * 过滤隐藏文件的目录列表迭代器
+	 */
+	private class FilteredIterator implements RemoteIterator<T> {
+
+		/** 目录列表，目录不存在时为null */
+		private final RemoteIterator<T> iterator;
+		private final boolean filterHiddenFile;
+		private T next;
+
+		FilteredIterator(RemoteIterator<T> iterator, boolean filterHiddenFile) {
+			this.iterator = iterator;
+			this.filterHiddenFile = filterHiddenFile;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while(next == null && iterator != null && iterator.hasNext()) {
+				T entry = iterator.next();
+				if(!filterHiddenFile || !getFileName(entry).startsWith(".")) {
+					next = entry;
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T entry = next;
+			next = null;
+			return entry;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if(iterator != null) {
+				iterator.close();
+			}
+		}
+	}
+
+	/**
+	 * 逐个目录遍历目录树的迭代器，当前目录读取完毕并关闭后才打开下一个目录
+	 */
+	private class WalkIterator implements RemoteIterator<RemoteFlow.Entry<T>> {
+
+		private final boolean filterHiddenFile;
+		/** 待读取的目录 */
+		private final Deque<String> dirs = new ArrayDeque<String>();
+		/** 正在读取的目录 */
+		private String dir;
+		private FilteredIterator current;
+		private RemoteFlow.Entry<T> next;
+
+		/**
+		 * @param remotePath 远程目录，为null时不遍历
+		 * @param filterHiddenFile 是否过滤隐藏文件和隐藏目录
+		 */
+		WalkIterator(String remotePath, boolean filterHiddenFile) {
+			this.filterHiddenFile = filterHiddenFile;
+			if(remotePath != null) {
+				dirs.push(remotePath);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while(next == null) {
+				if(current == null) {
+					if(dirs.isEmpty()) {
+						return false;
+					}
+					dir = dirs.pop();
+					try {
+						current = new FilteredIterator(iterate(dir), filterHiddenFile);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				if(!current.hasNext()) {
+					closeCurrent();
+					continue;
+				}
+				T entry = current.next();
+				String path = dir + (dir.endsWith("/") ? "" : "/") + getFileName(entry);
+				if(isDir(entry)) {
+					dirs.push(path);
+				}
+				next = new RemoteFlow.Entry<T>(path, entry);
+			}
+			return true;
+		}
+
+		@Override
+		public RemoteFlow.Entry<T> next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			RemoteFlow.Entry<T> entry = next;
+			next = null;
+			return entry;
+		}
+
+		private void closeCurrent() {
+			try {
+				current.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				current = null;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			dirs.clear();
+			if(current != null) {
+				FilteredIterator c = current;
+				current = null;
+				c.close();
+			}
+		}
+	}
+
+	/**
+	 * 打开目录列表迭代器（包括隐藏文件，不包括.和..，不检查目录是否存在）
+	 * @param remotePath 远程目录
+	 * @return 逐条读取目录列表的迭代器
+	 */
+	protected abstract RemoteIterator<T> iterate(String remotePath) throws IOException;
+
+	/**
+	 * 列出目录下的所有文件（包括隐藏文件，不包括.和..，不检查目录是否存在），返回的列表不能修改
+	 * @param remotePath 远程目录
+	 * @return 文件列表
+	 */
+	protected abstract List<T> doLs(String remotePath) throws IOException;
+
 	/**
 	 * 创建远程目录，如果父目录不存在则自动创建
+	 *
+	 * 已确认存在或已创建的目录会被记录下来，同一个连接上不再重复检查；
+	 * 其余部分从最深一级开始，按目录深度二分查找已存在的最深一级目录，只创建缺少的部分；
+	 * 相对路径相对于当前工作目录创建
 	 * @param remotePath 远程目录
 	 */
 	public void mkdirRecursive(String remotePath) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
-		if(!this.exists(remotePath)) {
-			String prefix = "";
-			if(remotePath.startsWith("/")) {
-				prefix = "/";
-				remotePath = remotePath.substring(1);
-			}
-			if(remotePath.endsWith("/")) {
-				remotePath = remotePath.substring(0, remotePath.length() - 1);
-			}
-			String[] folders = remotePath.split("/");
-			folders[0] = prefix + folders[0];
-			// first folder
-			StringBuffer path = new StringBuffer(folders[0]);
-			this.mkdir(path.toString());
-			// sub folders
-			int index = 1;
-			while(index < folders.length) {
-				path.append("/").append(folders[index]);
-				this.mkdir(path.toString());
-				index ++;
+		String path = trimTrailingSlash(remotePath);
+		if(knownDirs.contains(path)) {
+			logger.warn("{} already exists", remotePath);
+			return;
+		}
+		boolean absolute = path.startsWith("/");
+		String relative = absolute ? path.substring(1) : path;
+		String[] folders = relative.isEmpty() ? new String[0] : relative.split("/");
+		// prefixes[0]为根目录或当前工作目录
+		String[] prefixes = new String[folders.length + 1];
+		prefixes[0] = absolute ? "/" : "";
+		for(int i = 0; i < folders.length; i++) {
+			prefixes[i + 1] = (i == 0 ? (absolute ? "/" : "") : prefixes[i] + "/") + folders[i];
+		}
+		int depth = folders.length;
+		if(this.exists(path)) {
+			// 已存在路径的各级父目录一定是目录
+			for(int i = 1; i < depth; i++) {
+				knownDirs.add(prefixes[i]);
 			}
-		} else {
 			logger.warn("{} already exists", remotePath);
+			return;
+		}
+		// low: 已确认存在的最深一级，high: 已确认不存在的最浅一级
+		int low = 0;
+		for(int i = depth - 1; i > 0; i--) {
+			if(knownDirs.contains(prefixes[i])) {
+				low = i;
+				break;
+			}
+		}
+		int high = depth;
+		while(high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if(this.exists(prefixes[mid])) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		for(int i = low + 1; i <= depth; i++) {
+			this.doMkdir(prefixes[i]);
+		}
+		for(int i = 1; i <= depth; i++) {
+			knownDirs.add(prefixes[i]);
 		}
 	}
 
@@ -80,189 +425,1569 @@ public abstract class RemoteClient<T> implements Closeable {
 	public abstract void mkdir(String remotePath) throws IOException;
 
 	/**
-	 * 下载文件
+	 * 创建远程目录（不检查目录是否已存在）
+	 * @param remotePath 远程目录
+	 */
+	protected abstract void doMkdir(String remotePath) throws IOException;
+
+	/**
+	 * 下载文件，启用自动调整时按{@link #defaultSegments(long)}分段下载
 	 * @param remotePath 远程文件路径
 	 * @param local 本地文件
 	 */
 	public abstract void get(String remotePath, File localFile) throws IOException;
 
 	/**
-	 * 下载文件夹
-	 * @param remotePath 远程路径
-	 * @param localPath 本地路径
+	 * 下载文件，使用已获取的文件元数据，不再查询文件是否存在
+	 * @param entry 文件元数据（如父目录列表中的条目）
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
 	 */
-	public void mget(String remotePath, File localPath) throws IOException {
+	public void get(T entry, String remotePath, File localFile) throws IOException {
+		assertNotNull(entry, REMOTE_ENTRY_CAN_NOT_BE_NULL);
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
-		assertNotNull(localPath, LOCAL_PATH_CAN_NOT_BE_NULL);
-		if(!localPath.exists()) {
-			localPath.mkdirs();
-		} else {
-			assertTrue(localPath.isDirectory(), String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, localPath.getAbsolutePath()));
-		}
-		remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_IS_NOT_ALLOWED);
-		if(this.exists(remotePath)) {
-			T entry = this.stat(remotePath);
-			assertTrue(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
-			download(entry, localPath, remotePath);
-		} else {
+		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
+		assertFalse(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
+		this.doGet(remotePath, localFile);
+	}
+
+	/**
+	 * 断点续传下载文件：本地文件已存在时只下载本地文件大小之后的部分，
+	 * 本地文件与远程文件大小相同时不下载，本地文件大于远程文件时重新下载
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
+	 */
+	public void resumeGet(String remotePath, File localFile) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
+		T entry = this.stat(remotePath);
+		if(entry == null) {
 			logger.warn("{} does not exists", remotePath);
+			return;
 		}
+		assertFalse(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
+		long size = getSize(entry);
+		long offset = localFile.isFile() ? localFile.length() : 0L;
+		if(offset == size) {
+			logger.warn("{} already exists", localFile.getAbsolutePath());
+			return;
+		}
+		this.doGet(remotePath, localFile, offset < size ? offset : 0L);
 	}
 
 	/**
-	 * 递归下载远程文件
-	 * @param entry 远程文件
-	 * @param localPath 本地路径
+	 * 分段下载文件：按字节范围把文件分成多段，每段在单独的连接上下载，直接写入本地文件对应的位置，
+	 * 某一段失败时只重试该段未下载的部分
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
+	 * @param segments 分段数（最大连接数），小于等于1时在当前连接上下载
 	 */
-	private void download(T entry, File localPath, String path) throws IOException {
-		String fileName = getFileName(entry);
-		if(!isDir(entry)) {
-			this.get(path, new File(localPath, fileName));
-		} else {
-
-			File local = new File(localPath, fileName);
-			if(!local.exists()) {
-				local.mkdirs();
-			}
-			assertTrue(local.isDirectory(),  String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, local.getAbsolutePath()));
+	public void get(String remotePath, File localFile, int segments) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
+		T entry = this.stat(remotePath);
+		if(entry == null) {
+			logger.warn("{} does not exists", remotePath);
+			return;
+		}
+		this.get(entry, remotePath, localFile, segments);
+	}
 
-			List<T> list = this.ls(path, false);
-			for(T e : list) {
-				download(e, local, path + (path.endsWith("/") ? "" : "/") + getFileName(e));
+	/**
+	 * 分段下载文件，使用已获取的文件元数据
+	 * @param entry 文件元数据
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
+	 * @param segments 分段数（最大连接数），小于等于1时在当前连接上下载
+	 */
+	protected void get(T entry, String remotePath, File localFile, int segments) throws IOException {
+		assertFalse(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
+		long size = getSize(entry);
+		int n = (int) Math.min(segments, size);
+		if(n <= 1) {
+			this.doGet(remotePath, localFile);
+			return;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(localFile, "rw");
+				ParallelExecutor<T> executor = new ParallelExecutor<T>(this, n)) {
+			file.setLength(size);
+			FileChannel output = file.getChannel();
+			List<Segment> list = new ArrayList<Segment>(n);
+			long length = size / n;
+			for(int i = 0; i < n; i++) {
+				long start = i * length;
+				long end = i == n - 1 ? size : start + length;
+				list.add(new Segment(remotePath, output, start, end));
 			}
+			executor.invokeAll(list);
 		}
 	}
 
 	/**
-	 * 上传文件
-	 * @param local 本地文件
+	 * 打开远程文件的输入流，边下载边读取，不经过本地文件，读取完毕或不再需要后必须关闭
+	 *
+	 * FTP在输入流关闭之前控制连接被占用，不能在同一个连接上执行其他命令；
+	 * 需要ReadableByteChannel时可以使用{@link java.nio.channels.Channels#newChannel(InputStream)}
 	 * @param remotePath 远程文件路径
+	 * @return 远程文件输入流
 	 */
-	public abstract void put(File localFile, String remotePath) throws IOException;
+	public InputStream openRead(String remotePath) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		T entry = this.stat(remotePath);
+		assertNotNull(entry, String.format(REMOTE_PATH_MUST_BE_EXISTS, remotePath));
+		assertFalse(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
+		return this.retrieveStream(remotePath, 0L);
+	}
 
 	/**
-	 * 上传文件夹
-	 * @param localPath 本地路径
-	 * @param remotePath 远程路径
+	 * 打开远程文件的输出流，写入的数据直接上传，不经过本地文件，远程目录不存在时自动创建，远程文件已存在时覆盖，
+	 * 写入完毕后必须关闭，关闭时完成上传并检查结果
+	 *
+	 * FTP在输出流关闭之前控制连接被占用，不能在同一个连接上执行其他命令
+	 * @param remotePath 远程文件完整路径
+	 * @return 远程文件输出流
 	 */
-	public void mput(File localPath, String remotePath) throws IOException {
-		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
-		if(!this.exists(remotePath)) {
-			this.mkdirRecursive(remotePath);
-		} else {
-			assertTrue(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+	public OutputStream openWrite(String remotePath) throws IOException {
+		return this.storeStream(this.prepareRemoteFile(remotePath));
+	}
+
+	/**
+	 * 上传内存中的数据，远程目录不存在时自动创建，远程文件已存在时覆盖
+	 * @param data 数据
+	 * @param remotePath 远程文件完整路径
+	 */
+	public void putBytes(byte[] data, String remotePath) throws IOException {
+		assertNotNull(data, DATA_CAN_NOT_BE_NULL);
+		try (OutputStream output = this.storeStream(this.prepareRemoteFile(remotePath))) {
+			output.write(data);
 		}
-		assertNotNull(localPath, LOCAL_PATH_CAN_NOT_BE_NULL);
-		assertTrue(localPath.exists(), String.format(LOCAL_PATH_MUST_BE_EXISTS, localPath.getAbsolutePath()));
-		assertTrue(localPath.isDirectory(), String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, localPath.getAbsolutePath()));
-		upload(localPath, remotePath);
 	}
 
 	/**
-	 * 递归上传本地文件
-	 * @param localPath 本地路径
-	 * @param path 远程路径
+	 * 上传缓冲区中position到limit之间的数据，上传后position等于limit，
+	 * 远程目录不存在时自动创建，远程文件已存在时覆盖
+	 * @param data 数据
+	 * @param remotePath 远程文件完整路径
 	 */
-	private void upload(File localPath, String path) throws IOException {
-		if(localPath.isFile()) {
-			this.put(localPath, path);
-		} else {
-			path = path + (path.endsWith("/") ? "" : "/") + localPath.getName();
-			this.mkdirRecursive(path);
-			assertTrue(isDir(this.stat(path)), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, path));
-			File[] files = localPath.listFiles();
-			for(File f : files) {
-				upload(f, path);
+	public void putBytes(ByteBuffer data, String remotePath) throws IOException {
+		assertNotNull(data, DATA_CAN_NOT_BE_NULL);
+		try (OutputStream output = this.storeStream(this.prepareRemoteFile(remotePath))) {
+			if(data.hasArray()) {
+				output.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+				data.position(data.limit());
+			} else {
+				WritableByteChannel channel = Channels.newChannel(output);
+				while(data.hasRemaining()) {
+					channel.write(data);
+				}
 			}
 		}
 	}
 
 	/**
-	 * 删除远程文件
-	 * @param remotePath 远程文件路径
-	 * @return 成功返回true，失败返回false
+	 * 上传输入流中的数据（输入流不关闭），远程目录不存在时自动创建，远程文件已存在时覆盖
+	 * @param input 输入流
+	 * @param remotePath 远程文件完整路径
 	 */
-	public abstract void rm(String remotePath) throws IOException;
+	public void putStream(InputStream input, String remotePath) throws IOException {
+		assertNotNull(input, DATA_CAN_NOT_BE_NULL);
+		try (OutputStream output = this.storeStream(this.prepareRemoteFile(remotePath))) {
+			byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+			int n;
+			while((n = input.read(buffer)) >= 0) {
+				output.write(buffer, 0, n);
+			}
+		}
+	}
 
 	/**
-	 * 删除远程目录
-	 * @param remotePath 远程目录
-	 * @return 成功返回true，失败返回false
+	 * 上传缓冲区中的数据：未超过阈值时直接从内存上传，已转存到临时文件时按文件上传，
+	 * 远程目录不存在时自动创建，远程文件已存在时覆盖
+	 * @param buffer 缓冲区（需要在上传之后关闭）
+	 * @param remotePath 远程文件完整路径
 	 */
-	public abstract void rmdir(String remotePath) throws IOException;
+	public void putBuffer(SpillBuffer buffer, String remotePath) throws IOException {
+		assertNotNull(buffer, DATA_CAN_NOT_BE_NULL);
+		String remoteFile = this.prepareRemoteFile(remotePath);
+		File file = buffer.getFile();
+		if(file != null) {
+			this.doPut(file, remoteFile);
+			return;
+		}
+		try (OutputStream output = this.storeStream(remoteFile)) {
+			buffer.writeTo(output);
+		}
+	}
 
 	/**
-	 * 删除远程目录（递归删除）
-	 * @param remotePath 远程路径
+	 * 下载文件到内存
+	 * @param remotePath 远程文件路径
+	 * @return 文件内容
 	 */
-	public void rmRecursive(String remotePath) throws IOException {
+	public byte[] getBytes(String remotePath) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
-		if(this.exists(remotePath)) {
-			remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_CAN_NOT_BE_REMOVED);
-			T attr = this.stat(remotePath);
-			if(!isDir(attr)) {
-				this.rm(remotePath);
-			} else {
-				for(T e : this.ls(remotePath, false)) {
-					delete(e, remotePath + "/" + getFileName(e));
-				}
-				this.rmdir(remotePath);
+		T entry = this.stat(remotePath);
+		assertNotNull(entry, String.format(REMOTE_PATH_MUST_BE_EXISTS, remotePath));
+		assertFalse(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
+		long size = getSize(entry);
+		assertTrue(size <= MAX_ARRAY_SIZE, String.format(REMOTE_FILE_IS_TOO_LARGE, remotePath));
+		try (InputStream input = this.retrieveStream(remotePath, 0L)) {
+			// 按元数据中的大小分配数组，文件在读取过程中发生变化时按实际读取的内容返回
+			byte[] data = new byte[(int) size];
+			int length = 0;
+			int n = 0;
+			while(length < data.length && (n = input.read(data, length, data.length - length)) >= 0) {
+				length += n;
 			}
-		} else {
-			logger.warn("{} does not exists", remotePath);
+			if(n < 0 || (n = input.read()) < 0) {
+				return length == data.length ? data : Arrays.copyOf(data, length);
+			}
+			ByteArrayOutputStream output = new ByteArrayOutputStream(data.length + SEGMENT_BUFFER_SIZE);
+			output.write(data);
+			output.write(n);
+			byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+			while((n = input.read(buffer)) >= 0) {
+				output.write(buffer, 0, n);
+			}
+			return output.toByteArray();
 		}
 	}
 
 	/**
-	 * 递归删除远程文件
-	 * @param entry 指定文件
-	 * @param path 文件路径
+	 * 检查并准备上传的远程文件：远程路径不能是根目录或已存在的目录，远程目录不存在时自动创建
+	 * @param remotePath 远程文件完整路径
+	 * @return 去掉末尾/的远程文件路径
 	 */
-	private void delete(T entry, String path) throws IOException {
-		if(!isDir(entry)) {
-			this.rm(path);
+	private String prepareRemoteFile(String remotePath) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_IS_NOT_ALLOWED);
+		T entry = this.stat(remotePath);
+		if(entry != null) {
+			assertFalse(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
 		} else {
-			for(T e : this.ls(path, false)) {
-				delete(e, path + "/" + getFileName(e));
+			int index = remotePath.lastIndexOf('/');
+			if(index > 0 && !this.exists(remotePath.substring(0, index))) {
+				this.mkdirRecursive(remotePath.substring(0, index));
 			}
-			this.rmdir(path);
 		}
+		return remotePath;
 	}
 
 	/**
-	 * 远程文件是否存在
-	 * @param remotePath 远程目录或文件
-	 * @return 存在返回true，否则返回false
+	 * 打开远程文件的输出流（不检查远程目录），关闭时完成上传
+	 * @param remoteFile 远程文件完整路径
+	 * @return 远程文件输出流
 	 */
-	public abstract boolean exists(String remotePath);
+	protected abstract OutputStream storeStream(String remoteFile) throws IOException;
 
 	/**
-	 * 查看文件或目录状态
-	 * @param remotePath 文件或目录路径
-	 * @return 文件或目录状态信息
+	 * 从指定位置开始读取远程文件（不检查远程文件是否存在），读取完毕或不再需要后必须关闭
+	 *
+	 * FTP在输入流关闭之前控制连接被占用，不能在同一个连接上执行其他命令
+	 * @param remotePath 远程文件路径
+	 * @param offset 开始读取的位置
+	 * @return 远程文件输入流
 	 */
-	public abstract T stat(String remotePath);
+	protected abstract InputStream retrieveStream(String remotePath, long offset) throws IOException;
 
 	/**
-	 * 是否为目录
-	 * @param entry 指定文件
-	 * @return 是目录返回true，否则返回false
+	 * 下载文件（不检查远程文件是否存在）
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
 	 */
-	public abstract boolean isDir(T entry);
+	protected void doGet(String remotePath, File localFile) throws IOException {
+		this.doGet(remotePath, localFile, 0L);
+	}
 
 	/**
-	 * 获取文件名
-	 * @param entry 指定文件
-	 * @return 文件名
+	 * 从指定位置开始下载文件（不检查远程文件是否存在），offset大于0时追加到本地文件末尾
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
+	 * @param offset 开始下载的位置，即本地文件已有的大小
 	 */
-	public abstract String getFileName(T entry);
+	protected abstract void doGet(String remotePath, File localFile, long offset) throws IOException;
 
 	/**
-	 * 获取文件最近修改时间
-	 * @param entry 指定文件
-	 * @return 上次修改时间对应的timestamp
+	 * 下载文件夹（启用自动调整时使用按主机学习到的并行度）
+	 * @param remotePath 远程路径
+	 * @param localPath 本地路径
 	 */
-	public abstract long getModificationTime(T entry);
+	public void mget(String remotePath, File localPath) throws IOException {
+		this.mget(remotePath, localPath, this.defaultParallelism());
+	}
+
+	/**
+	 * 下载文件夹，目录遍历和文件下载分散到多个连接上并行执行
+	 * @param remotePath 远程路径
+	 * @param localPath 本地路径
+	 * @param parallelism 并行度（最大连接数），小于等于1时在当前连接上顺序下载
+	 */
+	public void mget(String remotePath, File localPath, int parallelism) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		assertNotNull(localPath, LOCAL_PATH_CAN_NOT_BE_NULL);
+		if(!localPath.exists()) {
+			localPath.mkdirs();
+		} else {
+			assertTrue(localPath.isDirectory(), String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, localPath.getAbsolutePath()));
+		}
+		remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_IS_NOT_ALLOWED);
+		if(this.exists(remotePath)) {
+			T entry = this.stat(remotePath);
+			assertTrue(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+			if(parallelism <= 1) {
+				download(entry, localPath, remotePath);
+			} else {
+				try (ParallelExecutor<T> executor = new ParallelExecutor<T>(this, parallelism)) {
+					executor.invoke(new DownloadTask(executor, null, entry, localPath, remotePath));
+				}
+			}
+		} else {
+			logger.warn("{} does not exists", remotePath);
+		}
+	}
+
+	/**
+	 * 递归下载远程文件
+	 * @param entry 远程文件
+	 * @param localPath 本地路径
+	 */
+	private void download(T entry, File localPath, String path) throws IOException {
+		String fileName = getFileName(entry);
+		if(!isDir(entry)) {
+			this.get(entry, path, new File(localPath, fileName));
+		} else {
+
+			File local = new File(localPath, fileName);
+			if(!local.exists()) {
+				local.mkdirs();
+			}
+			assertTrue(local.isDirectory(),  String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, local.getAbsolutePath()));
+
+			List<T> list = this.ls(entry, path, false);
+			for(T e : list) {
+				download(e, local, path + (path.endsWith("/") ? "" : "/") + getFileName(e));
+			}
+		}
+	}
+
+	/**
+	 * 分段下载中的一段，失败时从已下载的位置重试，连接已断开时使用新连接重试
+	 */
+	private class Segment implements RemoteAction<T> {
+
+		private final String remotePath;
+		private final FileChannel output;
+		/** 下一个要下载的位置 */
+		private long position;
+		/** 结束位置（不包括） */
+		private final long end;
+
+		Segment(String remotePath, FileChannel output, long start, long end) {
+			this.remotePath = remotePath;
+			this.output = output;
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run(RemoteClient<T> client) throws IOException {
+			for(int retry = 0; ; retry++) {
+				RemoteClient<T> c = client;
+				boolean reconnect = retry > 0 && !client.isAlive();
+				try {
+					if(reconnect) {
+						c = client.connect();
+					}
+					transfer(c);
+					return;
+				} catch (IOException e) {
+					if(retry >= SEGMENT_RETRIES) {
+						throw e;
+					}
+					logger.warn("retry {} from {}: {}", remotePath, position, e.getMessage());
+				} finally {
+					if(reconnect && c != client) {
+						c.disconnect();
+					}
+				}
+			}
+		}
+
+		private void transfer(RemoteClient<T> c) throws IOException {
+			byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+			try (InputStream input = c.retrieveStream(remotePath, position)) {
+				while(position < end) {
+					int n = input.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+					if(n < 0) {
+						throw new EOFException(remotePath);
+					}
+					ByteBuffer b = ByteBuffer.wrap(buffer, 0, n);
+					while(b.hasRemaining()) {
+						position += output.write(b, position);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 并行下载任务，文件在当前任务中下载，目录列出后将子项作为子任务提交
+	 */
+	private class DownloadTask extends ParallelExecutor<T>.Task {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ParallelExecutor<T> executor;
+		private final T entry;
+		private final File localPath;
+		private final String path;
+
+		DownloadTask(ParallelExecutor<T> executor, DownloadTask parent, T entry, File localPath, String path) {
+			executor.super(parent);
+			this.executor = executor;
+			this.entry = entry;
+			this.localPath = localPath;
+			this.path = path;
+		}
+
+		@Override
+		protected void execute() throws IOException {
+			String fileName = getFileName(entry);
+			if(!isDir(entry)) {
+				executor.run(c -> c.get(entry, path, new File(localPath, fileName)));
+			} else {
+				File local = new File(localPath, fileName);
+				if(!local.exists()) {
+					local.mkdirs();
+				}
+				assertTrue(local.isDirectory(),  String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, local.getAbsolutePath()));
+
+				List<T> list = new ArrayList<T>();
+				executor.run(c -> list.addAll(c.ls(entry, path, false)));
+				for(T e : list) {
+					fork(new DownloadTask(executor, this, e, local, path + (path.endsWith("/") ? "" : "/") + getFileName(e)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * 上传文件
+	 * @param local 本地文件
+	 * @param remotePath 远程文件路径
+	 */
+	public abstract void put(File localFile, String remotePath) throws IOException;
+
+	/**
+	 * 上传文件（不检查远程目录和本地文件）
+	 * @param localFile 本地文件
+	 * @param remoteFile 远程文件完整路径
+	 */
+	protected void doPut(File localFile, String remoteFile) throws IOException {
+		this.doPut(localFile, remoteFile, 0L);
+	}
+
+	/**
+	 * 从指定位置开始上传文件（不检查远程目录和本地文件），offset大于0时追加到远程文件末尾
+	 * @param localFile 本地文件
+	 * @param remoteFile 远程文件完整路径
+	 * @param offset 开始上传的位置，即远程文件已有的大小
+	 */
+	protected abstract void doPut(File localFile, String remoteFile, long offset) throws IOException;
+
+	/**
+	 * 上传文件，使用已获取的远程目录元数据，不再查询远程目录是否存在
+	 * @param localFile 本地文件
+	 * @param entry 远程目录元数据
+	 * @param remotePath 远程目录
+	 */
+	public void put(File localFile, T entry, String remotePath) throws IOException {
+		assertNotNull(entry, REMOTE_ENTRY_CAN_NOT_BE_NULL);
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		assertTrue(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
+		assertTrue(localFile.exists(), String.format(LOCAL_PATH_MUST_BE_EXISTS, localFile.getAbsolutePath()));
+		assertTrue(localFile.isFile(), String.format(LOCAL_PATH_MUST_BE_A_FILE, localFile.getAbsolutePath()));
+		this.doPut(localFile, remotePath + (remotePath.endsWith("/") ? "" : "/") + localFile.getName());
+	}
+
+	/**
+	 * 断点续传上传文件：远程文件已存在时只上传远程文件大小之后的部分，
+	 * 远程文件与本地文件大小相同时不上传，远程文件大于本地文件时重新上传
+	 * @param localFile 本地文件
+	 * @param remotePath 远程目录
+	 */
+	public void resumePut(File localFile, String remotePath) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
+		assertTrue(localFile.exists(), String.format(LOCAL_PATH_MUST_BE_EXISTS, localFile.getAbsolutePath()));
+		assertTrue(localFile.isFile(), String.format(LOCAL_PATH_MUST_BE_A_FILE, localFile.getAbsolutePath()));
+		if(!this.exists(remotePath)) {
+			this.mkdirRecursive(remotePath);
+		} else {
+			assertTrue(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+		}
+		String remoteFile = remotePath + (remotePath.endsWith("/") ? "" : "/") + localFile.getName();
+		T entry = this.stat(remoteFile);
+		long offset = 0L;
+		if(entry != null) {
+			assertFalse(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_FILE, remoteFile));
+			offset = getSize(entry);
+		}
+		if(offset == localFile.length() && entry != null) {
+			logger.warn("{} already exists", remoteFile);
+			return;
+		}
+		this.doPut(localFile, remoteFile, offset < localFile.length() ? offset : 0L);
+	}
+
+	/**
+	 * 上传文件夹（启用自动调整时使用按主机学习到的并行度）
+	 * @param localPath 本地路径
+	 * @param remotePath 远程路径
+	 */
+	public void mput(File localPath, String remotePath) throws IOException {
+		this.mput(localPath, remotePath, this.defaultParallelism());
+	}
+
+	/**
+	 * 上传文件夹，先按层（广度优先）创建远程目录结构，再将文件分散到多个连接上并行上传
+	 * @param localPath 本地路径
+	 * @param remotePath 远程路径
+	 * @param parallelism 并行度（最大连接数），小于等于1时在当前连接上顺序上传
+	 */
+	public void mput(File localPath, String remotePath, int parallelism) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		boolean created = false;
+		if(!this.exists(remotePath)) {
+			this.mkdirRecursive(remotePath);
+			created = true;
+		} else {
+			assertTrue(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+		}
+		assertNotNull(localPath, LOCAL_PATH_CAN_NOT_BE_NULL);
+		assertTrue(localPath.exists(), String.format(LOCAL_PATH_MUST_BE_EXISTS, localPath.getAbsolutePath()));
+		assertTrue(localPath.isDirectory(), String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, localPath.getAbsolutePath()));
+		if(parallelism <= 1) {
+			upload(localPath, remotePath);
+		} else {
+			parallelUpload(localPath, remotePath, created, parallelism);
+		}
+	}
+
+	/**
+	 * 并行上传本地目录
+	 *
+	 * 远程目录按层创建：父目录是本次新建的，子目录一定不存在，直接创建；
+	 * 父目录原本已存在时，列出一次父目录判断子目录是否存在，不再逐个检查
+	 * @param localPath 本地目录
+	 * @param remotePath 远程父目录
+	 * @param parentCreated 远程父目录是否为本次新建
+	 * @param parallelism 并行度
+	 */
+	private void parallelUpload(File localPath, String remotePath, boolean parentCreated, int parallelism) throws IOException {
+		String root = remotePath + (remotePath.endsWith("/") ? "" : "/") + localPath.getName();
+		boolean created = parentCreated;
+		if(!created) {
+			T entry = this.stat(root);
+			if(entry == null) {
+				created = true;
+			} else {
+				assertTrue(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, root));
+			}
+		}
+		if(created) {
+			this.doMkdir(root);
+		}
+		try (ParallelExecutor<T> executor = new ParallelExecutor<T>(this, parallelism)) {
+			List<UploadDir> level = new ArrayList<UploadDir>();
+			level.add(new UploadDir(localPath, root, created));
+			List<RemoteAction<T>> files = Collections.synchronizedList(new ArrayList<RemoteAction<T>>());
+			while(!level.isEmpty()) {
+				List<UploadDir> next = Collections.synchronizedList(new ArrayList<UploadDir>());
+				List<RemoteAction<T>> mkdirs = new ArrayList<RemoteAction<T>>();
+				for(UploadDir dir : level) {
+					mkdirs.add(c -> dir.expand(c, next, files));
+				}
+				executor.invokeAll(mkdirs);
+				level = next;
+			}
+			executor.invokeAll(files);
+		} finally {
+			// 其他连接上的修改不会清除当前连接的缓存
+			this.invalidateTree(root);
+		}
+	}
+
+	/**
+	 * 并行上传时已存在（或已创建）的远程目录
+	 */
+	private class UploadDir {
+
+		private final File local;
+		private final String remote;
+		/** 远程目录是否为本次新建 */
+		private final boolean created;
+
+		UploadDir(File local, String remote, boolean created) {
+			this.local = local;
+			this.remote = remote;
+			this.created = created;
+		}
+
+		/**
+		 * 创建下一层远程目录，收集本层要上传的文件
+		 * @param client 执行操作的连接
+		 * @param next 下一层目录
+		 * @param files 要上传的文件
+		 */
+		void expand(RemoteClient<T> client, List<UploadDir> next, List<RemoteAction<T>> files) throws IOException {
+			Map<String, T> existing = new HashMap<String, T>();
+			if(!created) {
+				for(T e : client.doLs(remote)) {
+					existing.put(getFileName(e), e);
+				}
+			}
+			for(File f : local.listFiles()) {
+				String path = remote + "/" + f.getName();
+				if(f.isFile()) {
+					files.add(c -> c.doPut(f, path));
+				} else if(existing.containsKey(f.getName())) {
+					assertTrue(isDir(existing.get(f.getName())), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, path));
+					next.add(new UploadDir(f, path, false));
+				} else {
+					client.doMkdir(path);
+					next.add(new UploadDir(f, path, true));
+				}
+			}
+		}
+	}
+
+	/**
+	 * 递归上传本地文件
+	 * @param localPath 本地路径
+	 * @param path 远程路径
+	 */
+	private void upload(File localPath, String path) throws IOException {
+		if(localPath.isFile()) {
+			this.put(localPath, path);
+		} else {
+			uploadDir(localPath, path);
+		}
+	}
+
+	/**
+	 * 递归上传本地目录，目录中的文件直接上传到已确认的远程目录
+	 * @param localPath 本地目录
+	 * @param path 远程父目录
+	 */
+	private void uploadDir(File localPath, String path) throws IOException {
+		path = path + (path.endsWith("/") ? "" : "/") + localPath.getName();
+		this.mkdirRecursive(path);
+		T entry = this.stat(path);
+		assertTrue(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, path));
+		File[] files = localPath.listFiles();
+		for(File f : files) {
+			if(f.isFile()) {
+				this.put(f, entry, path);
+			} else {
+				uploadDir(f, path);
+			}
+		}
+	}
+
+	/**
+	 * 删除远程文件
+	 * @param remotePath 远程文件路径
+	 * @return 成功返回true，失败返回false
+	 */
+	public abstract void rm(String remotePath) throws IOException;
+
+	/**
+	 * 删除远程文件（不检查文件是否存在）
+	 * @param remotePath 远程文件路径
+	 */
+	protected abstract void doRm(String remotePath) throws IOException;
+
+	/**
+	 * 删除远程文件，使用已获取的文件元数据，不再查询文件是否存在
+	 * @param entry 文件元数据（如父目录列表中的条目）
+	 * @param remotePath 远程文件路径
+	 */
+	public void rm(T entry, String remotePath) throws IOException {
+		assertNotNull(entry, REMOTE_ENTRY_CAN_NOT_BE_NULL);
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_CAN_NOT_BE_REMOVED);
+		assertFalse(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
+		this.doRm(remotePath);
+	}
+
+	/**
+	 * 删除远程目录
+	 * @param remotePath 远程目录
+	 * @return 成功返回true，失败返回false
+	 */
+	public abstract void rmdir(String remotePath) throws IOException;
+
+	/**
+	 * 删除远程空目录（不检查目录是否存在）
+	 * @param remotePath 远程目录
+	 */
+	protected abstract void doRmdir(String remotePath) throws IOException;
+
+	/**
+	 * 删除远程空目录，使用已获取的目录元数据，不再查询目录是否存在
+	 * @param entry 目录元数据（如父目录列表中的条目）
+	 * @param remotePath 远程目录
+	 */
+	public void rmdir(T entry, String remotePath) throws IOException {
+		assertNotNull(entry, REMOTE_ENTRY_CAN_NOT_BE_NULL);
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_CAN_NOT_BE_REMOVED);
+		assertTrue(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+		this.doRmdir(remotePath);
+	}
+
+	/**
+	 * 删除远程目录（递归删除）（启用自动调整时使用按主机学习到的并行度）
+	 * @param remotePath 远程路径
+	 */
+	public void rmRecursive(String remotePath) throws IOException {
+		this.rmRecursive(remotePath, this.defaultParallelism());
+	}
+
+	/**
+	 * 删除远程目录（递归删除），目录遍历和删除分散到多个连接上并行执行
+	 *
+	 * 文件直接按列表中的路径删除，不再逐个检查是否存在，目录在其子项全部删除后自底向上删除
+	 * @param remotePath 远程路径
+	 * @param parallelism 并行度（最大连接数），小于等于1时在当前连接上顺序删除
+	 */
+	public void rmRecursive(String remotePath, int parallelism) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		if(this.exists(remotePath)) {
+			remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_CAN_NOT_BE_REMOVED);
+			T attr = this.stat(remotePath);
+			if(!isDir(attr)) {
+				this.rm(remotePath);
+			} else if(parallelism <= 1) {
+				delete(attr, remotePath);
+			} else {
+				try (ParallelExecutor<T> executor = new ParallelExecutor<T>(this, parallelism)) {
+					executor.invoke(new DeleteTask(executor, null, attr, remotePath));
+				} finally {
+					// 其他连接上的删除不会清除当前连接的缓存
+					this.invalidateTree(remotePath);
+				}
+			}
+		} else {
+			logger.warn("{} does not exists", remotePath);
+		}
+	}
+
+	/**
+	 * 并行删除任务，文件在当前任务中删除，目录列出后将子项作为子任务提交，子任务全部完成后删除目录
+	 */
+	private class DeleteTask extends ParallelExecutor<T>.Task {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ParallelExecutor<T> executor;
+		private final T entry;
+		private final String path;
+
+		DeleteTask(ParallelExecutor<T> executor, DeleteTask parent, T entry, String path) {
+			executor.super(parent);
+			this.executor = executor;
+			this.entry = entry;
+			this.path = path;
+		}
+
+		@Override
+		protected void execute() throws IOException {
+			if(!isDir(entry)) {
+				executor.run(c -> c.rm(entry, path));
+			} else {
+				List<T> list = new ArrayList<T>();
+				executor.run(c -> list.addAll(c.ls(entry, path, false)));
+				for(T e : list) {
+					fork(new DeleteTask(executor, this, e, path + "/" + getFileName(e)));
+				}
+			}
+		}
+
+		@Override
+		public void onCompletion(CountedCompleter<?> caller) {
+			if(isDir(entry) && !executor.isFailed()) {
+				try {
+					executor.run(c -> c.rmdir(entry, path));
+				} catch (Throwable e) {
+					fail(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 递归删除远程文件
+	 * @param entry 指定文件
+	 * @param path 文件路径
+	 */
+	private void delete(T entry, String path) throws IOException {
+		if(!isDir(entry)) {
+			this.rm(entry, path);
+		} else {
+			for(T e : this.ls(entry, path, false)) {
+				delete(e, path + "/" + getFileName(e));
+			}
+			this.rmdir(entry, path);
+		}
+	}
+
+	/**
+	 * 增量同步目录，只传输新增或大小、修改时间不同的文件，不删除多余的文件
+	 * @param remotePath 远程目录
+	 * @param localPath 本地目录
+	 * @param direction 同步方向
+	 */
+	public void sync(String remotePath, File localPath, SyncDirection direction) throws IOException {
+		this.sync(remotePath, localPath, direction, false);
+	}
+
+	/**
+	 * 增量同步目录，只传输新增或大小、修改时间不同的文件，传输后把目标文件的修改时间设置为源文件的修改时间，
+	 * 下次同步时大小和修改时间相同的文件不再传输
+	 * @param remotePath 远程目录
+	 * @param localPath 本地目录
+	 * @param direction 同步方向
+	 * @param delete 是否删除目标目录中源目录不存在的文件
+	 */
+	public void sync(String remotePath, File localPath, SyncDirection direction, boolean delete) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		assertNotNull(localPath, LOCAL_PATH_CAN_NOT_BE_NULL);
+		assertNotNull(direction, SYNC_DIRECTION_CAN_NOT_BE_NULL);
+		if(direction == SyncDirection.DOWNLOAD) {
+			T entry = this.stat(remotePath);
+			if(entry == null) {
+				logger.warn("{} does not exists", remotePath);
+				return;
+			}
+			assertTrue(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+			if(!localPath.exists()) {
+				localPath.mkdirs();
+			} else {
+				assertTrue(localPath.isDirectory(), String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, localPath.getAbsolutePath()));
+			}
+			syncDown(remotePath, localPath, delete);
+		} else {
+			assertTrue(localPath.exists(), String.format(LOCAL_PATH_MUST_BE_EXISTS, localPath.getAbsolutePath()));
+			assertTrue(localPath.isDirectory(), String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, localPath.getAbsolutePath()));
+			boolean created = !this.exists(remotePath);
+			if(created) {
+				this.mkdirRecursive(remotePath);
+			} else {
+				assertTrue(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+			}
+			syncUp(localPath, remotePath, created, delete);
+		}
+	}
+
+	/**
+	 * 以远程目录为准同步本地目录
+	 * @param remotePath 远程目录
+	 * @param localPath 本地目录
+	 * @param delete 是否删除本地多余的文件
+	 */
+	private void syncDown(String remotePath, File localPath, boolean delete) throws IOException {
+		Set<String> names = new HashSet<String>();
+		for(T e : this.doLs(remotePath)) {
+			String name = getFileName(e);
+			String path = remotePath + (remotePath.endsWith("/") ? "" : "/") + name;
+			File local = new File(localPath, name);
+			names.add(name);
+			if(isDir(e)) {
+				if(!local.exists()) {
+					local.mkdirs();
+				} else {
+					assertTrue(local.isDirectory(), String.format(LOCAL_PATH_MUST_BE_A_DIRECTORY, local.getAbsolutePath()));
+				}
+				syncDown(path, local, delete);
+			} else {
+				assertFalse(local.isDirectory(), String.format(LOCAL_PATH_MUST_BE_A_FILE, local.getAbsolutePath()));
+				if(!local.exists() || local.length() != getSize(e)
+						|| !isSameTime(local.lastModified(), getModificationTime(e, path))) {
+					this.doGet(path, local);
+					local.setLastModified(getModificationTime(e, path));
+				}
+			}
+		}
+		if(delete) {
+			for(File f : localPath.listFiles()) {
+				if(!names.contains(f.getName())) {
+					deleteLocal(f);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 以本地目录为准同步远程目录
+	 * @param localPath 本地目录
+	 * @param remotePath 远程目录
+	 * @param created 远程目录是否刚刚创建（不需要列出目录）
+	 * @param delete 是否删除远程多余的文件
+	 */
+	private void syncUp(File localPath, String remotePath, boolean created, boolean delete) throws IOException {
+		Map<String, T> existing = new HashMap<String, T>();
+		if(!created) {
+			for(T e : this.doLs(remotePath)) {
+				existing.put(getFileName(e), e);
+			}
+		}
+		for(File f : localPath.listFiles()) {
+			String path = remotePath + (remotePath.endsWith("/") ? "" : "/") + f.getName();
+			T e = existing.remove(f.getName());
+			if(f.isDirectory()) {
+				if(e == null) {
+					this.doMkdir(path);
+				} else {
+					assertTrue(isDir(e), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, path));
+				}
+				syncUp(f, path, e == null, delete);
+			} else {
+				assertFalse(e != null && isDir(e), String.format(REMOTE_PATH_MUST_BE_A_FILE, path));
+				if(e == null || getSize(e) != f.length()
+						|| !isSameTime(f.lastModified(), getModificationTime(e, path))) {
+					this.doPut(f, path);
+					this.setModificationTime(path, f.lastModified());
+				}
+			}
+		}
+		if(delete) {
+			for(Map.Entry<String, T> e : existing.entrySet()) {
+				delete(e.getValue(), remotePath + (remotePath.endsWith("/") ? "" : "/") + e.getKey());
+			}
+		}
+	}
+
+	/**
+	 * 遍历远程目录树并写入快照文件，按文件名排序深度优先遍历，边遍历边写入
+	 *
+	 * 启用元数据缓存时，在mget/ls之后立即生成快照可以复用缓存中的目录列表
+	 * @param remotePath 远程目录
+	 * @param snapshotFile 快照文件
+	 * @return 快照中的文件数（远程目录不存在时写入空的快照）
+	 */
+	public long snapshot(String remotePath, File snapshotFile) throws IOException {
+		return this.snapshot(remotePath, snapshotFile, null);
+	}
+
+	/**
+	 * 以上次的快照为基础增量遍历远程目录树并写入快照文件
+	 *
+	 * 子目录的修改时间与上次快照相同时（目录下没有新增、删除或重命名文件），不再列出该目录，
+	 * 直接使用上次快照中该目录下的文件，只查询其中子目录的修改时间，因此遍历的开销与变化的目录数成正比。
+	 * 原地修改文件内容不会改变目录的修改时间，需要定期完整遍历（previous为null）。
+	 * 不能直接查询单个路径时（{@link #isStatDirect()}返回false，例如不支持MLST的FTP服务器），
+	 * 子目录的修改时间只能从所在目录的列表中获得，未变化但包含子目录的目录仍然列出一次，
+	 * 只有未变化且没有子目录的目录不再列出
+	 * @param remotePath 远程目录
+	 * @param snapshotFile 快照文件
+	 * @param previous 上次的快照文件，为null时完整遍历
+	 * @return 快照中的文件数（远程目录不存在时写入空的快照）
+	 */
+	public long snapshot(String remotePath, File snapshotFile, File previous) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		assertNotNull(snapshotFile, LOCAL_PATH_CAN_NOT_BE_NULL);
+		T entry = this.stat(remotePath);
+		if(entry == null) {
+			logger.warn("{} does not exists", remotePath);
+		} else {
+			assertTrue(isDir(entry), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
+		}
+		try (RemoteSnapshot.Reader reader = previous != null ? new RemoteSnapshot.Reader(previous) : null;
+				RemoteSnapshot.Writer writer = new RemoteSnapshot.Writer(snapshotFile, reader != null ? reader.getFullScanTime() : System.currentTimeMillis())) {
+			if(entry != null) {
+				scan(remotePath, "", reader, writer);
+			}
+			return writer.getCount();
+		}
+	}
+
+	/**
+	 * 列出目录并写入快照，子目录的修改时间未变化时使用上次快照中的文件
+	 * @param remotePath 远程目录
+	 * @param prefix 目录在快照中的路径前缀（根目录为空字符串，其他以/结尾）
+	 * @param previous 上次的快照，为null时完整遍历
+	 * @param writer 新的快照
+	 */
+	private void scan(String remotePath, String prefix, RemoteSnapshot.Reader previous, RemoteSnapshot.Writer writer) throws IOException {
+		List<T> list = new ArrayList<T>(this.doLs(remotePath));
+		list.sort((e1, e2) -> RemoteSnapshot.compare(getFileName(e1), getFileName(e2)));
+		for(T e : list) {
+			String name = getFileName(e);
+			boolean dir = isDir(e);
+			RemoteSnapshot.Entry current = new RemoteSnapshot.Entry(prefix + name, dir ? 0L : getSize(e), getModificationTime(e), dir);
+			writer.write(current);
+			if(dir) {
+				String path = remotePath + (remotePath.endsWith("/") ? "" : "/") + name;
+				RemoteSnapshot.Entry last = seek(previous, current.getPath());
+				if(last != null && last.isDirectory() && last.getModificationTime() == current.getModificationTime()) {
+					reuse(path, current.getPath() + "/", previous, writer);
+				} else {
+					scan(path, current.getPath() + "/", previous, writer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 目录未变化，使用上次快照中的直接子文件，查询子目录的修改时间决定是否列出子目录
+	 * @param remotePath 远程目录
+	 * @param prefix 目录在快照中的路径前缀（以/结尾）
+	 * @param previous 上次的快照，已读取到该目录
+	 * @param writer 新的快照
+	 */
+	private void reuse(String remotePath, String prefix, RemoteSnapshot.Reader previous, RemoteSnapshot.Writer writer) throws IOException {
+		// 不能直接查询单个路径时，子目录的状态从一次父目录列表中获取
+		Map<String, T> children = null;
+		RemoteSnapshot.Entry e = null;
+		while((e = previous.peek()) != null && e.getPath().startsWith(prefix)) {
+			previous.read();
+			String name = e.getPath().substring(prefix.length());
+			if(name.indexOf('/') >= 0) {
+				// 已重新列出的子目录中剩余的记录
+				continue;
+			}
+			if(!e.isDirectory()) {
+				writer.write(e);
+				continue;
+			}
+			String path = remotePath + "/" + name;
+			T stat;
+			if(this.isStatDirect()) {
+				stat = this.doStat(path);
+			} else {
+				if(children == null) {
+					children = new HashMap<String, T>();
+					for(T child : this.doLs(remotePath)) {
+						children.put(getFileName(child), child);
+					}
+				}
+				stat = children.get(name);
+			}
+			if(stat == null) {
+				continue;
+			}
+			RemoteSnapshot.Entry current = new RemoteSnapshot.Entry(e.getPath(), isDir(stat) ? 0L : getSize(stat), getModificationTime(stat), isDir(stat));
+			writer.write(current);
+			if(!current.isDirectory()) {
+				continue;
+			}
+			if(current.getModificationTime() == e.getModificationTime()) {
+				reuse(path, current.getPath() + "/", previous, writer);
+			} else {
+				scan(path, current.getPath() + "/", previous, writer);
+			}
+		}
+	}
+
+	/**
+	 * 跳过上次快照中路径小于path的记录
+	 * @return path对应的记录，不存在返回null
+	 */
+	private static RemoteSnapshot.Entry seek(RemoteSnapshot.Reader previous, String path) throws IOException {
+		if(previous == null) {
+			return null;
+		}
+		RemoteSnapshot.Entry e = null;
+		while((e = previous.peek()) != null && RemoteSnapshot.compare(e.getPath(), path) < 0) {
+			previous.read();
+		}
+		if(e != null && e.getPath().equals(path)) {
+			return previous.read();
+		}
+		return null;
+	}
+
+	/**
+	 * 生成远程目录树的新快照（完整遍历）并与上次的快照比较，按路径顺序回调变化的文件，比较完成后新快照替换旧快照
+	 * @param remotePath 远程目录
+	 * @param snapshotFile 上次的快照文件，不存在时所有文件都作为新增文件
+	 * @param listener 处理变化的文件（如调用get/put传输变化的文件）
+	 */
+	public void diff(String remotePath, File snapshotFile, RemoteSnapshot.Listener listener) throws IOException {
+		this.diff(remotePath, snapshotFile, listener, 0L);
+	}
+
+	/**
+	 * 生成远程目录树的新快照并与上次的快照比较，按路径顺序回调变化的文件，比较完成后新快照替换旧快照
+	 * @param remotePath 远程目录
+	 * @param snapshotFile 上次的快照文件，不存在时所有文件都作为新增文件
+	 * @param listener 处理变化的文件（如调用get/put传输变化的文件）
+	 * @param fullScanInterval 完整遍历的间隔(ms)，距离上次完整遍历不超过该间隔时增量遍历，小于等于0时总是完整遍历
+	 */
+	public void diff(String remotePath, File snapshotFile, RemoteSnapshot.Listener listener, long fullScanInterval) throws IOException {
+		assertNotNull(snapshotFile, LOCAL_PATH_CAN_NOT_BE_NULL);
+		assertNotNull(listener, "listener can not be null");
+		File current = new File(snapshotFile.getAbsolutePath() + ".new");
+		try {
+			if(!snapshotFile.exists()) {
+				new RemoteSnapshot.Writer(snapshotFile, 0L).close();
+			}
+			long fullScanTime = 0L;
+			try (RemoteSnapshot.Reader reader = new RemoteSnapshot.Reader(snapshotFile)) {
+				fullScanTime = reader.getFullScanTime();
+			}
+			boolean incremental = fullScanInterval > 0 && System.currentTimeMillis() - fullScanTime < fullScanInterval;
+			this.snapshot(remotePath, current, incremental ? snapshotFile : null);
+			RemoteSnapshot.diff(snapshotFile, current, listener);
+			Files.move(current.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			current.delete();
+		}
+	}
+
+	/**
+	 * 修改时间精确到秒比较
+	 */
+	private static boolean isSameTime(long t1, long t2) {
+		return t1 / 1000 == t2 / 1000;
+	}
+
+	/**
+	 * 递归删除本地文件
+	 * @param file 本地文件或目录
+	 */
+	private static void deleteLocal(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File f : children) {
+				deleteLocal(f);
+			}
+		}
+		if(!file.delete()) {
+			logger.warn("{} can not be deleted", file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * 远程文件是否存在
+	 * @param remotePath 远程目录或文件
+	 * @return 存在返回true，否则返回false
+	 */
+	public abstract boolean exists(String remotePath);
+
+	/**
+	 * 查询文件或目录状态（不检查路径），用于只需要修改时间等属性的场景；
+	 * 默认实现调用{@link #stat(String)}，可能会列出父目录，见{@link #isStatDirect()}
+	 * @param remotePath 文件或目录路径
+	 * @return 文件或目录状态信息，不存在返回null
+	 */
+	protected T doStat(String remotePath) throws IOException {
+		return this.stat(remotePath);
+	}
+
+	/**
+	 * {@link #doStat(String)}是否直接查询单个路径而不列出父目录，
+	 * 返回false时查询同一目录下多个路径的状态应使用一次目录列表
+	 */
+	protected boolean isStatDirect() {
+		return false;
+	}
+
+	/**
+	 * 查看文件或目录状态
+	 * @param remotePath 文件或目录路径
+	 * @return 文件或目录状态信息
+	 */
+	public abstract T stat(String remotePath);
+
+	/**
+	 * 是否为目录
+	 * @param entry 指定文件
+	 * @return 是目录返回true，否则返回false
+	 */
+	public abstract boolean isDir(T entry);
+
+	/**
+	 * 获取文件名
+	 * @param entry 指定文件
+	 * @return 文件名
+	 */
+	public abstract String getFileName(T entry);
+
+	/**
+	 * 获取文件最近修改时间
+	 * @param entry 指定文件
+	 * @return 上次修改时间对应的timestamp
+	 */
+	public abstract long getModificationTime(T entry);
+
+	/**
+	 * 获取精确到秒的文件修改时间，目录列表中的修改时间精度不够时单独查询
+	 * @param entry 指定文件
+	 * @param remotePath 文件路径
+	 * @return 上次修改时间对应的timestamp
+	 */
+	protected long getModificationTime(T entry, String remotePath) throws IOException {
+		return getModificationTime(entry);
+	}
+
+	/**
+	 * 设置远程文件修改时间（精确到秒）
+	 * @param remotePath 远程文件路径
+	 * @param time 修改时间对应的timestamp
+	 */
+	public abstract void setModificationTime(String remotePath, long time) throws IOException;
+
+	/**
+	 * 获取文件大小
+	 * @param entry 指定文件
+	 * @return 文件大小(byte)
+	 */
+	public abstract long getSize(T entry);
+
+	/**
+	 * 启用元数据缓存，exists/stat/ls优先从缓存读取，put/rm/mkdir/rmdir后清除相关缓存
+	 * @param ttl 缓存有效期(ms)
+	 * @param maxEntries 最大缓存条目数
+	 */
+	public void enableCache(long ttl, int maxEntries) {
+		this.cache = new MetadataCache<T>(ttl, maxEntries);
+	}
+
+	/**
+	 * 停用元数据缓存
+	 */
+	public void disableCache() {
+		this.cache = null;
+	}
+
+	/**
+	 * 清空元数据缓存以及mkdirRecursive记录的已存在目录
+	 */
+	public void clearCache() {
+		MetadataCache<T> cache = this.cache;
+		if(cache != null) {
+			cache.clear();
+		}
+		knownDirs.clear();
+	}
+
+	/**
+	 * 恢复默认设置：停用元数据缓存，清空已存在目录的记录，校验设置恢复为系统属性hello-ftp.verify的值；
+	 * 归还到连接池时调用，下一个借用者不会继承之前的设置
+	 */
+	void reset() {
+		this.disableCache();
+		this.knownDirs.clear();
+		this.verify = Boolean.getBoolean(VERIFY_PROPERTY);
+	}
+
+	/**
+	 * 是否启用了元数据缓存
+	 */
+	protected boolean isCacheEnabled() {
+		return this.cache != null;
+	}
+
+	/**
+	 * 查询文件元数据，启用缓存时优先从缓存读取
+	 * @param remotePath 远程路径
+	 * @param loader 从服务器查询元数据
+	 * @return 文件元数据，不存在返回null
+	 */
+	protected T cachedStat(String remotePath, MetadataCache.Loader<T> loader) throws IOException {
+		MetadataCache<T> cache = this.cache;
+		return cache == null ? loader.load() : cache.stat(remotePath, loader);
+	}
+
+	/**
+	 * 查询目录列表（包括隐藏文件），启用缓存时优先从缓存读取，返回的列表不能修改
+	 * @param remotePath 远程目录
+	 * @param loader 从服务器查询目录列表
+	 * @return 目录列表
+	 */
+	protected List<T> cachedList(String remotePath, MetadataCache.Loader<List<T>> loader) throws IOException {
+		MetadataCache<T> cache = this.cache;
+		return cache == null ? loader.load() : cache.list(remotePath, loader);
+	}
+
+	/**
+	 * 将目录列表中的子项缓存为各自路径的元数据
+	 * @param remotePath 远程目录
+	 * @param children 目录列表
+	 */
+	protected void cacheChildren(String remotePath, List<T> children) {
+		MetadataCache<T> cache = this.cache;
+		if(cache != null) {
+			String dir = MetadataCache.normalize(remotePath);
+			for(T e : children) {
+				cache.putStat(dir + ("/".equals(dir) ? "" : "/") + getFileName(e), e);
+			}
+		}
+	}
+
+	/**
+	 * 清除被修改的文件或目录的缓存
+	 * @param remotePath 远程路径
+	 */
+	protected void invalidate(String remotePath) {
+		MetadataCache<T> cache = this.cache;
+		if(cache != null) {
+			cache.invalidate(remotePath);
+		}
+	}
+
+	/**
+	 * 清除被删除或批量修改的目录下所有路径的缓存
+	 * @param remotePath 远程目录
+	 */
+	protected void invalidateTree(String remotePath) {
+		MetadataCache<T> cache = this.cache;
+		if(cache != null) {
+			cache.invalidateTree(remotePath);
+		}
+		String path = trimTrailingSlash(remotePath);
+		String prefix = path.endsWith("/") ? path : path + "/";
+		// 绝对路径与相对路径之间无法比较，一并清除
+		knownDirs.removeIf(dir -> dir.equals(path) || dir.startsWith(prefix) || dir.startsWith("/") != path.startsWith("/"));
+	}
+
+	/**
+	 * 去掉路径末尾的/（根目录除外），不改变相对路径
+	 */
+	private static String trimTrailingSlash(String path) {
+		String p = StringUtils.trimToEmpty(path);
+		while(p.length() > 1 && p.endsWith("/")) {
+			p = p.substring(0, p.length() - 1);
+		}
+		return p;
+	}
+
+	/**
+	 * 检查连接是否可用（FTP发送NOOP，SFTP执行pwd）
+	 * @return 连接可用返回true，否则返回false
+	 */
+	public abstract boolean isAlive();
+
+	/**
+	 * 使用相同的连接参数创建一个新连接
+	 * @return 新连接
+	 */
+	protected abstract RemoteClient<T> connect() throws IOException;
+
+	/**
+	 * 获取一个与当前连接参数相同的新连接，当前连接来自连接池时从连接池借出
+	 * @return 新连接
+	 */
+	public RemoteClient<T> duplicate() throws IOException {
+		RemoteClient<T> c = this.pool != null ? this.pool.borrow(this.poolKey, this::connect) : this.connect();
+		c.verify = this.verify;
+		return c;
+	}
+
+	/**
+	 * 获取一个与当前连接参数相同的新连接，当前连接来自连接池且连接数已达到上限时不等待
+	 * @return 新连接，连接池中的连接数已达到上限时返回null
+	 */
+	RemoteClient<T> tryDuplicate() throws IOException {
+		if(this.pool == null) {
+			return this.duplicate();
+		}
+		RemoteClient<T> c = this.pool.tryBorrow(this.poolKey, this::connect);
+		if(c != null) {
+			c.verify = this.verify;
+		}
+		return c;
+	}
+
+	/**
+	 * 断开连接并释放资源
+	 */
+	protected abstract void disconnect() throws IOException;
+
+	/**
+	 * 关闭连接，如果连接来自连接池则归还到连接池；断开连接前保存自动调整的学习结果
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.pool != null && this.pool.release(this)) {
+			return;
+		}
+		if(this.tuning != null) {
+			TransferTuning.save();
+		}
+		this.disconnect();
+	}
+
+	/**
+	 * 将连接绑定到连接池
+	 * @param pool 连接池
+	 * @param key 连接在连接池中对应的key
+	 */
+	void bind(RemoteClientPool pool, RemoteClientPool.Key key) {
+		this.pool = pool;
+		this.poolKey = key;
+	}
+
+	/**
+	 * 获取连接在连接池中对应的key
+	 * @return 非池化连接返回null
+	 */
+	RemoteClientPool.Key getPoolKey() {
+		return this.poolKey;
+	}
+
+	/**
+	 * 获取当前连接所属主机的传输指标（同一主机的所有连接共享）
+	 */
+	public TransferMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	void setMetrics(TransferMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * 获取当前连接所属主机的自动调整参数（同一主机的所有连接共享）
+	 * @return 未启用自动调整时返回null
+	 */
+	public TransferTuning getTuning() {
+		return this.tuning;
+	}
+
+	void setTuning(TransferTuning tuning) {
+		this.tuning = tuning;
+	}
+
+	/**
+	 * 是否在get/put时校验文件摘要
+	 */
+	public boolean isVerify() {
+		return verify;
+	}
+
+	/**
+	 * 设置是否在get/put时校验文件摘要：传输过程中计算摘要，完成后与服务器计算的摘要比较，不一致时传输失败，
+	 * 服务器不支持摘要命令时不校验；默认值由系统属性hello-ftp.verify决定，新连接（如并行传输时）继承当前连接的设置
+	 *
+	 * 分段传输的各段不按顺序写入，不校验
+	 * @param verify 是否校验
+	 */
+	public void setVerify(boolean verify) {
+		this.verify = verify;
+	}
+
+	/**
+	 * 服务器支持的摘要算法（{@link TransferHash}中的常量）
+	 * @return 服务器不支持摘要命令时返回null
+	 */
+	protected abstract String hashAlgorithm() throws IOException;
+
+	/**
+	 * 由服务器计算远程文件的摘要
+	 * @param remotePath 远程文件路径
+	 * @param algorithm 摘要算法，{@link #hashAlgorithm()}的结果
+	 * @return 十六进制的摘要，服务器不支持时返回null
+	 */
+	protected abstract String remoteHash(String remotePath, String algorithm) throws IOException;
+
+	/**
+	 * 创建本次传输使用的摘要
+	 * @return 未启用校验或服务器不支持时返回null
+	 */
+	protected TransferHash newHash() throws IOException {
+		if(!verify) {
+			return null;
+		}
+		String algorithm = hashAlgorithm();
+		return algorithm != null ? new TransferHash(algorithm) : null;
+	}
+
+	/**
+	 * 校验下载的文件，摘要不一致时删除本地文件并抛出IOException
+	 * @param hash 下载过程中计算的摘要，为null时不校验
+	 * @param remotePath 远程文件路径
+	 * @param localFile 本地文件
+	 */
+	protected void verifyGet(TransferHash hash, String remotePath, File localFile) throws IOException {
+		String mismatch = verify(hash, remotePath);
+		if(mismatch != null) {
+			localFile.delete();
+			throw new IOException(mismatch);
+		}
+	}
+
+	/**
+	 * 校验上传的文件，摘要不一致时删除远程文件并抛出IOException
+	 * @param hash 上传过程中计算的摘要，为null时不校验
+	 * @param remoteFile 远程文件完整路径
+	 */
+	protected void verifyPut(TransferHash hash, String remoteFile) throws IOException {
+		String mismatch = verify(hash, remoteFile);
+		if(mismatch != null) {
+			try {
+				this.doRm(remoteFile);
+			} catch (IOException e) {
+				logger.warn("failed to remove {}: {}", remoteFile, e.getMessage());
+			}
+			throw new IOException(mismatch);
+		}
+	}
+
+	/**
+	 * 比较本地计算的摘要与服务器计算的摘要
+	 * @return 一致或无法校验时返回null，否则返回错误信息
+	 */
+	private String verify(TransferHash hash, String remotePath) throws IOException {
+		if(hash == null) {
+			return null;
+		}
+		String local = hash.hex();
+		String remote = remoteHash(remotePath, hash.getAlgorithm());
+		if(remote == null) {
+			logger.warn("{} checksum of {} is not available", hash.getAlgorithm(), remotePath);
+			return null;
+		}
+		if(hash.matches(local, remote)) {
+			return null;
+		}
+		getMetrics().error("CHECKSUM");
+		return String.format(CHECKSUM_MISMATCH, hash.getAlgorithm(), remotePath, local, remote);
+	}
+
+	/**
+	 * 记录一次传输的吞吐量，用于自动调整
+	 * @param bytes 传输的字节数
+	 * @param start 开始时间(System.nanoTime())
+	 */
+	protected void learn(long bytes, long start) {
+		if(this.tuning != null) {
+			this.tuning.transferred(bytes, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * 未指定并行度时使用的并行度：启用自动调整时按主机的RTT计算，否则为1
+	 */
+	protected int defaultParallelism() {
+		return this.tuning != null ? this.tuning.getParallelism() : 1;
+	}
+
+	/**
+	 * 未指定分段数时单个文件的分段数：启用自动调整时按主机的RTT和带宽时延积计算，每段不小于{@link #MIN_SEGMENT_SIZE}；
+	 * 未启用自动调整或需要校验摘要（分段传输不校验）时为1
+	 * @param size 文件大小
+	 */
+	protected int defaultSegments(long size) {
+		if(this.tuning == null || this.verify) {
+			return 1;
+		}
+		return (int) Math.max(1L, Math.min(this.tuning.getSegments(), size / MIN_SEGMENT_SIZE));
+	}
 
 	/**
 	 * 检查指定对象不能为空
@@ -0,0 +1,474 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+
+/**
+ * FTP/SFTP连接池
+ *
+ * 按(type, host, port, user, proxy)对连接分组，借出时检查连接是否可用，
+ * 定期关闭空闲超时的连接，每组连接数不超过maxPerKey，
+ * 调用{@link RemoteClient#close()}时连接归还到连接池
+ */
+public class RemoteClientPool implements Closeable {
+
+	public static final String POOL_IS_CLOSED = "remote client pool is closed";
+	public static final String BORROW_TIMEOUT = "timeout waiting for idle client: %s";
+
+	public static final Logger logger = LoggerFactory.getLogger(RemoteClientPool.class);
+
+	/** 每组最大连接数 */
+	private final int maxPerKey;
+	/** 空闲连接最大存活时间(ms) */
+	private final long maxIdleTime;
+	/** 连接数达到上限时借出连接的最大等待时间(ms) */
+	private final long maxWait;
+	/** 按key分组的连接 */
+	private final ConcurrentMap<Key, Entries> pools = new ConcurrentHashMap<Key, Entries>();
+	/** 定期清理空闲连接 */
+	private final ScheduledExecutorService evictor;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * 创建一个连接池（每组最多8个连接，空闲60秒后关闭，最多等待60秒）
+	 */
+	public RemoteClientPool() {
+		this(8, 60 * 1000L, 60 * 1000L);
+	}
+
+	/**
+	 * 创建一个连接池
+	 * @param maxPerKey 每组最大连接数
+	 * @param maxIdleTime 空闲连接最大存活时间(ms)
+	 * @param maxWait 连接数达到上限时借出连接的最大等待时间(ms)
+	 */
+	public RemoteClientPool(int maxPerKey, long maxIdleTime, long maxWait) {
+		RemoteClient.assertTrue(maxPerKey > 0, "maxPerKey must be greater than 0");
+		RemoteClient.assertTrue(maxIdleTime > 0, "maxIdleTime must be greater than 0");
+		this.maxPerKey = maxPerKey;
+		this.maxIdleTime = maxIdleTime;
+		this.maxWait = maxWait;
+		this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "remote-client-pool-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		this.evictor.scheduleWithFixedDelay(this::evict, maxIdleTime, maxIdleTime, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 从连接池借出一个FTP连接
+	 * @param hostname FTP主机
+	 * @param port FTP端口
+	 * @param username FTP用户名
+	 * @param password FTP用户密码
+	 * @param timeout 连接超时时间(ms)
+	 * @param proxyHost SOCK5代理主机
+	 * @param proxyPort SOCK5代理端口
+	 */
+	public FtpClient borrowFtpClient(String hostname, Integer port, String username, String password, int timeout, String proxyHost, Integer proxyPort) throws IOException {
+		return borrowFtpClient(hostname, port, username, password, timeout, proxyHost, proxyPort, TransferCompression.getDefaultLevel());
+	}
+
+	/**
+	 * 从连接池借出一个FTP连接，压缩级别不同的连接不共用
+	 * @param hostname FTP主机
+	 * @param port FTP端口
+	 * @param username FTP用户名
+	 * @param password FTP用户密码
+	 * @param timeout 连接超时时间(ms)
+	 * @param proxyHost SOCK5代理主机
+	 * @param proxyPort SOCK5代理端口
+	 * @param compression 压缩级别(0-9)，0表示不压缩
+	 */
+	public FtpClient borrowFtpClient(String hostname, Integer port, String username, String password, int timeout, String proxyHost, Integer proxyPort, int compression) throws IOException {
+		Key key = new Key("FTP", hostname, port, username, Key.fingerprint(password), proxyHost, proxyPort, compression);
+		return borrow(key, () -> new FtpClient(hostname, port, username, password, timeout, proxyHost, proxyPort, compression));
+	}
+
+	/**
+	 * 从连接池借出一个SFTP连接
+	 * @param hostname SFTP主机
+	 * @param port SFTP端口
+	 * @param username SFTP用户名
+	 * @param password SFTP用户密码
+	 * @param privateKey 私钥
+	 * @param passphrase 私钥密码
+	 * @param timeout 连接超时时间(ms)
+	 * @param proxyHost SOCK5代理主机
+	 * @param proxyPort SOCK5代理端口
+	 */
+	public SftpClient borrowSftpClient(String hostname, Integer port, String username, String password, String privateKey, String passphrase, int timeout, String proxyHost, Integer proxyPort) throws IOException {
+		return borrowSftpClient(hostname, port, username, password, privateKey, passphrase, timeout, proxyHost, proxyPort, TransferCompression.getDefaultLevel());
+	}
+
+	/**
+	 * 从连接池借出一个SFTP连接，压缩级别不同的连接不共用
+	 * @param hostname SFTP主机
+	 * @param port SFTP端口
+	 * @param username SFTP用户名
+	 * @param password SFTP用户密码
+	 * @param privateKey 私钥
+	 * @param passphrase 私钥密码
+	 * @param timeout 连接超时时间(ms)
+	 * @param proxyHost SOCK5代理主机
+	 * @param proxyPort SOCK5代理端口
+	 * @param compression 压缩级别(0-9)，0表示不压缩
+	 */
+	public SftpClient borrowSftpClient(String hostname, Integer port, String username, String password, String privateKey, String passphrase, int timeout, String proxyHost, Integer proxyPort, int compression) throws IOException {
+		Key key = new Key("SFTP", hostname, port, username, Key.fingerprint(password, privateKey, passphrase), proxyHost, proxyPort, compression);
+		return borrow(key, () -> {
+			try {
+				return new SftpClient(hostname, port, username, password, privateKey, passphrase, timeout, proxyHost, proxyPort, compression);
+			} catch (JSchException | SftpException e) {
+				throw new IOException(e);
+			}
+		});
+	}
+
+	/**
+	 * 从连接池借出一个连接，没有可用的空闲连接时使用factory创建新连接
+	 * @param key 连接对应的key
+	 * @param factory 创建连接
+	 * @return 可用的连接
+	 */
+	public <C extends RemoteClient<?>> C borrow(Key key, ClientFactory<C> factory) throws IOException {
+		return borrow(key, factory, true);
+	}
+
+	/**
+	 * 从连接池借出一个连接，连接数已达到上限时不等待
+	 * @param key 连接对应的key
+	 * @param factory 创建连接
+	 * @return 可用的连接，连接数已达到上限时返回null
+	 */
+	<C extends RemoteClient<?>> C tryBorrow(Key key, ClientFactory<C> factory) throws IOException {
+		return borrow(key, factory, false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <C extends RemoteClient<?>> C borrow(Key key, ClientFactory<C> factory, boolean wait) throws IOException {
+		RemoteClient.assertNotNull(key, "key can not be null");
+		RemoteClient.assertFalse(closed, POOL_IS_CLOSED);
+		Entries entries = pools.computeIfAbsent(key, k -> new Entries(maxPerKey));
+		if(!wait) {
+			if(!entries.permits.tryAcquire()) {
+				return null;
+			}
+		} else {
+			try {
+				if(!entries.permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+					throw new IOException(String.format(BORROW_TIMEOUT, key));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(e.getMessage());
+			}
+		}
+		try {
+			Idle idle = null;
+			while((idle = entries.pollIdle()) != null) {
+				if(isExpired(idle) || !idle.client.isAlive()) {
+					disconnect(idle.client);
+					continue;
+				}
+				entries.borrowed(idle.client);
+				return (C) idle.client;
+			}
+			C client = factory.create();
+			client.bind(this, key);
+			entries.borrowed(client);
+			return client;
+		} catch (IOException | RuntimeException e) {
+			entries.permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * 归还连接
+	 * @param client 要归还的连接
+	 * @return 已归还返回true，连接池已关闭等无法归还的情况返回false
+	 */
+	boolean release(RemoteClient<?> client) {
+		Entries entries = pools.get(client.getPoolKey());
+		if(entries == null) {
+			return false;
+		}
+		synchronized (entries) {
+			if(!entries.borrowed.remove(client)) {
+				// 已经归还过
+				return !closed;
+			}
+			if(!closed) {
+				client.reset();
+				entries.idle.push(new Idle(client, System.currentTimeMillis()));
+			}
+		}
+		entries.permits.release();
+		return !closed;
+	}
+
+	/**
+	 * 关闭所有空闲超时的连接
+	 */
+	public void evict() {
+		for(Entries entries : pools.values()) {
+			List<RemoteClient<?>> expired = new ArrayList<RemoteClient<?>>();
+			synchronized (entries) {
+				Iterator<Idle> iterator = entries.idle.iterator();
+				while(iterator.hasNext()) {
+					Idle idle = iterator.next();
+					if(isExpired(idle)) {
+						iterator.remove();
+						expired.add(idle.client);
+					}
+				}
+			}
+			// 断开连接（如FTP的QUIT）可能较慢，不在锁内执行，避免阻塞同一key的借出和归还
+			expired.forEach(this::disconnect);
+		}
+	}
+
+	/**
+	 * 空闲连接数
+	 * @param key 连接对应的key
+	 * @return 指定key对应的空闲连接数
+	 */
+	public int getIdleCount(Key key) {
+		Entries entries = pools.get(key);
+		if(entries == null) {
+			return 0;
+		}
+		synchronized (entries) {
+			return entries.idle.size();
+		}
+	}
+
+	/**
+	 * 已借出的连接数
+	 * @param key 连接对应的key
+	 * @return 指定key对应的已借出连接数
+	 */
+	public int getActiveCount(Key key) {
+		Entries entries = pools.get(key);
+		if(entries == null) {
+			return 0;
+		}
+		synchronized (entries) {
+			return entries.borrowed.size();
+		}
+	}
+
+	/**
+	 * 关闭连接池及所有空闲连接，已借出的连接在调用close()时关闭；保存自动调整的学习结果
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		evictor.shutdownNow();
+		for(Entries entries : pools.values()) {
+			List<Idle> idle;
+			synchronized (entries) {
+				idle = new ArrayList<Idle>(entries.idle);
+				entries.idle.clear();
+			}
+			idle.forEach(i -> disconnect(i.client));
+		}
+		TransferTuning.save();
+	}
+
+	private boolean isExpired(Idle idle) {
+		return System.currentTimeMillis() - idle.since >= maxIdleTime;
+	}
+
+	private void disconnect(RemoteClient<?> client) {
+		try {
+			client.disconnect();
+		} catch (IOException e) {
+			logger.warn(e.getMessage());
+		}
+	}
+
+	/**
+	 * 创建连接
+	 */
+	@FunctionalInterface
+	public interface ClientFactory<C extends RemoteClient<?>> { C create() throws IOException; }
+
+	/**
+	 * 连接分组的key
+	 */
+	public static final class Key {
+
+		private final String type;
+		private final String host;
+		private final Integer port;
+		private final String username;
+		/** 密码、私钥等认证信息的摘要，认证信息不同的连接不能共用 */
+		private final String credentials;
+		private final String proxyHost;
+		private final Integer proxyPort;
+		/** 压缩级别，压缩级别不同的连接不能共用 */
+		private final int compression;
+
+		/**
+		 * @param type 协议类型(FTP/SFTP)
+		 * @param host 主机
+		 * @param port 端口
+		 * @param username 用户名
+		 * @param proxyHost SOCK5代理主机
+		 * @param proxyPort SOCK5代理端口
+		 */
+		public Key(String type, String host, Integer port, String username, String proxyHost, Integer proxyPort) {
+			this(type, host, port, username, null, proxyHost, proxyPort);
+		}
+
+		/**
+		 * @param type 协议类型(FTP/SFTP)
+		 * @param host 主机
+		 * @param port 端口
+		 * @param username 用户名
+		 * @param credentials 认证信息的摘要，见{@link #fingerprint(String...)}
+		 * @param proxyHost SOCK5代理主机
+		 * @param proxyPort SOCK5代理端口
+		 */
+		public Key(String type, String host, Integer port, String username, String credentials, String proxyHost, Integer proxyPort) {
+			this(type, host, port, username, credentials, proxyHost, proxyPort, TransferCompression.getDefaultLevel());
+		}
+
+		/**
+		 * @param type 协议类型(FTP/SFTP)
+		 * @param host 主机
+		 * @param port 端口
+		 * @param username 用户名
+		 * @param credentials 认证信息的摘要，见{@link #fingerprint(String...)}
+		 * @param proxyHost SOCK5代理主机
+		 * @param proxyPort SOCK5代理端口
+		 * @param compression 压缩级别(0-9)
+		 */
+		public Key(String type, String host, Integer port, String username, String credentials, String proxyHost, Integer proxyPort, int compression) {
+			this.type = type;
+			this.host = host;
+			this.port = port;
+			this.username = username;
+			this.credentials = credentials;
+			this.proxyHost = proxyHost;
+			this.proxyPort = proxyPort;
+			this.compression = compression;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return Objects.equals(type, other.type) && Objects.equals(host, other.host)
+					&& Objects.equals(port, other.port) && Objects.equals(username, other.username)
+					&& Objects.equals(credentials, other.credentials) && Objects.equals(proxyHost, other.proxyHost) && Objects.equals(proxyPort, other.proxyPort)
+					&& compression == other.compression;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, host, port, username, credentials, proxyHost, proxyPort, compression);
+		}
+
+		/**
+		 * 计算认证信息的SHA-256摘要，key中不保存明文密码
+		 * @param secrets 密码、私钥、私钥密码等
+		 * @return 十六进制摘要
+		 */
+		public static String fingerprint(String... secrets) {
+			MessageDigest digest;
+			try {
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			for(String secret : secrets) {
+				// 区分null与空字符串，并分隔各项
+				digest.update((byte) (secret == null ? 0 : 1));
+				if(secret != null) {
+					digest.update(secret.getBytes(StandardCharsets.UTF_8));
+				}
+				digest.update((byte) 0);
+			}
+			StringBuilder sb = new StringBuilder();
+			for(byte b : digest.digest()) {
+				sb.append(String.format("%02x", b & 0xff));
+			}
+			return sb.toString();
+		}
+
+		@Override
+		public String toString() {
+			return type + "://" + username + "@" + host + ":" + port + (proxyHost != null ? " via " + proxyHost + ":" + proxyPort : "");
+		}
+	}
+
+	/**
+	 * 同一个key下的所有连接
+	 */
+	private static class Entries {
+		private final Semaphore permits;
+		private final Deque<Idle> idle = new ArrayDeque<Idle>();
+		private final Set<RemoteClient<?>> borrowed = Collections.newSetFromMap(new IdentityHashMap<RemoteClient<?>, Boolean>());
+
+		Entries(int maxPerKey) {
+			this.permits = new Semaphore(maxPerKey, true);
+		}
+
+		synchronized Idle pollIdle() {
+			return idle.poll();
+		}
+
+		synchronized void borrowed(RemoteClient<?> client) {
+			borrowed.add(client);
+		}
+	}
+
+	/**
+	 * 空闲连接
+	 */
+	private static class Idle {
+		private final RemoteClient<?> client;
+		private final long since;
+
+		Idle(RemoteClient<?> client, long since) {
+			this.client = client;
+			this.since = since;
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.my.project;
+
+/**
+ * 与java.util.concurrent.Flow（Java 9）相同的响应式流接口，项目编译为Java 8，不能直接使用Flow
+ *
+ * 接口的方法与Flow一一对应，Java 9及以上版本可以通过方法引用互相转换，如
+ * {@code subscriber::onNext}、{@code subscription::request}；
+ * 订阅者通过{@link Subscription#request(long)}声明需求，发布者发送的元素不超过已请求的数量
+ */
+public final class RemoteFlow {
+
+	private RemoteFlow() {
+	}
+
+	/**
+	 * 元素的发布者
+	 */
+	@FunctionalInterface
+	public interface Publisher<T> {
+		/**
+		 * 添加订阅者，之后依次调用onSubscribe、onNext（不超过请求的数量）、onError或onComplete
+		 * @param subscriber 订阅者
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * 元素的订阅者
+	 */
+	public interface Subscriber<T> {
+		void onSubscribe(Subscription subscription);
+		void onNext(T item);
+		void onError(Throwable throwable);
+		void onComplete();
+	}
+
+	/**
+	 * 发布者与订阅者之间的订阅关系
+	 */
+	public interface Subscription {
+		/**
+		 * 请求n个元素
+		 * @param n 请求的数量，小于等于0时发布者以IllegalArgumentException结束订阅
+		 */
+		void request(long n);
+		/**
+		 * 取消订阅，之后不再收到新的元素
+		 */
+		void cancel();
+	}
+
+	/**
+	 * 既是订阅者又是发布者的处理阶段
+	 */
+	public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+	}
+
+	/**
+	 * 目录遍历中的一个条目
+	 */
+	public static final class Entry<T> {
+
+		private final String path;
+		private final T entry;
+
+		/**
+		 * @param path 远程路径
+		 * @param entry 文件元数据
+		 */
+		public Entry(String path, T entry) {
+			this.path = path;
+			this.entry = entry;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public T getEntry() {
+			return entry;
+		}
+
+		@Override
+		public String toString() {
+			return path;
+		}
+	}
+
+}
@@ -0,0 +1,16 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 逐条读取远程目录列表的迭代器，读取过程中发生的IOException以UncheckedIOException抛出，
+ * 使用完毕（包括未读取完）后必须关闭以释放数据连接
+ */
+public interface RemoteIterator<T> extends Iterator<T>, Closeable {
+
+	@Override
+	void close() throws IOException;
+
+}
@@ -0,0 +1,301 @@
+package com.my.project;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * 远程目录树快照
+ *
+ * 快照文件按路径排序保存目录树下每个文件的相对路径、大小、修改时间和类型，
+ * 路径按目录层级比较（/小于其他所有字符），与按文件名排序的深度优先遍历顺序一致，
+ * 因此遍历远程目录时可以边遍历边写入，读取时通过内存映射顺序读取，
+ * 两个快照通过归并比较找出变化的文件，内存占用与目录树大小无关
+ *
+ * 文件格式：magic(int) version(int) fullScanTime(long) {pathLength(int) path(UTF-8) size(long) mtime(long) directory(byte)}*
+ */
+public final class RemoteSnapshot {
+
+	public static final String SNAPSHOT_ENTRIES_MUST_BE_SORTED = "snapshot entries must be sorted: %s";
+	public static final String INVALID_SNAPSHOT_FILE = "invalid snapshot file: %s";
+
+	private static final int MAGIC = 0x52534E50;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	/** 每条记录除路径以外的长度 */
+	private static final int RECORD_SIZE = 4 + 8 + 8 + 1;
+	/** 每次映射的最大长度 */
+	private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+	private RemoteSnapshot() { }
+
+	/**
+	 * 按目录层级比较路径，/小于其他所有字符
+	 * @return 小于返回负数，等于返回0，大于返回正数
+	 */
+	public static int compare(String p1, String p2) {
+		int n = Math.min(p1.length(), p2.length());
+		for(int i = 0; i < n; i++) {
+			char c1 = p1.charAt(i);
+			char c2 = p2.charAt(i);
+			if(c1 != c2) {
+				return c1 == '/' ? -1 : c2 == '/' ? 1 : c1 - c2;
+			}
+		}
+		return p1.length() - p2.length();
+	}
+
+	/**
+	 * 归并比较两个快照，按路径顺序回调新增、删除和修改（大小、修改时间或类型不同）的文件
+	 * @param before 旧快照
+	 * @param after 新快照
+	 * @param listener 处理变化的文件
+	 */
+	public static void diff(File before, File after, Listener listener) throws IOException {
+		RemoteClient.assertNotNull(listener, "listener can not be null");
+		try (Reader r1 = new Reader(before); Reader r2 = new Reader(after)) {
+			Entry e1 = r1.read();
+			Entry e2 = r2.read();
+			while(e1 != null || e2 != null) {
+				int c = e1 == null ? 1 : e2 == null ? -1 : compare(e1.getPath(), e2.getPath());
+				if(c < 0) {
+					listener.removed(e1);
+					e1 = r1.read();
+				} else if(c > 0) {
+					listener.added(e2);
+					e2 = r2.read();
+				} else {
+					if(e1.getSize() != e2.getSize() || e1.getModificationTime() != e2.getModificationTime()
+							|| e1.isDirectory() != e2.isDirectory()) {
+						listener.modified(e1, e2);
+					}
+					e1 = r1.read();
+					e2 = r2.read();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 处理两个快照之间变化的文件
+	 */
+	public interface Listener {
+		void added(Entry entry) throws IOException;
+		void removed(Entry entry) throws IOException;
+		void modified(Entry before, Entry after) throws IOException;
+	}
+
+	/**
+	 * 快照中的一个文件或目录
+	 */
+	public static final class Entry {
+
+		private final String path;
+		private final long size;
+		private final long modificationTime;
+		private final boolean directory;
+
+		/**
+		 * @param path 相对于快照根目录的路径（不以/开头）
+		 * @param size 文件大小
+		 * @param modificationTime 修改时间对应的timestamp
+		 * @param directory 是否是目录
+		 */
+		public Entry(String path, long size, long modificationTime, boolean directory) {
+			this.path = path;
+			this.size = size;
+			this.modificationTime = modificationTime;
+			this.directory = directory;
+		}
+
+		public String getPath() { return path; }
+		public long getSize() { return size; }
+		public long getModificationTime() { return modificationTime; }
+		public boolean isDirectory() { return directory; }
+
+		@Override
+		public String toString() {
+			return path + (directory ? "/" : "") + " " + size + " " + modificationTime;
+		}
+	}
+
+	/**
+	 * 按路径顺序写入快照文件
+	 */
+	public static final class Writer implements Closeable {
+
+		private final DataOutputStream output;
+		private String last;
+		private long count = 0;
+
+		/**
+		 * 创建完整遍历生成的快照文件
+		 * @param file 快照文件
+		 */
+		public Writer(File file) throws IOException {
+			this(file, System.currentTimeMillis());
+		}
+
+		/**
+		 * @param file 快照文件
+		 * @param fullScanTime 最近一次完整遍历的时间
+		 */
+		public Writer(File file, long fullScanTime) throws IOException {
+			RemoteClient.assertNotNull(file, RemoteClient.LOCAL_PATH_CAN_NOT_BE_NULL);
+			this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+			this.output.writeInt(MAGIC);
+			this.output.writeInt(VERSION);
+			this.output.writeLong(fullScanTime);
+		}
+
+		/**
+		 * 写入一条记录，路径必须大于上一条记录的路径
+		 */
+		public void write(Entry entry) throws IOException {
+			RemoteClient.assertTrue(last == null || compare(last, entry.getPath()) < 0, String.format(SNAPSHOT_ENTRIES_MUST_BE_SORTED, entry.getPath()));
+			byte[] path = entry.getPath().getBytes(StandardCharsets.UTF_8);
+			output.writeInt(path.length);
+			output.write(path);
+			output.writeLong(entry.getSize());
+			output.writeLong(entry.getModificationTime());
+			output.writeByte(entry.isDirectory() ? 1 : 0);
+			last = entry.getPath();
+			count++;
+		}
+
+		/**
+		 * 已写入的记录数
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			output.close();
+		}
+	}
+
+	/**
+	 * 通过内存映射顺序读取快照文件，大文件分段映射
+	 */
+	public static final class Reader implements RemoteIterator<Entry> {
+
+		private final File file;
+		private final FileChannel channel;
+		private final long size;
+		private final long fullScanTime;
+		/** 当前映射区域在文件中的起始位置 */
+		private long base;
+		private MappedByteBuffer buffer;
+		private Entry next;
+
+		public Reader(File file) throws IOException {
+			RemoteClient.assertNotNull(file, RemoteClient.LOCAL_PATH_CAN_NOT_BE_NULL);
+			this.file = file;
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				this.size = channel.size();
+				map(0L);
+				ensure(HEADER_SIZE);
+				if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+					throw new IOException(String.format(INVALID_SNAPSHOT_FILE, file.getAbsolutePath()));
+				}
+				this.fullScanTime = buffer.getLong();
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * 最近一次完整遍历的时间
+		 */
+		public long getFullScanTime() {
+			return fullScanTime;
+		}
+
+		/**
+		 * 查看下一条记录但不移动读取位置
+		 * @return 下一条记录，已读取完毕返回null
+		 */
+		public Entry peek() throws IOException {
+			if(next == null) {
+				next = read();
+			}
+			return next;
+		}
+
+		/**
+		 * 读取下一条记录
+		 * @return 下一条记录，已读取完毕返回null
+		 */
+		public Entry read() throws IOException {
+			if(next != null) {
+				Entry entry = next;
+				next = null;
+				return entry;
+			}
+			if(base + buffer.position() >= size) {
+				return null;
+			}
+			ensure(4);
+			int length = buffer.getInt();
+			ensure(length + RECORD_SIZE - 4);
+			byte[] path = new byte[length];
+			buffer.get(path);
+			return new Entry(new String(path, StandardCharsets.UTF_8), buffer.getLong(), buffer.getLong(), buffer.get() != 0);
+		}
+
+		@Override
+		public boolean hasNext() {
+			try {
+				return next != null || (next = read()) != null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public Entry next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Entry entry = next;
+			next = null;
+			return entry;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		/**
+		 * 当前映射区域剩余不足n字节时从当前位置重新映射
+		 */
+		private void ensure(int n) throws IOException {
+			if(buffer.remaining() < n) {
+				map(base + buffer.position());
+				if(buffer.remaining() < n) {
+					throw new IOException(String.format(INVALID_SNAPSHOT_FILE, file.getAbsolutePath()));
+				}
+			}
+		}
+
+		private void map(long position) throws IOException {
+			this.base = position;
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position));
+		}
+	}
+
+}
@@ -1,22 +1,42 @@
 package com.my.project;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -24,6 +44,7 @@ import com.jcraft.jsch.Channel;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
 import com.jcraft.jsch.ChannelSftp.LsEntrySelector;
+import com.jcraft.jsch.ChannelSubsystem;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
@@ -31,15 +52,38 @@ import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 import com.jcraft.jsch.SocketFactory;
 import com.jcraft.jsch.UserInfo;
+import com.my.project.TransferMetrics.Operation;
 
 public class SftpClient extends RemoteClient<LsEntry> {
 
+	public static final String REMOTE_SIZE_MISMATCH = "remote file size mismatch: %s, %d != %d";
+
+	/** 流式读取目录列表时缓冲的条目数 */
+	private static final int LIST_BUFFER_SIZE = 1024;
+	/** 关闭目录列表迭代器时等待后台线程结束的时间(ms) */
+	private static final long LIST_CLOSE_TIMEOUT = 5000L;
+	/** 分段上传的缓冲区大小 */
+	private static final int SEGMENT_BUFFER_SIZE = 64 * 1024;
+
 	private Session session;
 	private ChannelSftp channel;
+	/** check-file扩展，第一次校验摘要时打开 */
+	private CheckFile checkFile;
 	private File privateKeyFile;
 
+	private final String hostname;
+	private final Integer port;
+	private final String username;
+	private final String password;
+	private final String privateKey;
+	private final String passphrase;
+	private final int timeout;
+	private final String proxyHost;
+	private final Integer proxyPort;
+	private final int compression;
+
 	/**
-	 * 创建一个SFTP连接
+	 * 创建一个SFTP连接，压缩级别使用{@link TransferCompression#getDefaultLevel()}
 	 * @param hostname SFTP主机
 	 * @param port SFTP端口
 	 * @param username SFTP用户名
@@ -49,6 +93,36 @@ public class SftpClient extends RemoteClient<LsEntry> {
 	 * @param proxyPort SOCK5代理端口
 	 */
 	public SftpClient(String hostname, Integer port, String username, String password, String privateKey, String passphrase, int timeout, String proxyHost, Integer proxyPort) throws JSchException, SftpException, IOException {
+		this(hostname, port, username, password, privateKey, passphrase, timeout, proxyHost, proxyPort, TransferCompression.getDefaultLevel());
+	}
+
+	/**
+	 * 创建一个SFTP连接
+	 * @param hostname SFTP主机
+	 * @param port SFTP端口
+	 * @param username SFTP用户名
+	 * @param password SFTP用户密码
+	 * @param timeout 连接超时时间(ms)
+	 * @param proxyHost SOCK5代理主机
+	 * @param proxyPort SOCK5代理端口
+	 * @param compression zlib压缩级别(0-9)，0表示不压缩，服务器不支持压缩时不压缩
+	 */
+	public SftpClient(String hostname, Integer port, String username, String password, String privateKey, String passphrase, int timeout, String proxyHost, Integer proxyPort, int compression) throws JSchException, SftpException, IOException {
+		this.hostname = hostname;
+		this.port = port;
+		this.username = username;
+		this.password = password;
+		this.privateKey = privateKey;
+		this.passphrase = passphrase;
+		this.timeout = timeout;
+		this.proxyHost = proxyHost;
+		this.proxyPort = proxyPort;
+		this.compression = TransferCompression.checkLevel(compression);
+		setMetrics(TransferMetrics.of("SFTP", hostname, port));
+		if(TransferTuning.isEnabled()) {
+			setTuning(TransferTuning.of("SFTP", hostname, port));
+		}
+		long start = System.nanoTime();
 		JSch jsch = new JSch();
 		if(StringUtils.isNotBlank(privateKey)) {
 			privateKeyFile = new File(System.getProperty("java.io.tmpdir") + File.separator + UUID.randomUUID().toString() + ".key");
@@ -62,11 +136,24 @@ public class SftpClient extends RemoteClient<LsEntry> {
 		this.session.setUserInfo(userInfo);
 		this.session.setPassword(password);
 		this.session.setTimeout(timeout);
-		if(StringUtils.isNotBlank(proxyHost) && isValidTCPPort(proxyPort)) {
+		if(compression > TransferCompression.NONE) {
+			// 服务器不支持压缩时协商为none
+			this.session.setConfig("compression.s2c", "zlib@openssh.com,zlib,none");
+			this.session.setConfig("compression.c2s", "zlib@openssh.com,zlib,none");
+			this.session.setConfig("compression_level", String.valueOf(compression));
+		}
+		boolean proxy = StringUtils.isNotBlank(proxyHost) && isValidTCPPort(proxyPort);
+		// 套接字缓冲区大小需要在连接之前设置，TCP窗口缩放在握手时协商
+		int socketBufferSize = getTuning() != null ? getTuning().getSocketBufferSize() : 0;
+		if(proxy || socketBufferSize > 0) {
 			this.session.setSocketFactory(new SocketFactory() {
 				@Override
 				public Socket createSocket(String host, int port) throws IOException, UnknownHostException {
-					Socket socket = new Socket(new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(proxyHost, proxyPort)));
+					Socket socket = proxy ? new Socket(new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(proxyHost, proxyPort))) : new Socket();
+					if(socketBufferSize > 0) {
+						socket.setSendBufferSize(socketBufferSize);
+						socket.setReceiveBufferSize(socketBufferSize);
+					}
 					socket.connect(new InetSocketAddress(host, port), timeout);
 					return socket;
 				}
@@ -80,12 +167,23 @@ public class SftpClient extends RemoteClient<LsEntry> {
 				}
 			});
 		}
-		this.session.connect();
-		
-		Channel channel = this.session.openChannel("sftp");
-		channel.connect();
-		this.channel = (ChannelSftp)channel;
-		this.channel.cd("/");
+		try {
+			this.session.connect();
+
+			Channel channel = this.session.openChannel("sftp");
+			channel.connect();
+			this.channel = (ChannelSftp)channel;
+			this.channel.cd("/");
+		} catch (JSchException | SftpException e) {
+			error(e);
+			throw e;
+		}
+		getMetrics().connected(start);
+		if(getTuning() != null) {
+			long rtt = System.nanoTime();
+			this.channel.realpath(".");
+			getTuning().roundTrip(System.nanoTime() - rtt);
+		}
 	}
 
 	@Override
@@ -97,23 +195,51 @@ public class SftpClient extends RemoteClient<LsEntry> {
 		}
 
 		List<LsEntry> list = new ArrayList<LsEntry>();
+		for(LsEntry entry : this.doLs(remotePath)) {
+			if(!filterHiddenFile || !entry.getFilename().startsWith(".")) {
+				list.add(entry);
+			}
+		}
+		return list;
+	}
+
+	@Override
+	protected List<LsEntry> doLs(String remotePath) throws IOException {
+		return cachedList(remotePath, () -> this.listAll(remotePath));
+	}
+
+	@Override
+	protected RemoteIterator<LsEntry> iterate(String remotePath) throws IOException {
+		return new ListIterator(remotePath);
+	}
+
+	/**
+	 * 列出指定目录下的所有文件（包括隐藏文件，不包括.和..）
+	 * @param remotePath 远程目录
+	 * @return 文件列表
+	 */
+	private List<LsEntry> listAll(String remotePath) throws IOException {
+		List<LsEntry> list = new ArrayList<LsEntry>();
+		boolean[] isDir = { false };
 		LsEntrySelector selector = (entry) -> {
 			String name = entry.getFilename();
 			if(!".".equals(name) && !"..".equals(name)) {
-				if(filterHiddenFile) {
-					if(!name.startsWith(".")) {
-						list.add(entry);
-					}
-				} else {
-					list.add(entry);
-				}
+				list.add(entry);
+			} else {
+				isDir[0] = true;
 			}
 			return LsEntrySelector.CONTINUE;
 		};
+		long start = System.nanoTime();
 		try {
 			channel.ls(remotePath, selector);
 		} catch (SftpException e) {
-			throw new IOException(e);
+			throw error(e);
+		} finally {
+			getMetrics().record(Operation.LS, start);
+		}
+		if(isDir[0]) {
+			cacheChildren(remotePath, list);
 		}
 		return list;
 	}
@@ -122,34 +248,133 @@ public class SftpClient extends RemoteClient<LsEntry> {
 	public void mkdir(String remotePath) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
 		if(!this.exists(remotePath)) {
-			try {
-				channel.mkdir(remotePath);
-			} catch (SftpException e) {
-				throw new IOException(e);
-			}
+			this.doMkdir(remotePath);
 		} else {
 			logger.warn("{} already exists", remotePath);
 		}
 	}
 
+	@Override
+	protected void doMkdir(String remotePath) throws IOException {
+		long start = System.nanoTime();
+		try {
+			channel.mkdir(remotePath);
+		} catch (SftpException e) {
+			throw error(e);
+		} finally {
+			invalidate(remotePath);
+			getMetrics().record(Operation.MKDIR, start);
+		}
+	}
+
 	@Override
 	public void get(String remotePath, File localFile) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
 		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
 		if(this.exists(remotePath)) {
-			assertFalse(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
-			try (OutputStream output = new FileOutputStream(localFile)) {			
-				channel.get(remotePath, output);
-			} catch (SftpException e) {
-				throw new IOException(e);
-			}
+			LsEntry entry = this.stat(remotePath);
+			this.get(entry, remotePath, localFile, this.defaultSegments(getSize(entry)));
 		} else {
 			logger.warn("{} does not exists", remotePath);
 		}
 	}
 
+	@Override
+	protected void doGet(String remotePath, File localFile, long offset) throws IOException {
+		this.tune();
+		TransferHash hash = newHash();
+		if(hash != null && offset > 0) {
+			hash.update(localFile, offset);
+		}
+		long start = System.nanoTime();
+		OutputStream counted = getMetrics().inbound(new FileOutputStream(localFile, offset > 0));
+		try (OutputStream output = hash != null ? hash.wrap(counted) : counted) {
+			channel.get(remotePath, output, null, offset > 0 ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE, offset);
+		} catch (SftpException e) {
+			throw error(e);
+		} finally {
+			getMetrics().record(Operation.GET, start);
+		}
+		learn(localFile.length() - offset, start);
+		verifyGet(hash, remotePath, localFile);
+	}
+
+	/**
+	 * 按自动调整参数设置下载时同时发出的读请求数，对之后的下载生效
+	 */
+	private void tune() throws IOException {
+		TransferTuning tuning = getTuning();
+		if(tuning != null && channel.getBulkRequests() != tuning.getBulkRequests()) {
+			try {
+				channel.setBulkRequests(tuning.getBulkRequests());
+			} catch (JSchException e) {
+				throw error(e);
+			}
+		}
+	}
+
+	@Override
+	protected InputStream retrieveStream(String remotePath, long offset) throws IOException {
+		this.tune();
+		try {
+			return getMetrics().inbound(channel.get(remotePath, null, offset));
+		} catch (SftpException e) {
+			throw error(e);
+		}
+	}
+
+	@Override
+	protected OutputStream storeStream(String remoteFile) throws IOException {
+		long start = System.nanoTime();
+		OutputStream output;
+		try {
+			output = channel.put(remoteFile, ChannelSftp.OVERWRITE);
+		} catch (SftpException e) {
+			invalidate(remoteFile);
+			getMetrics().record(Operation.PUT, start);
+			throw error(e);
+		}
+		return new FilterOutputStream(getMetrics().outbound(output)) {
+			private boolean closed = false;
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				if(closed) {
+					return;
+				}
+				closed = true;
+				try {
+					// 关闭时等待所有写请求的响应并关闭远程文件句柄
+					super.close();
+				} finally {
+					invalidate(remoteFile);
+					getMetrics().record(Operation.PUT, start);
+				}
+			}
+		};
+	}
+
+	/**
+	 * 上传文件，启用自动调整时按{@link #defaultSegments(long)}分段上传
+	 */
 	@Override
 	public void put(File localFile, String remotePath) throws IOException {
+		// 参数由分段上传检查
+		this.put(localFile, remotePath, localFile != null ? this.defaultSegments(localFile.length()) : 1);
+	}
+
+	/**
+	 * 分段上传文件：在同一个会话上打开多个channel，每个channel写入远程文件的一段，上传完成后检查远程文件大小
+	 * @param localFile 本地文件
+	 * @param remotePath 远程目录
+	 * @param segments 分段数（channel数），小于等于1时在当前channel上上传
+	 */
+	public void put(File localFile, String remotePath, int segments) throws IOException {
 		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
 		if(!this.exists(remotePath)) {
 			this.mkdirRecursive(remotePath);
@@ -159,11 +384,119 @@ public class SftpClient extends RemoteClient<LsEntry> {
 		assertNotNull(localFile, LOCAL_PATH_CAN_NOT_BE_NULL);
 		assertTrue(localFile.exists(), String.format(LOCAL_PATH_MUST_BE_EXISTS, localFile.getAbsolutePath()));
 		assertTrue(localFile.isFile(), String.format(LOCAL_PATH_MUST_BE_A_FILE, localFile.getAbsolutePath()));
-		try (InputStream input = new FileInputStream(localFile)) {
-			channel.put(input, remotePath + (remotePath.endsWith("/") ? "" : "/") + localFile.getName(), ChannelSftp.OVERWRITE);
+		String remoteFile = remotePath + (remotePath.endsWith("/") ? "" : "/") + localFile.getName();
+		long size = localFile.length();
+		int n = (int) Math.min(segments, size);
+		if(n <= 1) {
+			this.doPut(localFile, remoteFile);
+			return;
+		}
+		long begin = System.nanoTime();
+		List<ChannelSftp> channels = new ArrayList<ChannelSftp>(n);
+		List<OutputStream> outputs = new ArrayList<OutputStream>(n);
+		ExecutorService executor = Executors.newFixedThreadPool(n, r -> {
+			Thread t = new Thread(r, "sftp-put-" + remoteFile);
+			t.setDaemon(true);
+			return t;
+		});
+		try (FileChannel input = FileChannel.open(localFile.toPath(), StandardOpenOption.READ)) {
+			long length = size / n;
+			// 第一段以OVERWRITE模式打开，put()返回时服务器已清空远程文件
+			outputs.add(openSegment(channels, remoteFile, ChannelSftp.OVERWRITE, 0L));
+			// 其余各段以RESUME模式打开，不截断其他段写入的内容。JSch 0.1.55在RESUME模式下打开时查询远程文件大小，
+			// 并把它加到指定的offset上，因此必须在第一段清空文件之后、任何一段写入数据之前依次打开，
+			// 此时远程文件大小为0，各段从i * length开始写入（升级JSch时需要确认此行为）
+			for(int i = 1; i < n; i++) {
+				outputs.add(openSegment(channels, remoteFile, ChannelSftp.RESUME, i * length));
+			}
+			// 所有段都已打开，开始写入
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(n);
+			for(int i = 0; i < n; i++) {
+				long start = i * length;
+				long end = i == n - 1 ? size : start + length;
+				OutputStream output = outputs.get(i);
+				futures.add(executor.submit(() -> {
+					try (OutputStream o = output) {
+						transfer(input, start, end, o);
+					}
+					return null;
+				}));
+			}
+			for(Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					Throwable t = e.getCause();
+					throw t instanceof IOException ? (IOException) t : new IOException(t);
+				}
+			}
+			SftpATTRS attr = channel.lstat(remoteFile);
+			if(attr.getSize() != size) {
+				throw new IOException(String.format(REMOTE_SIZE_MISMATCH, remoteFile, attr.getSize(), size));
+			}
+		} catch (JSchException | SftpException e) {
+			throw error(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} finally {
+			executor.shutdownNow();
+			for(ChannelSftp c : channels) {
+				c.disconnect();
+			}
+			invalidate(remoteFile);
+			getMetrics().record(Operation.PUT, begin);
+		}
+	}
+
+	/**
+	 * 在新的channel上打开远程文件的一段，channel加入channels以便上传结束后断开
+	 * @param mode ChannelSftp.OVERWRITE或ChannelSftp.RESUME
+	 * @param offset 写入的起始位置（RESUME模式下JSch还会加上打开时的远程文件大小）
+	 */
+	private OutputStream openSegment(List<ChannelSftp> channels, String remoteFile, int mode, long offset) throws JSchException, SftpException {
+		Channel c = session.openChannel("sftp");
+		c.connect();
+		ChannelSftp sftp = (ChannelSftp) c;
+		channels.add(sftp);
+		return getMetrics().outbound(sftp.put(remoteFile, null, mode, offset));
+	}
+
+	/**
+	 * 把本地文件的[start, end)范围写入输出流
+	 */
+	private static void transfer(FileChannel input, long start, long end, OutputStream output) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SEGMENT_BUFFER_SIZE);
+		long position = start;
+		while(position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			int n = input.read(buffer, position);
+			if(n < 0) {
+				throw new EOFException();
+			}
+			output.write(buffer.array(), 0, n);
+			position += n;
+		}
+	}
+
+	@Override
+	protected void doPut(File localFile, String remoteFile, long offset) throws IOException {
+		TransferHash hash = newHash();
+		long start = System.nanoTime();
+		InputStream source = new FileInputStream(localFile);
+		// 摘要包括JSch通过skip跳过的部分，统计在摘要之外，跳过的部分不计入上传的字节数
+		try (InputStream input = getMetrics().outbound(hash != null ? hash.wrap(source) : source)) {
+			// RESUME模式下JSch按远程文件大小跳过本地文件已上传的部分并写到远程文件末尾
+			channel.put(input, remoteFile, offset > 0 ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE);
 		} catch (SftpException e) {
-			throw new IOException(e);
+			throw error(e);
+		} finally {
+			invalidate(remoteFile);
+			getMetrics().record(Operation.PUT, start);
 		}
+		learn(localFile.length() - offset, start);
+		verifyPut(hash, remoteFile);
 	}
 
 	@Override
@@ -172,15 +505,24 @@ public class SftpClient extends RemoteClient<LsEntry> {
 		if(this.exists(remotePath)) {
 			remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_CAN_NOT_BE_REMOVED);
 			assertFalse(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_FILE, remotePath));
-			try {
-				channel.rm(remotePath);
-			} catch (SftpException e) {
-				throw new IOException(e);
-			}
+			this.doRm(remotePath);
 		} else {
 			logger.warn("{} does not exists", remotePath);
 		}
 	}
+
+	@Override
+	protected void doRm(String remotePath) throws IOException {
+		long start = System.nanoTime();
+		try {
+			channel.rm(remotePath);
+		} catch (SftpException e) {
+			throw error(e);
+		} finally {
+			invalidate(remotePath);
+			getMetrics().record(Operation.RM, start);
+		}
+	}
 	
 	@Override
 	public void rmdir(String remotePath) throws IOException {
@@ -188,21 +530,48 @@ public class SftpClient extends RemoteClient<LsEntry> {
 		if(this.exists(remotePath)) {
 			remotePath = assertRemotePathIsNotRoot(remotePath, REMOTE_ROOT_PATH_CAN_NOT_BE_REMOVED);
 			assertTrue(isDir(this.stat(remotePath)), String.format(REMOTE_PATH_MUST_BE_A_DIRECTORY, remotePath));
-			try {
-				channel.rmdir(remotePath);
-			} catch (SftpException e) {
-				throw new IOException(e);
-			}
+			this.doRmdir(remotePath);
 		} else {
 			logger.warn("{} does not exists", remotePath);
 		}
 	}
+
+	@Override
+	protected void doRmdir(String remotePath) throws IOException {
+		long start = System.nanoTime();
+		try {
+			channel.rmdir(remotePath);
+		} catch (SftpException e) {
+			throw error(e);
+		} finally {
+			invalidateTree(remotePath);
+			getMetrics().record(Operation.RMDIR, start);
+		}
+	}
 	
 	@Override
 	public boolean exists(String remotePath) {
+		long start = System.nanoTime();
+		try {
+			return this.lookupExists(remotePath);
+		} finally {
+			getMetrics().record(Operation.EXISTS, start);
+		}
+	}
+
+	private boolean lookupExists(String remotePath) {
 		if(StringUtils.isBlank(remotePath)) {
 			return false;
 		}
+		if(isCacheEnabled()) {
+			// 启用缓存时由lstat结果直接构造元数据，后续的stat不再查询服务器
+			try {
+				return cachedStat(remotePath, () -> this.lstat(remotePath)) != null;
+			} catch (IOException e) {
+				logger.warn(e.getMessage());
+				return false;
+			}
+		}
 		SftpATTRS attr = null;
 		try {
 			attr = channel.lstat(remotePath);
@@ -220,6 +589,18 @@ public class SftpClient extends RemoteClient<LsEntry> {
 		if(StringUtils.isBlank(remotePath)) {
 			return null;
 		}
+		long start = System.nanoTime();
+		try {
+			return cachedStat(remotePath, () -> this.lookupStat(remotePath));
+		} catch (IOException e) {
+			logger.warn(e.getMessage());
+		} finally {
+			getMetrics().record(Operation.STAT, start);
+		}
+		return null;
+	}
+
+	private LsEntry lookupStat(String remotePath) {
 		try {
 			SftpATTRS attr = channel.lstat(remotePath);
 			if(attr != null) {
@@ -244,11 +625,7 @@ public class SftpClient extends RemoteClient<LsEntry> {
 						}
 					});
 					if(entry.isEmpty()) {
-						Constructor<LsEntry> constructor = LsEntry.class.getDeclaredConstructor(ChannelSftp.class, String.class, String.class, SftpATTRS.class);
-						constructor.setAccessible(true);
-						String longname = attr.toString() + " " + filename;
-						LsEntry e = constructor.newInstance(channel, filename, longname, attr);
-						entry.add(e);
+						entry.add(newLsEntry(filename, attr));
 					}
 				}
 				if(entry.size() > 0) {
@@ -261,6 +638,46 @@ public class SftpClient extends RemoteClient<LsEntry> {
 		return null;
 	}
 
+	/**
+	 * 通过lstat查询文件元数据
+	 * @param remotePath 远程路径
+	 * @return 文件元数据，不存在返回null
+	 */
+	@Override
+	protected LsEntry doStat(String remotePath) throws IOException {
+		return this.lstat(remotePath);
+	}
+
+	@Override
+	protected boolean isStatDirect() {
+		return true;
+	}
+
+	private LsEntry lstat(String remotePath) {
+		try {
+			SftpATTRS attr = channel.lstat(remotePath);
+			if(attr != null) {
+				return newLsEntry(getFileNameFromRemotePath(remotePath), attr);
+			}
+		} catch (Exception e) {
+			logger.warn(e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * 由文件名和属性构造LsEntry
+	 * @param filename 文件名
+	 * @param attr 文件属性
+	 * @return LsEntry
+	 */
+	private LsEntry newLsEntry(String filename, SftpATTRS attr) throws ReflectiveOperationException {
+		Constructor<LsEntry> constructor = LsEntry.class.getDeclaredConstructor(ChannelSftp.class, String.class, String.class, SftpATTRS.class);
+		constructor.setAccessible(true);
+		String longname = attr.toString() + " " + filename;
+		return constructor.newInstance(channel, filename, longname, attr);
+	}
+
 	private String getFileNameFromRemotePath(String remotePath) {
 		String fileName = "";
 		if(remotePath.endsWith("/")) {
@@ -297,7 +714,51 @@ public class SftpClient extends RemoteClient<LsEntry> {
 	}
 
 	@Override
-	public void close() {
+	public void setModificationTime(String remotePath, long time) throws IOException {
+		assertNotBlank(remotePath, REMOTE_PATH_CAN_NOT_BE_NULL_OR_BLANK);
+		try {
+			channel.setMtime(remotePath, (int) (time / 1000));
+		} catch (SftpException e) {
+			throw error(e);
+		} finally {
+			invalidate(remotePath);
+		}
+	}
+
+	@Override
+	public long getSize(LsEntry entry) {
+		return entry != null ? entry.getAttrs().getSize() : 0L;
+	}
+
+	@Override
+	public boolean isAlive() {
+		if(session == null || !session.isConnected() || channel == null || !channel.isConnected()) {
+			return false;
+		}
+		try {
+			channel.pwd();
+			return true;
+		} catch (SftpException e) {
+			logger.warn(e.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	protected SftpClient connect() throws IOException {
+		try {
+			return new SftpClient(hostname, port, username, password, privateKey, passphrase, timeout, proxyHost, proxyPort, compression);
+		} catch (JSchException | SftpException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	protected void disconnect() {
+		if(checkFile != null) {
+			checkFile.close();
+			checkFile = null;
+		}
 		if(channel != null) {
 			channel.disconnect();
 			channel = null;
@@ -311,6 +772,273 @@ public class SftpClient extends RemoteClient<LsEntry> {
 		}
 	}
 
+	/**
+	 * 在独立的channel上读取目录列表
+	 *
+	 * JSch的ls()通过回调返回目录列表，后台线程执行ls()并把结果放入有界队列，队列满时等待消费，
+	 * 迭代器关闭后回调返回BREAK结束ls()
+	 */
+	private class ListIterator implements RemoteIterator<LsEntry> {
+
+		/** 目录列表读取完毕 */
+		private final Object END = new Object();
+
+		private final ChannelSftp listChannel;
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(LIST_BUFFER_SIZE);
+		private final Thread reader;
+		private LsEntry next;
+		private boolean finished = false;
+		private volatile boolean closed = false;
+
+		ListIterator(String remotePath) throws IOException {
+			try {
+				Channel c = session.openChannel("sftp");
+				c.connect();
+				this.listChannel = (ChannelSftp)c;
+			} catch (JSchException e) {
+				throw error(e);
+			}
+			this.reader = new Thread(() -> {
+				Object last = END;
+				try {
+					listChannel.ls(remotePath, (entry) -> {
+						String name = entry.getFilename();
+						if(".".equals(name) || "..".equals(name)) {
+							return closed ? LsEntrySelector.BREAK : LsEntrySelector.CONTINUE;
+						}
+						return offer(entry) ? LsEntrySelector.CONTINUE : LsEntrySelector.BREAK;
+					});
+				} catch (SftpException e) {
+					last = error(e);
+				} catch (RuntimeException e) {
+					last = e;
+				}
+				offer(last);
+			}, "sftp-ls-" + remotePath);
+			this.reader.setDaemon(true);
+			this.reader.start();
+		}
+
+		/**
+		 * 放入队列，队列满时等待，迭代器关闭后放弃
+		 * @return 放入成功返回true
+		 */
+		private boolean offer(Object o) {
+			try {
+				while(!closed) {
+					if(queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(next != null) {
+				return true;
+			}
+			if(finished || closed) {
+				return false;
+			}
+			Object o = null;
+			try {
+				o = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new UncheckedIOException(new InterruptedIOException(e.getMessage()));
+			}
+			if(o instanceof LsEntry) {
+				next = (LsEntry) o;
+				return true;
+			}
+			finished = true;
+			try {
+				close();
+			} catch (IOException e) {
+				logger.warn(e.getMessage());
+			}
+			if(o instanceof IOException) {
+				throw new UncheckedIOException((IOException) o);
+			} else if(o instanceof RuntimeException) {
+				throw (RuntimeException) o;
+			}
+			return false;
+		}
+
+		@Override
+		public LsEntry next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			LsEntry entry = next;
+			next = null;
+			return entry;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if(closed) {
+				return;
+			}
+			closed = true;
+			queue.clear();
+			try {
+				reader.join(LIST_CLOSE_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				listChannel.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * 使用SFTP的check-file扩展(check-file-name)由服务器计算摘要，服务器不支持时不校验
+	 */
+	@Override
+	protected String hashAlgorithm() throws IOException {
+		return checkFile != null && !checkFile.supported ? null : TransferHash.SHA_256;
+	}
+
+	@Override
+	protected String remoteHash(String remotePath, String algorithm) throws IOException {
+		try {
+			if(checkFile == null) {
+				checkFile = new CheckFile();
+			}
+			return checkFile.hash(remotePath.startsWith("/") ? remotePath : channel.pwd() + "/" + remotePath, algorithm);
+		} catch (JSchException | SftpException e) {
+			throw error(e);
+		}
+	}
+
+	/**
+	 * check-file扩展：JSch不支持发送扩展请求，在单独的sftp子系统channel上直接发送SSH_FXP_EXTENDED请求
+	 * （draft-ietf-secsh-filexfer-extensions），第一次校验时打开，连接关闭时关闭
+	 */
+	private class CheckFile {
+
+		private static final int SSH_FXP_INIT = 1;
+		private static final int SSH_FXP_VERSION = 2;
+		private static final int SSH_FXP_STATUS = 101;
+		private static final int SSH_FXP_EXTENDED = 200;
+		private static final int SSH_FXP_EXTENDED_REPLY = 201;
+		private static final int SSH_FX_OP_UNSUPPORTED = 8;
+
+		private final ChannelSubsystem subsystem;
+		private final DataInputStream input;
+		private final DataOutputStream output;
+		private int requestId = 0;
+		/** 服务器返回SSH_FX_OP_UNSUPPORTED后为false */
+		private boolean supported = true;
+
+		CheckFile() throws JSchException, IOException {
+			this.subsystem = (ChannelSubsystem) session.openChannel("subsystem");
+			this.subsystem.setSubsystem("sftp");
+			this.input = new DataInputStream(subsystem.getInputStream());
+			this.output = new DataOutputStream(subsystem.getOutputStream());
+			this.subsystem.connect(timeout);
+			output.writeInt(5);
+			output.writeByte(SSH_FXP_INIT);
+			output.writeInt(3);
+			output.flush();
+			if(read()[0] != SSH_FXP_VERSION) {
+				throw new IOException("unexpected sftp version response");
+			}
+		}
+
+		/**
+		 * @param remotePath 远程文件绝对路径
+		 * @param algorithm 摘要算法
+		 * @return 十六进制的摘要，服务器不支持时返回null
+		 */
+		String hash(String remotePath, String algorithm) throws IOException {
+			if(!supported) {
+				return null;
+			}
+			int id = ++requestId;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream request = new DataOutputStream(bytes);
+			request.writeByte(SSH_FXP_EXTENDED);
+			request.writeInt(id);
+			writeString(request, "check-file-name");
+			writeString(request, remotePath);
+			// check-file中的算法名称：sha256、md5等
+			writeString(request, algorithm.replace("-", "").toLowerCase());
+			request.writeLong(0L);
+			request.writeLong(0L);
+			request.writeInt(0);
+			output.writeInt(bytes.size());
+			bytes.writeTo(output);
+			output.flush();
+
+			DataInputStream response = new DataInputStream(new ByteArrayInputStream(read()));
+			int type = response.readUnsignedByte();
+			if(response.readInt() != id) {
+				throw new IOException("unexpected sftp response id");
+			}
+			if(type == SSH_FXP_STATUS) {
+				int code = response.readInt();
+				if(code == SSH_FX_OP_UNSUPPORTED) {
+					supported = false;
+					return null;
+				}
+				throw new IOException(new SftpException(code, readString(response)));
+			}
+			if(type != SSH_FXP_EXTENDED_REPLY) {
+				throw new IOException("unexpected sftp response type " + type);
+			}
+			// string "check-file"（部分实现省略）, string hash-algorithm, byte[] hash（部分实现按string编码）
+			String name = readString(response);
+			if("check-file".equals(name)) {
+				readString(response);
+			}
+			byte[] hash = new byte[response.available()];
+			response.readFully(hash);
+			int offset = hash.length >= 4 && ByteBuffer.wrap(hash).getInt() == hash.length - 4 ? 4 : 0;
+			StringBuilder sb = new StringBuilder();
+			for(int i = offset; i < hash.length; i++) {
+				sb.append(String.format("%02x", hash[i] & 0xff));
+			}
+			return sb.toString();
+		}
+
+		void close() {
+			subsystem.disconnect();
+		}
+
+		private byte[] read() throws IOException {
+			byte[] packet = new byte[input.readInt()];
+			input.readFully(packet);
+			return packet;
+		}
+
+		private void writeString(DataOutputStream out, String s) throws IOException {
+			byte[] b = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+
+		private String readString(DataInputStream in) throws IOException {
+			byte[] b = new byte[in.readInt()];
+			in.readFully(b);
+			return new String(b, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * 按SFTP状态码记录错误并转换为IOException
+	 * @param e SftpException或JSchException
+	 */
+	private IOException error(Exception e) {
+		getMetrics().error(e instanceof SftpException ? "SFTP " + ((SftpException) e).id : "SFTP " + e.getClass().getSimpleName());
+		return new IOException(e);
+	}
+
 	private interface InnerUserInfo extends UserInfo {
 		@Override default String getPassphrase() { return null; }
 		@Override default boolean promptPassword(String message) { return true; }
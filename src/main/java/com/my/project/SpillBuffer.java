@@ -0,0 +1,175 @@
+package com.my.project;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * 有界内存缓冲区：写入的数据不超过阈值时保存在内存中，超过阈值后转存到临时文件，
+ * 用于上传程序生成的数据（如报表），较小的数据不经过本地磁盘，较大的数据也不会占用过多内存
+ *
+ * 关闭时删除临时文件，需要在关闭之前通过{@link RemoteClient#putBuffer(SpillBuffer, String)}上传
+ */
+public class SpillBuffer extends OutputStream {
+
+	/** 默认的内存阈值 */
+	public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+	private static final int INITIAL_CAPACITY = 8 * 1024;
+
+	private final int threshold;
+	private Memory memory;
+	/** 临时文件，未超过阈值时为null */
+	private File file;
+	private OutputStream output;
+	private long size = 0L;
+	private boolean closed = false;
+
+	public SpillBuffer() {
+		this(DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param threshold 内存阈值(byte)，写入的数据超过阈值后转存到临时文件
+	 */
+	public SpillBuffer(int threshold) {
+		RemoteClient.assertTrue(threshold >= 0, "threshold can not be negative");
+		this.threshold = threshold;
+		this.memory = new Memory(Math.min(threshold, INITIAL_CAPACITY));
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureCapacity(1);
+		if(file == null) {
+			memory.write(b);
+		} else {
+			output.write(b);
+		}
+		size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureCapacity(len);
+		if(file == null) {
+			memory.write(b, off, len);
+		} else {
+			output.write(b, off, len);
+		}
+		size += len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if(output != null) {
+			output.flush();
+		}
+	}
+
+	/**
+	 * 已写入的字节数
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * 是否已转存到临时文件
+	 */
+	public boolean isSpilled() {
+		return file != null;
+	}
+
+	/**
+	 * 读取已写入的数据，可以多次读取
+	 * @return 输入流
+	 */
+	public InputStream getInputStream() throws IOException {
+		ensureOpen();
+		if(file == null) {
+			return new ByteArrayInputStream(memory.array(), 0, memory.size());
+		}
+		output.flush();
+		return new FileInputStream(file);
+	}
+
+	/**
+	 * 临时文件（已刷新），未超过阈值时返回null
+	 */
+	File getFile() throws IOException {
+		ensureOpen();
+		if(file != null) {
+			output.flush();
+		}
+		return file;
+	}
+
+	/**
+	 * 把内存中的数据写入输出流，已转存到临时文件时不写入
+	 * @param out 输出流
+	 */
+	void writeTo(OutputStream out) throws IOException {
+		ensureOpen();
+		if(file == null) {
+			out.write(memory.array(), 0, memory.size());
+		}
+	}
+
+	/**
+	 * 释放内存，删除临时文件
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		memory = null;
+		if(file != null) {
+			try {
+				output.close();
+			} finally {
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed) {
+			throw new IOException("buffer closed");
+		}
+	}
+
+	private void ensureCapacity(int len) throws IOException {
+		ensureOpen();
+		if(file == null && size + len > threshold) {
+			file = Files.createTempFile("hello-ftp-", ".spill").toFile();
+			output = new BufferedOutputStream(new FileOutputStream(file));
+			memory.writeTo(output);
+			memory = null;
+		}
+	}
+
+	/**
+	 * 可以直接访问内部数组的ByteArrayOutputStream，避免上传时复制
+	 */
+	private static class Memory extends ByteArrayOutputStream {
+
+		Memory(int size) {
+			super(size);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+	}
+
+}
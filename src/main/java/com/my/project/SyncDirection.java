@@ -0,0 +1,14 @@
+package com.my.project;
+
+/**
+ * 同步方向
+ */
+public enum SyncDirection {
+
+	/** 以远程目录为准同步到本地目录 */
+	DOWNLOAD,
+
+	/** 以本地目录为准同步到远程目录 */
+	UPLOAD
+
+}
@@ -0,0 +1,45 @@
+package com.my.project;
+
+import java.util.zip.Deflater;
+
+/**
+ * 传输压缩设置
+ *
+ * FTP在服务器FEAT中声明MODE Z时使用deflate传输模式（数据连接上的文件和目录列表都被压缩），
+ * SFTP使用SSH的zlib压缩（优先zlib@openssh.com，认证之后开始压缩）；
+ * 文本类数据（CSV、日志）压缩比高，在带宽受限的链路上收益明显，已压缩的数据（zip、图片、视频）只会增加CPU开销
+ *
+ * 压缩级别与代理、认证信息一样是连接参数，通过FtpClient/SftpClient的构造方法或连接池的borrow方法指定，
+ * 在建立连接时协商；未指定时使用系统属性hello-ftp.compression=压缩级别(1-9)，默认不启用
+ */
+public class TransferCompression {
+
+	/** 默认压缩级别的系统属性 */
+	public static final String LEVEL_PROPERTY = "hello-ftp.compression";
+
+	/** 不压缩 */
+	public static final int NONE = 0;
+	/** zlib默认的压缩级别 */
+	public static final int DEFAULT_LEVEL = 6;
+
+	private TransferCompression() {
+	}
+
+	/**
+	 * 未指定压缩级别的连接使用的压缩级别（系统属性hello-ftp.compression），0表示不压缩
+	 */
+	public static int getDefaultLevel() {
+		return Math.max(NONE, Math.min(Deflater.BEST_COMPRESSION, Integer.getInteger(LEVEL_PROPERTY, NONE)));
+	}
+
+	/**
+	 * 检查压缩级别
+	 * @param level 压缩级别，0表示不压缩，1最快，9压缩比最高
+	 * @return level
+	 */
+	static int checkLevel(int level) {
+		RemoteClient.assertTrue(level >= NONE && level <= Deflater.BEST_COMPRESSION, String.format("compression level must be between 0 and 9: %s", level));
+		return level;
+	}
+
+}
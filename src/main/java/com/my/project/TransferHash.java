@@ -0,0 +1,176 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * 传输过程中计算的文件摘要：数据经过输入/输出流时更新摘要，传输完成后与服务器计算的摘要比较，不需要再次读取文件
+ */
+public class TransferHash {
+
+	public static final String MD5 = "MD5";
+	public static final String SHA_1 = "SHA-1";
+	public static final String SHA_256 = "SHA-256";
+	public static final String SHA_512 = "SHA-512";
+	public static final String CRC32 = "CRC32";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String algorithm;
+	private final MessageDigest digest;
+	private final CRC32 crc;
+
+	/**
+	 * @param algorithm 摘要算法：MD5、SHA-1、SHA-256、SHA-512或CRC32
+	 */
+	public TransferHash(String algorithm) {
+		this.algorithm = algorithm;
+		if(CRC32.equals(algorithm)) {
+			this.digest = null;
+			this.crc = new CRC32();
+		} else {
+			try {
+				this.digest = MessageDigest.getInstance(algorithm);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalArgumentException("unsupported hash algorithm: " + algorithm, e);
+			}
+			this.crc = null;
+		}
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public void update(byte[] b, int off, int len) {
+		if(crc != null) {
+			crc.update(b, off, len);
+		} else {
+			digest.update(b, off, len);
+		}
+	}
+
+	/**
+	 * 读取本地文件开头的部分更新摘要（断点续传时未传输的部分）
+	 * @param file 本地文件
+	 * @param length 读取的长度
+	 */
+	public void update(File file, long length) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream input = new FileInputStream(file)) {
+			long remaining = length;
+			int n;
+			while(remaining > 0 && (n = input.read(buffer, 0, (int) Math.min(buffer.length, remaining))) >= 0) {
+				update(buffer, 0, n);
+				remaining -= n;
+			}
+		}
+	}
+
+	/**
+	 * 读取的数据（包括skip跳过的数据）同时更新摘要
+	 */
+	public InputStream wrap(InputStream input) {
+		return new FilterInputStream(input) {
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if(b >= 0) {
+					update(new byte[] { (byte) b }, 0, 1);
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				if(n > 0) {
+					update(b, off, n);
+				}
+				return n;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				// 跳过的数据也需要计入摘要（如JSch断点续传时跳过已上传的部分）
+				byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(n, 0))];
+				long skipped = 0;
+				while(skipped < n) {
+					int r = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+					if(r < 0) {
+						break;
+					}
+					skipped += r;
+				}
+				return skipped;
+			}
+
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 写入的数据同时更新摘要
+	 */
+	public OutputStream wrap(OutputStream output) {
+		return new FilterOutputStream(output) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				update(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				update(b, off, len);
+			}
+		};
+	}
+
+	/**
+	 * 摘要的十六进制字符串（小写），计算后摘要被重置
+	 */
+	public String hex() {
+		if(crc != null) {
+			return String.format("%08x", crc.getValue());
+		}
+		StringBuilder sb = new StringBuilder();
+		for(byte b : digest.digest()) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 与服务器计算的摘要比较（忽略大小写，CRC32忽略前导0）
+	 * @param local 本地摘要，{@link #hex()}的结果
+	 * @param remote 服务器返回的摘要
+	 * @return 一致返回true
+	 */
+	public boolean matches(String local, String remote) {
+		if(remote == null) {
+			return false;
+		}
+		if(crc != null) {
+			try {
+				return Long.parseLong(local, 16) == Long.parseLong(remote.trim(), 16);
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		return local.equalsIgnoreCase(remote.trim());
+	}
+
+}
@@ -0,0 +1,420 @@
+package com.my.project;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按协议和主机统计的传输指标，注册为JMX MBean
+ *
+ * 传输路径上只使用LongAdder累加，延迟使用固定区间的直方图，不加锁也不分配对象，
+ * 读取时再汇总计算平均值和分位数
+ */
+public class TransferMetrics implements TransferMetricsMXBean {
+
+	public static final Logger logger = LoggerFactory.getLogger(TransferMetrics.class);
+
+	/** JMX domain */
+	public static final String DOMAIN = "com.my.project";
+
+	/** 延迟直方图各区间的上限(ms) */
+	private static final long[] BUCKETS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000 };
+
+	/** 协议+主机 -> 指标 */
+	private static final ConcurrentMap<String, TransferMetrics> registry = new ConcurrentHashMap<String, TransferMetrics>();
+
+	/**
+	 * 远程操作
+	 */
+	public enum Operation { LS, STAT, EXISTS, GET, PUT, MKDIR, RM, RMDIR }
+
+	private final String protocol;
+	private final String host;
+	private final LongAdder bytesIn = new LongAdder();
+	private final LongAdder bytesOut = new LongAdder();
+	/** 下载/上传的累计耗时(ns)，并行的传输分别累计 */
+	private final LongAdder nanosIn = new LongAdder();
+	private final LongAdder nanosOut = new LongAdder();
+	private final LongAdder connects = new LongAdder();
+	private final LongAdder connectNanos = new LongAdder();
+	private final Map<Operation, Histogram> latencies = new EnumMap<Operation, Histogram>(Operation.class);
+	private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+
+	private TransferMetrics(String protocol, String host) {
+		this.protocol = protocol;
+		this.host = host;
+		for(Operation op : Operation.values()) {
+			latencies.put(op, new Histogram());
+		}
+	}
+
+	/**
+	 * 获取指定协议和主机的指标，第一次获取时注册MBean
+	 * @param protocol 协议类型(FTP/SFTP)
+	 * @param hostname 主机
+	 * @param port 端口
+	 * @return 指标
+	 */
+	public static TransferMetrics of(String protocol, String hostname, Integer port) {
+		String host = hostname + ":" + port;
+		return registry.computeIfAbsent(protocol + "://" + host, k -> {
+			TransferMetrics metrics = new TransferMetrics(protocol, host);
+			register(metrics);
+			return metrics;
+		});
+	}
+
+	private static void register(TransferMetrics metrics) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = metrics.getObjectName();
+			if(!server.isRegistered(name)) {
+				server.registerMBean(metrics, name);
+			}
+		} catch (JMException e) {
+			logger.warn(e.getMessage());
+		}
+	}
+
+	/**
+	 * MBean名称：com.my.project:type=TransferMetrics,protocol=...,host="..."
+	 */
+	public ObjectName getObjectName() throws JMException {
+		return new ObjectName(DOMAIN + ":type=TransferMetrics,protocol=" + protocol + ",host=" + ObjectName.quote(host));
+	}
+
+	/**
+	 * 记录一次操作的延迟
+	 * @param op 操作
+	 * @param start 开始时间(System.nanoTime())
+	 */
+	public void record(Operation op, long start) {
+		latencies.get(op).record(System.nanoTime() - start);
+	}
+
+	/**
+	 * 记录一次连接的建立
+	 * @param start 开始时间(System.nanoTime())
+	 */
+	public void connected(long start) {
+		connects.increment();
+		connectNanos.add(System.nanoTime() - start);
+	}
+
+	/**
+	 * 记录一次错误
+	 * @param code FTP返回码或SFTP状态码
+	 */
+	public void error(String code) {
+		errors.computeIfAbsent(code, k -> new LongAdder()).increment();
+	}
+
+	/**
+	 * 记录下载的字节数和耗时（不经过流的传输）
+	 * @param bytes 字节数
+	 * @param start 开始时间(System.nanoTime())
+	 */
+	public void received(long bytes, long start) {
+		bytesIn.add(bytes);
+		nanosIn.add(System.nanoTime() - start);
+	}
+
+	/**
+	 * 记录上传的字节数和耗时（不经过流的传输）
+	 * @param bytes 字节数
+	 * @param start 开始时间(System.nanoTime())
+	 */
+	public void sent(long bytes, long start) {
+		bytesOut.add(bytes);
+		nanosOut.add(System.nanoTime() - start);
+	}
+
+	/**
+	 * 统计从输入流读取的字节数（上传），从创建到关闭计入上传耗时；skip跳过的字节不计入
+	 */
+	public InputStream outbound(InputStream input) {
+		return counting(input, bytesOut, nanosOut);
+	}
+
+	/**
+	 * 统计从输入流读取的字节数（下载），从创建到关闭计入下载耗时；skip跳过的字节不计入
+	 */
+	public InputStream inbound(InputStream input) {
+		return counting(input, bytesIn, nanosIn);
+	}
+
+	/**
+	 * 统计写入输出流的字节数（下载），从创建到关闭计入下载耗时
+	 */
+	public OutputStream inbound(OutputStream output) {
+		return counting(output, bytesIn, nanosIn);
+	}
+
+	/**
+	 * 统计写入输出流的字节数（上传），从创建到关闭计入上传耗时
+	 */
+	public OutputStream outbound(OutputStream output) {
+		return counting(output, bytesOut, nanosOut);
+	}
+
+	private static InputStream counting(InputStream input, LongAdder bytes, LongAdder nanos) {
+		long start = System.nanoTime();
+		return new FilterInputStream(input) {
+			private boolean closed = false;
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if(b >= 0) {
+					bytes.increment();
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				if(n > 0) {
+					bytes.add(n);
+				}
+				return n;
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if(!closed) {
+						closed = true;
+						nanos.add(System.nanoTime() - start);
+					}
+				}
+			}
+		};
+	}
+
+	private static OutputStream counting(OutputStream output, LongAdder bytes, LongAdder nanos) {
+		long start = System.nanoTime();
+		return new FilterOutputStream(output) {
+			private boolean closed = false;
+
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				bytes.increment();
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				bytes.add(len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if(!closed) {
+						closed = true;
+						nanos.add(System.nanoTime() - start);
+					}
+				}
+			}
+		};
+	}
+
+	@Override
+	public String getProtocol() {
+		return protocol;
+	}
+
+	@Override
+	public String getHost() {
+		return host;
+	}
+
+	@Override
+	public long getBytesIn() {
+		return bytesIn.sum();
+	}
+
+	@Override
+	public long getBytesOut() {
+		return bytesOut.sum();
+	}
+
+	@Override
+	public double getInboundThroughput() {
+		return throughput(bytesIn.sum(), nanosIn.sum());
+	}
+
+	@Override
+	public double getOutboundThroughput() {
+		return throughput(bytesOut.sum(), nanosOut.sum());
+	}
+
+	@Override
+	public long getConnectCount() {
+		return connects.sum();
+	}
+
+	@Override
+	public double getConnectTimeMean() {
+		long n = connects.sum();
+		return n > 0 ? connectNanos.sum() / 1e6 / n : 0d;
+	}
+
+	@Override
+	public Map<String, Long> getOperationCounts() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		latencies.forEach((op, h) -> map.put(name(op), h.count.sum()));
+		return map;
+	}
+
+	@Override
+	public Map<String, Double> getLatencyMean() {
+		Map<String, Double> map = new LinkedHashMap<String, Double>();
+		latencies.forEach((op, h) -> map.put(name(op), h.mean()));
+		return map;
+	}
+
+	@Override
+	public Map<String, Long> getLatencyP50() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		latencies.forEach((op, h) -> map.put(name(op), h.percentile(0.5)));
+		return map;
+	}
+
+	@Override
+	public Map<String, Long> getLatencyP99() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		latencies.forEach((op, h) -> map.put(name(op), h.percentile(0.99)));
+		return map;
+	}
+
+	@Override
+	public long[] getLatencyBuckets() {
+		return BUCKETS.clone();
+	}
+
+	@Override
+	public Map<String, long[]> getLatencyHistograms() {
+		Map<String, long[]> map = new LinkedHashMap<String, long[]>();
+		latencies.forEach((op, h) -> map.put(name(op), h.counts()));
+		return map;
+	}
+
+	@Override
+	public Map<String, Long> getErrors() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		errors.forEach((code, n) -> map.put(code, n.sum()));
+		return map;
+	}
+
+	@Override
+	public void reset() {
+		bytesIn.reset();
+		bytesOut.reset();
+		nanosIn.reset();
+		nanosOut.reset();
+		connects.reset();
+		connectNanos.reset();
+		latencies.values().forEach(Histogram::reset);
+		errors.clear();
+	}
+
+	private static String name(Operation op) {
+		return op.name().toLowerCase();
+	}
+
+	private static double throughput(long bytes, long nanos) {
+		return nanos > 0 ? bytes * 1e9 / nanos : 0d;
+	}
+
+	/**
+	 * 固定区间的延迟直方图
+	 */
+	private static class Histogram {
+
+		private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+		Histogram() {
+			for(int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long elapsed) {
+			long millis = elapsed / 1000000L;
+			int i = 0;
+			while(i < BUCKETS.length && millis >= BUCKETS[i]) {
+				i++;
+			}
+			buckets[i].increment();
+			count.increment();
+			nanos.add(elapsed);
+		}
+
+		long[] counts() {
+			long[] counts = new long[buckets.length];
+			for(int i = 0; i < buckets.length; i++) {
+				counts[i] = buckets[i].sum();
+			}
+			return counts;
+		}
+
+		double mean() {
+			long n = count.sum();
+			return n > 0 ? nanos.sum() / 1e6 / n : 0d;
+		}
+
+		long percentile(double p) {
+			long[] counts = counts();
+			long total = 0;
+			for(long c : counts) {
+				total += c;
+			}
+			if(total == 0) {
+				return 0L;
+			}
+			long rank = (long) Math.ceil(total * p);
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= rank) {
+					return i < BUCKETS.length ? BUCKETS[i] : Long.MAX_VALUE;
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		void reset() {
+			for(LongAdder b : buckets) {
+				b.reset();
+			}
+			count.reset();
+			nanos.reset();
+		}
+	}
+
+}
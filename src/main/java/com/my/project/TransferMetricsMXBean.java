@@ -0,0 +1,60 @@
+package com.my.project;
+
+import java.util.Map;
+
+/**
+ * 传输统计的JMX接口
+ *
+ * 延迟的单位为毫秒，按操作名(ls/stat/exists/get/put/mkdir/rm/rmdir)分组
+ */
+public interface TransferMetricsMXBean {
+
+	/** 协议类型(FTP/SFTP) */
+	String getProtocol();
+
+	/** 主机和端口 */
+	String getHost();
+
+	/** 下载的字节数 */
+	long getBytesIn();
+
+	/** 上传的字节数 */
+	long getBytesOut();
+
+	/** 下载速度(byte/s)，按各次下载（包括流式读取）的累计传输耗时计算 */
+	double getInboundThroughput();
+
+	/** 上传速度(byte/s)，按各次上传（包括流式写入）的累计传输耗时计算 */
+	double getOutboundThroughput();
+
+	/** 建立的连接数 */
+	long getConnectCount();
+
+	/** 建立连接（包括登录）的平均耗时(ms) */
+	double getConnectTimeMean();
+
+	/** 各操作的调用次数 */
+	Map<String, Long> getOperationCounts();
+
+	/** 各操作的平均延迟(ms) */
+	Map<String, Double> getLatencyMean();
+
+	/** 各操作延迟的中位数（所在区间的上限，ms） */
+	Map<String, Long> getLatencyP50();
+
+	/** 各操作延迟的99分位数（所在区间的上限，ms） */
+	Map<String, Long> getLatencyP99();
+
+	/** 延迟直方图各区间的上限(ms)，最后一个区间没有上限 */
+	long[] getLatencyBuckets();
+
+	/** 各操作的延迟直方图，与{@link #getLatencyBuckets()}对应 */
+	Map<String, long[]> getLatencyHistograms();
+
+	/** 按FTP返回码或SFTP状态码统计的错误数 */
+	Map<String, Long> getErrors();
+
+	/** 清空统计 */
+	void reset();
+
+}
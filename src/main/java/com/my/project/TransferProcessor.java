@@ -0,0 +1,309 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 下载阶段：订阅目录遍历的条目，下载文件（目录只创建本地目录），发送下载后的本地文件
+ *
+ * 向上游请求的数量不超过下游未满足的需求，同时也不超过并行度：下游不请求时不再读取目录列表，
+ * 下游有需求时目录列表始终领先于下载，下载连接不会空闲等待。
+ * 下载使用{@link ConnectionGroup}新建的连接（不使用遍历目录的连接），结束后关闭。
+ * 任意下载失败后取消上游并以该异常结束，正在进行的下载完成后关闭连接
+ */
+public class TransferProcessor<T> implements RemoteFlow.Processor<RemoteFlow.Entry<T>, File> {
+
+	public static final Logger logger = LoggerFactory.getLogger(TransferProcessor.class);
+
+	private static final AtomicInteger threadNumber = new AtomicInteger(0);
+
+	/** 用于复制连接的连接 */
+	private final RemoteClient<T> client;
+	/** 远程路径的父目录，条目相对于该目录的路径保存到localPath下 */
+	private final String base;
+	private final File localPath;
+	private final int parallelism;
+	private final ExecutorService workers;
+	/** 下载使用的连接 */
+	private final ConnectionGroup<T> connections;
+	/** 待执行的drain次数 */
+	private final AtomicInteger wip = new AtomicInteger(0);
+
+	// 以下状态由this保护
+	private RemoteFlow.Subscription upstream;
+	private RemoteFlow.Subscriber<? super File> downstream;
+	/** 下游未满足的需求 */
+	private long demand = 0L;
+	/** 已向上游请求但未收到的条目数 */
+	private long pending = 0L;
+	/** 正在下载的条目数 */
+	private int inflight = 0;
+	/** 已下载但未发送的文件 */
+	private final Deque<File> results = new ArrayDeque<File>();
+	private boolean upstreamDone = false;
+	private Throwable error;
+	private boolean cancelled = false;
+	private boolean terminated = false;
+	private boolean released = false;
+
+	/**
+	 * @param client 用于复制连接的连接
+	 * @param remotePath 遍历的远程目录，与mget相同，下载到localPath下同名的目录中
+	 * @param localPath 本地目录
+	 * @param parallelism 并行度（最大连接数）
+	 */
+	TransferProcessor(RemoteClient<T> client, String remotePath, File localPath, int parallelism) {
+		RemoteClient.assertTrue(parallelism > 0, "parallelism must be greater than 0");
+		this.client = client;
+		String path = remotePath.endsWith("/") ? remotePath.substring(0, remotePath.length() - 1) : remotePath;
+		this.base = path.substring(0, path.lastIndexOf('/') + 1);
+		this.localPath = localPath;
+		this.parallelism = parallelism;
+		this.connections = new ConnectionGroup<T>(client, parallelism, false);
+		this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread t = new Thread(r, "remote-transfer-" + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@Override
+	public void onSubscribe(RemoteFlow.Subscription subscription) {
+		RemoteClient.assertNotNull(subscription, "subscription can not be null");
+		synchronized (this) {
+			if(upstream == null && !terminated) {
+				upstream = subscription;
+				subscription = null;
+			}
+		}
+		if(subscription != null) {
+			subscription.cancel();
+			return;
+		}
+		drain();
+	}
+
+	@Override
+	public void onNext(RemoteFlow.Entry<T> item) {
+		RemoteClient.assertNotNull(item, RemoteClient.REMOTE_ENTRY_CAN_NOT_BE_NULL);
+		synchronized (this) {
+			if(terminated || cancelled) {
+				return;
+			}
+			pending = Math.max(0L, pending - 1);
+			inflight++;
+		}
+		workers.execute(() -> transfer(item));
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		synchronized (this) {
+			if(error == null) {
+				error = throwable;
+			}
+			upstreamDone = true;
+		}
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		synchronized (this) {
+			upstreamDone = true;
+		}
+		drain();
+	}
+
+	@Override
+	public void subscribe(RemoteFlow.Subscriber<? super File> subscriber) {
+		RemoteClient.assertNotNull(subscriber, "subscriber can not be null");
+		boolean accepted;
+		synchronized (this) {
+			accepted = downstream == null;
+			if(accepted) {
+				downstream = subscriber;
+			}
+		}
+		if(!accepted) {
+			subscriber.onSubscribe(new RemoteFlow.Subscription() {
+				@Override
+				public void request(long n) { }
+				@Override
+				public void cancel() { }
+			});
+			subscriber.onError(new IllegalStateException("transfer processor supports only one subscriber"));
+			return;
+		}
+		subscriber.onSubscribe(new RemoteFlow.Subscription() {
+			@Override
+			public void request(long n) {
+				synchronized (TransferProcessor.this) {
+					if(n <= 0) {
+						if(error == null) {
+							error = new IllegalArgumentException("request must be greater than 0: " + n);
+						}
+					} else {
+						demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+					}
+				}
+				drain();
+			}
+
+			@Override
+			public void cancel() {
+				synchronized (TransferProcessor.this) {
+					cancelled = true;
+				}
+				drain();
+			}
+		});
+		drain();
+	}
+
+	/**
+	 * 下载一个条目
+	 */
+	private void transfer(RemoteFlow.Entry<T> item) {
+		File file = null;
+		Throwable failure = null;
+		try {
+			file = new File(localPath, relativize(item.getPath()));
+			if(client.isDir(item.getEntry())) {
+				file.mkdirs();
+			} else {
+				file.getParentFile().mkdirs();
+				RemoteClient<T> c = connections.acquire();
+				try {
+					c.get(item.getEntry(), item.getPath(), file);
+				} finally {
+					connections.release(c);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			failure = e;
+		}
+		synchronized (this) {
+			inflight--;
+			if(failure != null) {
+				if(error == null) {
+					error = failure;
+				}
+			} else if(!terminated && !cancelled) {
+				results.add(file);
+			}
+		}
+		drain();
+	}
+
+	/**
+	 * 远程路径相对于遍历目录的父目录的路径
+	 */
+	private String relativize(String path) {
+		return path.startsWith(base) ? path.substring(base.length()) : path.substring(path.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * 向下游发送文件、结束信号，并按需向上游请求条目；同一时间最多只有一个线程执行
+	 */
+	private void drain() {
+		if(wip.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			emit();
+			request();
+			missed = wip.addAndGet(-missed);
+		} while(missed != 0);
+		release();
+	}
+
+	private void emit() {
+		for(;;) {
+			RemoteFlow.Subscriber<? super File> subscriber;
+			File file = null;
+			Throwable failure = null;
+			boolean complete = false;
+			RemoteFlow.Subscription cancel = null;
+			synchronized (this) {
+				subscriber = downstream;
+				if(terminated || subscriber == null) {
+					return;
+				}
+				if(cancelled) {
+					terminated = true;
+					cancel = upstreamDone ? null : upstream;
+				} else if(error != null) {
+					terminated = true;
+					failure = error;
+					cancel = upstreamDone ? null : upstream;
+				} else if(demand > 0 && !results.isEmpty()) {
+					file = results.poll();
+					if(demand != Long.MAX_VALUE) {
+						demand--;
+					}
+				} else if(upstreamDone && inflight == 0 && results.isEmpty()) {
+					terminated = true;
+					complete = true;
+				} else {
+					return;
+				}
+			}
+			if(cancel != null) {
+				cancel.cancel();
+			}
+			if(file != null) {
+				subscriber.onNext(file);
+			} else if(failure != null) {
+				subscriber.onError(failure);
+			} else if(complete) {
+				subscriber.onComplete();
+			}
+		}
+	}
+
+	/**
+	 * 向上游请求：正在下载、已请求和未发送的条目总数不超过下游需求，正在下载和已请求的条目数不超过并行度
+	 */
+	private void request() {
+		RemoteFlow.Subscription subscription;
+		long n;
+		synchronized (this) {
+			if(terminated || upstreamDone || upstream == null) {
+				return;
+			}
+			long outstanding = pending + inflight;
+			n = Math.min(parallelism - outstanding, demand - outstanding - results.size());
+			if(n <= 0) {
+				return;
+			}
+			pending += n;
+			subscription = upstream;
+		}
+		subscription.request(n);
+	}
+
+	/**
+	 * 结束且没有正在进行的下载时关闭连接和线程
+	 */
+	private void release() {
+		synchronized (this) {
+			if(!terminated || inflight > 0 || released) {
+				return;
+			}
+			released = true;
+		}
+		workers.shutdown();
+		connections.close();
+	}
+
+}
@@ -0,0 +1,339 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按主机自动调整的传输参数
+ *
+ * 建立连接时测量往返时间(RTT)，传输较大的文件时测量吞吐量，两者均按指数加权平均累计，
+ * 由带宽时延积(BDP = 吞吐量 * RTT)计算缓冲区大小、套接字缓冲区大小、SFTP并发请求数和建议的并行度，
+ * 测量结果按协议和主机保存到属性文件中，之后的连接直接使用已学习到的参数；
+ * 测量结果有明显变化时在断开连接（不包括归还到连接池）、关闭连接池和JVM退出时保存
+ *
+ * 默认不启用，通过{@link #setEnabled(boolean)}或系统属性hello-ftp.tuning=true启用
+ */
+public class TransferTuning {
+
+	public static final Logger logger = LoggerFactory.getLogger(TransferTuning.class);
+
+	/** 是否启用自动调整的系统属性 */
+	public static final String ENABLED_PROPERTY = "hello-ftp.tuning";
+	/** 保存学习结果的属性文件的系统属性，默认为~/.hello-ftp/tuning.properties */
+	public static final String FILE_PROPERTY = "hello-ftp.tuning.file";
+
+	/** 没有测量结果时FTP使用的缓冲区大小 */
+	public static final int DEFAULT_BUFFER_SIZE = 100 * 1024;
+	/** JSch默认的SFTP并发请求数 */
+	public static final int DEFAULT_BULK_REQUESTS = 16;
+
+	private static final int MIN_BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+	private static final int MIN_SOCKET_BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_SOCKET_BUFFER_SIZE = 16 * 1024 * 1024;
+	/** JSch每个读请求的数据长度 */
+	private static final int SFTP_REQUEST_SIZE = 32 * 1024;
+	private static final int MAX_BULK_REQUESTS = 256;
+	private static final int MAX_PARALLELISM = 8;
+	/** 指数加权平均中新测量值的权重 */
+	private static final double ALPHA = 0.3;
+	/** 参与吞吐量计算的最小传输量，过小的传输主要受RTT影响 */
+	private static final long MIN_SAMPLE_BYTES = 256 * 1024;
+	/** 测量值相对上次保存的值变化超过该比例（或计算出的参数发生变化）时才需要保存 */
+	private static final double SAVE_THRESHOLD = 0.1;
+	/** 低于该值(ms)的RTT变化不需要保存，本机或局域网的RTT很小，相对变化没有意义 */
+	private static final double SAVE_RTT_MILLIS = 1d;
+
+	private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+	private static File file = new File(System.getProperty(FILE_PROPERTY,
+			System.getProperty("user.home") + File.separator + ".hello-ftp" + File.separator + "tuning.properties"));
+	/** 协议+主机 -> 参数 */
+	private static final ConcurrentMap<String, TransferTuning> registry = new ConcurrentHashMap<String, TransferTuning>();
+	private static boolean loaded = false;
+	private static boolean hooked = false;
+	private static volatile boolean dirty = false;
+
+	private final String key;
+	/** 往返时间(ms)，小于0表示还没有测量 */
+	private volatile double rtt = -1d;
+	/** 单连接吞吐量(byte/s)，小于0表示还没有测量 */
+	private volatile double throughput = -1d;
+	// 上次保存或加载时的测量值和计算出的参数
+	private volatile double savedRtt = -1d;
+	private volatile double savedThroughput = -1d;
+	private volatile String savedParameters;
+
+	private TransferTuning(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * 是否启用自动调整，只影响之后建立的连接
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		TransferTuning.enabled = enabled;
+	}
+
+	/**
+	 * 设置保存学习结果的属性文件，已加载的参数被清除，下次使用时从新文件中加载
+	 * @param file 属性文件
+	 */
+	public static synchronized void setFile(File file) {
+		RemoteClient.assertNotNull(file, RemoteClient.LOCAL_PATH_CAN_NOT_BE_NULL);
+		TransferTuning.file = file;
+		registry.clear();
+		loaded = false;
+		dirty = false;
+	}
+
+	public static synchronized File getFile() {
+		return file;
+	}
+
+	/**
+	 * 获取指定协议和主机的参数，第一次获取时从属性文件中加载所有主机的学习结果
+	 * @param protocol 协议类型(FTP/SFTP)
+	 * @param hostname 主机
+	 * @param port 端口
+	 * @return 参数
+	 */
+	public static synchronized TransferTuning of(String protocol, String hostname, Integer port) {
+		if(!loaded) {
+			load();
+			loaded = true;
+		}
+		if(!hooked) {
+			// 连接池中的连接不经过断开连接，退出时保存其学习结果
+			Runtime.getRuntime().addShutdownHook(new Thread(TransferTuning::save, "transfer-tuning-save"));
+			hooked = true;
+		}
+		return registry.computeIfAbsent(protocol + "://" + hostname + ":" + port, TransferTuning::new);
+	}
+
+	/**
+	 * 将学习结果保存到属性文件（先写临时文件再替换），测量结果没有明显变化时不写文件
+	 */
+	public static synchronized void save() {
+		if(!dirty) {
+			return;
+		}
+		Properties properties = new Properties();
+		registry.values().forEach(t -> t.store(properties));
+		try {
+			File dir = file.getAbsoluteFile().getParentFile();
+			if(dir != null && !dir.exists()) {
+				dir.mkdirs();
+			}
+			File tmp = new File(file.getAbsolutePath() + ".tmp");
+			try (OutputStream output = new FileOutputStream(tmp)) {
+				properties.store(output, "hello-ftp transfer tuning");
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			dirty = false;
+		} catch (IOException e) {
+			logger.warn("failed to save {}: {}", file.getAbsolutePath(), e.getMessage());
+		}
+	}
+
+	private static void load() {
+		if(!file.isFile()) {
+			return;
+		}
+		Properties properties = new Properties();
+		try (InputStream input = new FileInputStream(file)) {
+			properties.load(input);
+		} catch (IOException e) {
+			logger.warn("failed to load {}: {}", file.getAbsolutePath(), e.getMessage());
+			return;
+		}
+		for(String name : properties.stringPropertyNames()) {
+			if(name.endsWith(".rtt")) {
+				String key = name.substring(0, name.length() - ".rtt".length());
+				TransferTuning tuning = registry.computeIfAbsent(key, TransferTuning::new);
+				try {
+					tuning.rtt = Double.parseDouble(properties.getProperty(key + ".rtt", "-1"));
+					tuning.throughput = Double.parseDouble(properties.getProperty(key + ".throughput", "-1"));
+					tuning.saved();
+				} catch (NumberFormatException e) {
+					logger.warn("invalid tuning of {}: {}", key, e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void store(Properties properties) {
+		if(rtt < 0) {
+			return;
+		}
+		properties.setProperty(key + ".rtt", String.valueOf(rtt));
+		properties.setProperty(key + ".throughput", String.valueOf(throughput));
+		// 以下为计算结果，仅供查看
+		properties.setProperty(key + ".bufferSize", String.valueOf(getBufferSize()));
+		properties.setProperty(key + ".socketBufferSize", String.valueOf(getSocketBufferSize()));
+		properties.setProperty(key + ".bulkRequests", String.valueOf(getBulkRequests()));
+		properties.setProperty(key + ".segments", String.valueOf(getSegments()));
+		properties.setProperty(key + ".parallelism", String.valueOf(getParallelism()));
+		saved();
+	}
+
+	private void saved() {
+		savedRtt = rtt;
+		savedThroughput = throughput;
+		savedParameters = parameters();
+	}
+
+	/**
+	 * 测量值相对上次保存的值变化明显或计算出的参数发生变化时标记为需要保存，
+	 * 每次连接都会测量RTT，微小的波动不重写属性文件
+	 */
+	private void changed() {
+		if(moved(rtt, savedRtt, SAVE_RTT_MILLIS) || moved(throughput, savedThroughput, 0d) || !parameters().equals(savedParameters)) {
+			dirty = true;
+		}
+	}
+
+	private static boolean moved(double value, double saved, double min) {
+		return saved < 0 ? value >= 0 : Math.abs(value - saved) > Math.max(saved * SAVE_THRESHOLD, min);
+	}
+
+	/**
+	 * 由测量值计算出的参数
+	 */
+	private String parameters() {
+		return getBufferSize() + "," + getSocketBufferSize() + "," + getBulkRequests() + "," + getSegments() + "," + getParallelism();
+	}
+
+	/**
+	 * 记录一次往返时间的测量
+	 * @param nanos 往返时间(ns)
+	 */
+	public void roundTrip(long nanos) {
+		double millis = nanos / 1e6;
+		rtt = rtt < 0 ? millis : rtt * (1 - ALPHA) + millis * ALPHA;
+		changed();
+	}
+
+	/**
+	 * 记录一次传输，传输量过小时忽略
+	 * @param bytes 传输的字节数
+	 * @param nanos 耗时(ns)
+	 */
+	public void transferred(long bytes, long nanos) {
+		if(bytes < MIN_SAMPLE_BYTES || nanos <= 0) {
+			return;
+		}
+		double rate = bytes * 1e9 / nanos;
+		throughput = throughput < 0 ? rate : throughput * (1 - ALPHA) + rate * ALPHA;
+		changed();
+	}
+
+	/**
+	 * 往返时间(ms)，还没有测量时返回-1
+	 */
+	public double getRoundTripTime() {
+		return rtt;
+	}
+
+	/**
+	 * 单连接吞吐量(byte/s)，还没有测量时返回-1
+	 */
+	public double getThroughput() {
+		return throughput;
+	}
+
+	/**
+	 * 带宽时延积(byte)，RTT或吞吐量还没有测量时返回-1
+	 */
+	public long getBandwidthDelayProduct() {
+		if(rtt < 0 || throughput < 0) {
+			return -1L;
+		}
+		return (long) (throughput * rtt / 1000d);
+	}
+
+	/**
+	 * 传输时的流缓冲区大小
+	 */
+	public int getBufferSize() {
+		long bdp = getBandwidthDelayProduct();
+		if(bdp < 0) {
+			return DEFAULT_BUFFER_SIZE;
+		}
+		return clamp(ceilPowerOfTwo(bdp / 4), MIN_BUFFER_SIZE, MAX_BUFFER_SIZE);
+	}
+
+	/**
+	 * 套接字发送/接收缓冲区大小(SO_SNDBUF/SO_RCVBUF)，能容纳两倍的带宽时延积，还没有测量时返回0（使用系统默认值）
+	 */
+	public int getSocketBufferSize() {
+		long bdp = getBandwidthDelayProduct();
+		if(bdp < 0) {
+			return 0;
+		}
+		return clamp(ceilPowerOfTwo(bdp * 2), MIN_SOCKET_BUFFER_SIZE, MAX_SOCKET_BUFFER_SIZE);
+	}
+
+	/**
+	 * SFTP下载时同时发出的读请求数，使在途的数据量覆盖带宽时延积
+	 */
+	public int getBulkRequests() {
+		long bdp = getBandwidthDelayProduct();
+		if(bdp < 0) {
+			return DEFAULT_BULK_REQUESTS;
+		}
+		return clamp((bdp + SFTP_REQUEST_SIZE - 1) / SFTP_REQUEST_SIZE, DEFAULT_BULK_REQUESTS, MAX_BULK_REQUESTS);
+	}
+
+	/**
+	 * 建议的单文件分段数：带宽时延积超过单个连接的最大窗口，或RTT较大时单连接难以跑满带宽
+	 */
+	public int getSegments() {
+		if(rtt < 0) {
+			return 1;
+		}
+		long bdp = getBandwidthDelayProduct();
+		int byWindow = bdp < 0 ? 1 : (int) ((bdp * 2 + MAX_SOCKET_BUFFER_SIZE - 1) / MAX_SOCKET_BUFFER_SIZE);
+		int byLatency = (int) Math.ceil(rtt / 50d);
+		return clamp(Math.max(byWindow, byLatency), 1, MAX_PARALLELISM);
+	}
+
+	/**
+	 * 建议的目录上传/下载并行度：每个文件至少需要若干次往返，RTT越大并行的收益越大
+	 */
+	public int getParallelism() {
+		if(rtt < 0) {
+			return 1;
+		}
+		return clamp((long) Math.ceil(rtt / 10d), 1, MAX_PARALLELISM);
+	}
+
+	@Override
+	public String toString() {
+		return key + " rtt=" + rtt + "ms throughput=" + throughput + "B/s";
+	}
+
+	private static long ceilPowerOfTwo(long n) {
+		return n <= 1 ? 1 : Long.highestOneBit(n - 1) << 1;
+	}
+
+	private static int clamp(long n, int min, int max) {
+		return (int) Math.max(min, Math.min(max, n));
+	}
+
+}
@@ -0,0 +1,220 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authentication;
+import org.apache.ftpserver.ftplet.AuthenticationFailedException;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.DefaultFtpReply;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.FtpReply;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.apache.ftpserver.ftplet.User;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.Listener;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.message.MessageResourceFactory;
+import org.apache.ftpserver.usermanager.AnonymousAuthentication;
+import org.apache.ftpserver.usermanager.UsernamePasswordAuthentication;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.TransferRatePermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+
+/**
+ * 内嵌的FTP服务（Apache FtpServer），单个用户，监听随机端口，供测试和性能测试使用
+ */
+public class EmbeddedFtpServer implements Closeable {
+
+	private final String hostname;
+	private final String username;
+	private final String password;
+	private final File root;
+
+	/** 最大登录数，为0时使用FtpServer的默认值 */
+	private int maxLogins = 0;
+	/** 以502拒绝的命令 */
+	private final Set<String> refused = ConcurrentHashMap.newKeySet();
+
+	private FtpServer server;
+	private int port = -1;
+
+	/**
+	 * @param hostname 监听地址
+	 * @param username 用户名
+	 * @param password 密码
+	 * @param root 用户根目录
+	 */
+	public EmbeddedFtpServer(String hostname, String username, String password, File root) {
+		this.hostname = hostname;
+		this.username = username;
+		this.password = password;
+		this.root = root;
+	}
+
+	/**
+	 * 设置最大登录数，需要在启动服务之前设置
+	 * @param maxLogins 最大登录数
+	 */
+	public void setMaxLogins(int maxLogins) {
+		this.maxLogins = maxLogins;
+	}
+
+	/**
+	 * 以502拒绝指定的命令，FEAT仍然列出这些命令，服务运行中也可以设置
+	 * @param commands 命令名称，不指定时不再拒绝任何命令
+	 */
+	public void refuse(String... commands) {
+		refused.clear();
+		refused.addAll(Arrays.asList(commands));
+	}
+
+	/**
+	 * 启动服务
+	 */
+	public void start() throws IOException {
+		FtpServerFactory serverFactory = new FtpServerFactory();
+		ListenerFactory factory = new ListenerFactory();
+		factory.setServerAddress(hostname);
+		factory.setPort(0);
+		Listener listener = factory.createListener();
+		serverFactory.addListener("default", listener);
+		serverFactory.setUserManager(new InnerUserManager(username, password, root));
+		serverFactory.getFtplets().put("refuse", new DefaultFtplet() {
+			@Override
+			public FtpletResult beforeCommand(FtpSession session, FtpRequest request) throws FtpException, IOException {
+				if(refused.contains(request.getCommand().toUpperCase())) {
+					session.write(new DefaultFtpReply(FtpReply.REPLY_502_COMMAND_NOT_IMPLEMENTED, "Command not implemented."));
+					return FtpletResult.SKIP;
+				}
+				return super.beforeCommand(session, request);
+			}
+		});
+		if(maxLogins > 0) {
+			ConnectionConfigFactory connectionConfig = new ConnectionConfigFactory();
+			connectionConfig.setMaxLogins(maxLogins);
+			serverFactory.setConnectionConfig(connectionConfig.createConnectionConfig());
+		}
+		MessageResourceFactory messageFactory = new MessageResourceFactory();
+		// 打包到jar中运行时没有classpath根目录，使用默认的消息
+		URL messages = EmbeddedFtpServer.class.getResource("/");
+		if(messages != null && "file".equals(messages.getProtocol())) {
+			messageFactory.setCustomMessageDirectory(new File(messages.getFile()));
+		}
+		serverFactory.setMessageResource(messageFactory.createMessageResource());
+		this.server = serverFactory.createServer();
+		try {
+			this.server.start();
+		} catch (FtpException e) {
+			throw new IOException(e);
+		}
+		this.port = listener.getPort();
+	}
+
+	/**
+	 * 服务监听的端口
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(this.server != null) {
+			this.server.stop();
+			this.server = null;
+		}
+	}
+
+	private static class InnerUserManager implements UserManager {
+
+		private final User user;
+
+		public InnerUserManager(String username, String password, File home) {
+			BaseUser u = new BaseUser();
+	        u.setName(username);
+	        u.setPassword(password);
+	        u.setEnabled(true);
+	        u.setHomeDirectory(home.toPath().toString());
+
+	        List<Authority> authorities = new ArrayList<Authority>();
+	        authorities.add(new WritePermission());
+	        authorities.add(new ConcurrentLoginPermission(0, 0));
+	        authorities.add(new TransferRatePermission(0, 0));
+	        u.setAuthorities(authorities);
+	        u.setMaxIdleTime(0);
+	        this.user = u;
+		}
+
+		@Override
+		public User getUserByName(String username) throws FtpException {
+			if(user.getName().equals(username)) {
+				return user;
+			}
+			return null;
+		}
+
+		@Override
+		public String[] getAllUserNames() throws FtpException {
+			return new String[] { user.getName() };
+		}
+
+		@Override
+		public void delete(String username) throws FtpException { }
+
+		@Override
+		public void save(User user) throws FtpException { }
+
+		@Override
+		public boolean doesExist(String username) throws FtpException {
+			return user.getName().equals(username);
+		}
+
+		@Override
+		public User authenticate(Authentication authentication) throws AuthenticationFailedException {
+			if (authentication instanceof UsernamePasswordAuthentication) {
+				UsernamePasswordAuthentication upauth = (UsernamePasswordAuthentication) authentication;
+
+				String username = upauth.getUsername();
+				String password = upauth.getPassword();
+
+				if (user.getName().equals(username) && user.getPassword().equals(password)) {
+					return user;
+				} else {
+					throw new AuthenticationFailedException("Authentication failed");
+				}
+			} else if (authentication instanceof AnonymousAuthentication) {
+
+				throw new AuthenticationFailedException("Authentication failed");
+			} else {
+				throw new IllegalArgumentException("Authentication not supported by this user manager");
+			}
+		}
+
+		@Override
+		public String getAdminName() throws FtpException {
+			return user.getName();
+		}
+
+		@Override
+		public boolean isAdmin(String username) throws FtpException {
+			return user.getName().equals(username);
+		}
+
+	}
+
+}
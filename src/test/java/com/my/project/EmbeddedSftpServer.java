@@ -0,0 +1,128 @@
+package com.my.project;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.common.io.BuiltinIoServiceFactoryFactories;
+import org.apache.sshd.common.kex.KexProposalOption;
+import org.apache.sshd.common.session.helpers.AbstractSession;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.auth.AsyncAuthException;
+import org.apache.sshd.server.auth.UserAuth;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.auth.password.PasswordChangeRequiredException;
+import org.apache.sshd.server.auth.password.UserAuthPasswordFactory;
+import org.apache.sshd.server.auth.pubkey.UserAuthPublicKeyFactory;
+import org.apache.sshd.server.config.keys.AuthorizedKeysAuthenticator;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.scp.ScpCommandFactory;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.server.subsystem.sftp.SftpSubsystemFactory;
+
+/**
+ * 内嵌的SFTP服务（Apache MINA SSHD），单个用户，监听随机端口，供测试和性能测试使用
+ */
+public class EmbeddedSftpServer implements Closeable {
+
+	private final String username;
+	private final String password;
+	private final File root;
+	/** 公钥认证使用的authorized_keys文件，为null时只支持密码认证 */
+	private Path authorizedKeys;
+
+	private SshServer server;
+
+	/**
+	 * @param username 用户名
+	 * @param password 密码
+	 * @param root 用户根目录
+	 */
+	public EmbeddedSftpServer(String username, String password, File root) {
+		this.username = username;
+		this.password = password;
+		this.root = root;
+	}
+
+	/**
+	 * 启用公钥认证，需要在启动服务之前设置
+	 * @param authorizedKeys authorized_keys文件
+	 */
+	public void setAuthorizedKeys(Path authorizedKeys) {
+		this.authorizedKeys = authorizedKeys;
+	}
+
+	/**
+	 * 启动服务
+	 */
+	public void start() throws IOException {
+		this.server = SshServer.setUpDefaultServer();
+		this.server.setIoServiceFactoryFactory(BuiltinIoServiceFactoryFactories.NETTY.create());
+		this.server.setPort(0);
+		VirtualFileSystemFactory fileSystemFactory = new VirtualFileSystemFactory(root.toPath());
+		fileSystemFactory.setUserHomeDir(username, root.toPath());
+		this.server.setFileSystemFactory(fileSystemFactory);
+		this.server.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory.Builder().build()));
+		this.server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+
+		List<NamedFactory<UserAuth>> userAuthFactories = new ArrayList<NamedFactory<UserAuth>>();
+		if(authorizedKeys != null) {
+			userAuthFactories.add(UserAuthPublicKeyFactory.INSTANCE);
+		}
+		userAuthFactories.add(UserAuthPasswordFactory.INSTANCE);
+		this.server.setUserAuthFactories(userAuthFactories);
+
+		this.server.setCommandFactory(new ScpCommandFactory());
+
+		if(authorizedKeys != null) {
+			this.server.setPublickeyAuthenticator(new AuthorizedKeysAuthenticator(authorizedKeys) {
+				@Override
+				protected boolean isValidUsername(String name, ServerSession session) {
+					return username.equals(name);
+				}
+			});
+		}
+
+		this.server.setPasswordAuthenticator(new PasswordAuthenticator() {
+			@Override
+			public boolean authenticate(String name, String pass, ServerSession session)
+					throws PasswordChangeRequiredException, AsyncAuthException {
+				return username.equals(name) && password.equals(pass);
+			}
+		});
+		this.server.start();
+	}
+
+	/**
+	 * 服务监听的端口
+	 */
+	public int getPort() {
+		return server.getPort();
+	}
+
+	/**
+	 * 当前会话协商的服务器到客户端的压缩算法
+	 */
+	public List<String> getCompressions() {
+		List<String> list = new ArrayList<String>();
+		for(AbstractSession session : server.getActiveSessions()) {
+			list.add(session.getNegotiatedKexParameter(KexProposalOption.S2CCOMP));
+		}
+		return list;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(this.server != null) {
+			this.server.close();
+			this.server = null;
+		}
+	}
+
+}
@@ -7,30 +7,11 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.commons.net.ftp.FTPFile;
-import org.apache.ftpserver.FtpServer;
-import org.apache.ftpserver.FtpServerFactory;
-import org.apache.ftpserver.ftplet.Authentication;
-import org.apache.ftpserver.ftplet.AuthenticationFailedException;
-import org.apache.ftpserver.ftplet.Authority;
-import org.apache.ftpserver.ftplet.FtpException;
-import org.apache.ftpserver.ftplet.User;
-import org.apache.ftpserver.ftplet.UserManager;
-import org.apache.ftpserver.listener.Listener;
-import org.apache.ftpserver.listener.ListenerFactory;
-import org.apache.ftpserver.message.MessageResourceFactory;
-import org.apache.ftpserver.usermanager.AnonymousAuthentication;
-import org.apache.ftpserver.usermanager.UsernamePasswordAuthentication;
-import org.apache.ftpserver.usermanager.impl.BaseUser;
-import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
-import org.apache.ftpserver.usermanager.impl.TransferRatePermission;
-import org.apache.ftpserver.usermanager.impl.WritePermission;
 import org.junit.Test;
 
-public class FtpClientTest extends RemoteClientTest<FtpServer, FtpClient> {
+public class FtpClientTest extends RemoteClientTest<EmbeddedFtpServer, FtpClient> {
 
 	@Test
 	public void testStat() throws IOException {
@@ -51,25 +32,47 @@ public class FtpClientTest extends RemoteClientTest<FtpServer, FtpClient> {
 		assertNull(client.stat("/d/e/f"));
 	}
 
-	@Override
-	public void startServer() throws IOException {
-		FtpServerFactory serverFactory = new FtpServerFactory();
-		ListenerFactory factory = new ListenerFactory();
-		factory.setServerAddress(HOSTNAME);
-		factory.setPort(0);
-		Listener listener = factory.createListener();
-		serverFactory.addListener("default", listener);
-		serverFactory.setUserManager(new InnerUserManager(USERNAME, PASSWORD, serverRoot.getRoot()));
-		MessageResourceFactory messageFactory = new MessageResourceFactory();
-		messageFactory.setCustomMessageDirectory(new File(FtpClientTest.class.getResource("/").getFile()));
-		serverFactory.setMessageResource(messageFactory.createMessageResource());
-		this.server = serverFactory.createServer();
+	@Test
+	public void testSnapshotReuseWithoutMlst() throws IOException {
+		for(int i = 0; i < 10; i++) {
+			remoteFolder("data", "x", "d" + i);
+		}
+		FtpClient c = new FtpClient(HOSTNAME, this.localPort, USERNAME, PASSWORD, TIMEOUT, null, null) {
+			@Override
+			boolean hasMlst() {
+				return false;
+			}
+		};
 		try {
-			this.server.start();
-		} catch (FtpException e) {
-			throw new IOException(e);
+			File first = localGet("first.snapshot");
+			File second = localGet("second.snapshot");
+			assertEquals(11, c.snapshot("/data", first));
+			long ls = c.getMetrics().getOperationCounts().get("ls");
+			assertEquals(11, c.snapshot("/data", second, first));
+			// 查询/data时列出根目录，/data和未变化的/data/x各列出一次，不再为每个子目录列出/data/x
+			assertEquals(3L, c.getMetrics().getOperationCounts().get("ls") - ls);
+		} finally {
+			c.close();
 		}
-		this.localPort = listener.getPort();
+	}
+
+	@Test
+	public void testVerifyRefused() throws IOException {
+		// 服务器在FEAT中列出摘要命令，但执行时拒绝
+		server.refuse("MD5", "XMD5", "XSHA1", "XSHA256", "XSHA512", "XCRC", "HASH");
+		client.setVerify(true);
+		client.put(local("newfile.txt", "Hello New File"), "/new");
+		client.get("/new/newfile.txt", localGet("newfile.txt"));
+		assertEquals("Hello New File", content(localGet("newfile.txt")));
+		// 拒绝摘要命令不断开连接
+		assertEquals(1, client.ls("/new").size());
+	}
+
+	@Override
+	public void startServer() throws IOException {
+		this.server = new EmbeddedFtpServer(HOSTNAME, USERNAME, PASSWORD, serverRoot.getRoot());
+		this.server.start();
+		this.localPort = this.server.getPort();
 		this.client = new FtpClient(HOSTNAME, this.localPort, USERNAME, PASSWORD, TIMEOUT, null, null);
 	}
 
@@ -80,86 +83,19 @@ public class FtpClientTest extends RemoteClientTest<FtpServer, FtpClient> {
 			this.client = null;
 		}
 		if(this.server != null) {
-			this.server.stop();
+			this.server.close();
 			this.server = null;
 		}
 	}
 
-	private static class InnerUserManager implements UserManager {
-
-		private final User user;
-
-		public InnerUserManager(String username, String password, File home) {
-			BaseUser u = new BaseUser();
-	        u.setName(username);
-	        u.setPassword(password);
-	        u.setEnabled(true);
-	        u.setHomeDirectory(home.toPath().toString());
-
-	        List<Authority> authorities = new ArrayList<Authority>();
-	        authorities.add(new WritePermission());
-	        authorities.add(new ConcurrentLoginPermission(0, 0));
-	        authorities.add(new TransferRatePermission(0, 0));
-	        u.setAuthorities(authorities);
-	        u.setMaxIdleTime(0);
-	        this.user = u;
-		}
-
-		@Override
-		public User getUserByName(String username) throws FtpException {
-			if(user.getName().equals(username)) {
-				return user;
-			}
-			return null;
-		}
-
-		@Override
-		public String[] getAllUserNames() throws FtpException {
-			return new String[] { user.getName() };
-		}
-
-		@Override
-		public void delete(String username) throws FtpException { }
-
-		@Override
-		public void save(User user) throws FtpException { }
-
-		@Override
-		public boolean doesExist(String username) throws FtpException {
-			return user.getName().equals(username);
-		}
-
-		@Override
-		public User authenticate(Authentication authentication) throws AuthenticationFailedException {
-			if (authentication instanceof UsernamePasswordAuthentication) {
-				UsernamePasswordAuthentication upauth = (UsernamePasswordAuthentication) authentication;
-
-				String username = upauth.getUsername();
-				String password = upauth.getPassword();
-
-				if (user.getName().equals(username) && user.getPassword().equals(password)) {
-					return user;
-				} else {
-					throw new AuthenticationFailedException("Authentication failed");
-				}
-			} else if (authentication instanceof AnonymousAuthentication) {
-
-				throw new AuthenticationFailedException("Authentication failed");
-			} else {
-				throw new IllegalArgumentException("Authentication not supported by this user manager");
-			}
-		}
-
-		@Override
-		public String getAdminName() throws FtpException {
-			return user.getName();
-		}
-
-		@Override
-		public boolean isAdmin(String username) throws FtpException {
-			return user.getName().equals(username);
-		}
+	@Override
+	public RemoteClient<?> borrow(RemoteClientPool pool) throws IOException {
+		return pool.borrowFtpClient(HOSTNAME, this.localPort, USERNAME, PASSWORD, TIMEOUT, null, null);
+	}
 
+	@Override
+	public RemoteClient<?> connect(int compression) throws IOException {
+		return new FtpClient(HOSTNAME, this.localPort, USERNAME, PASSWORD, TIMEOUT, null, null, compression);
 	}
 
 }
@@ -1,15 +1,45 @@
 package com.my.project;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.commons.net.io.Util;
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Layout;
 import org.apache.log4j.Logger;
@@ -30,6 +60,8 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 	public static final String HOSTNAME = "localhost";
 	/** 连接超时时间(milliseconds) */
 	public static final int TIMEOUT = 60 * 1000;
+	/** 测试文件修改时间(2020-01-02 03:04:05 UTC) */
+	public static final long TIME = 1577934245000L;
 
 	/** Log Appender */
 	public final TestAppender loggerAppender = new TestAppender();
@@ -51,6 +83,14 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 	 * 关闭测试FTP/SFTP服务
 	 */
 	public abstract void stopServer() throws IOException;
+	/**
+	 * 从连接池借出一个连接到测试FTP/SFTP服务
+	 */
+	public abstract RemoteClient<?> borrow(RemoteClientPool pool) throws IOException;
+	/**
+	 * 创建一个指定压缩级别的连接到测试FTP/SFTP服务
+	 */
+	public abstract RemoteClient<?> connect(int compression) throws IOException;
 
 	@Before
 	public void before() throws IOException {
@@ -144,6 +184,143 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertEquals(0, client.ls("/a/b.txt").size());
 	}
 
+	@Test
+	public void testLsStream() throws IOException {
+		remote("hello.txt", "Hello World");
+		remote(".hidden.txt", "Hidden File");
+		remoteFolder("new");
+
+		assertEquals(2, count(client.lsStream("/", true)));
+		assertEquals(3, count(client.lsStream("/", false)));
+		assertEquals(0, count(client.lsStream("/new", false)));
+		assertEquals(1, count(client.lsStream("/hello.txt", false)));
+		assertEquals(0, count(client.lsStream("/a", false)));
+
+		for(int i = 0; i < 20; i++) {
+			remote("new/" + i + ".txt", "" + i);
+		}
+		assertEquals(20, count(client.lsStream("/new", true)));
+		// 提前关闭后连接仍然可用
+		try(Stream<?> stream = client.lsStream("/new", true)) {
+			assertTrue(stream.findFirst().isPresent());
+		}
+		assertEquals(20, client.ls("/new").size());
+	}
+
+	@Test
+	public void testLsPublisher() throws Exception {
+		remoteFolder("new");
+		remote("new/.hidden.txt", "Hidden File");
+		for(int i = 0; i < 20; i++) {
+			remote("new/" + i + ".txt", "" + i);
+		}
+		// 只发送请求的数量
+		TestSubscriber<Object> subscriber = new TestSubscriber<Object>();
+		client.lsPublisher("/new", true).subscribe(subscriber);
+		subscriber.request(5);
+		subscriber.await(5);
+		Thread.sleep(100L);
+		assertEquals(5, subscriber.items.size());
+		subscriber.request(Long.MAX_VALUE);
+		assertTrue(subscriber.awaitDone());
+		assertNull(subscriber.error);
+		assertEquals(20, subscriber.items.size());
+		// 同一个订阅的多次读取在同一个线程中执行
+		assertEquals(1, subscriber.threads.size());
+		assertEquals(20, client.ls("/new").size());
+
+		// 在调用者的executor中读取
+		ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "caller-executor"));
+		try {
+			TestSubscriber<Object> onExecutor = new TestSubscriber<Object>();
+			client.lsPublisher("/new", true, executor).subscribe(onExecutor);
+			onExecutor.request(Long.MAX_VALUE);
+			assertTrue(onExecutor.awaitDone());
+			assertEquals(20, onExecutor.items.size());
+			assertEquals(Collections.singleton("caller-executor"), onExecutor.threads);
+		} finally {
+			executor.shutdown();
+		}
+
+		TestSubscriber<Object> notExists = new TestSubscriber<Object>();
+		client.lsPublisher("/a", false).subscribe(notExists);
+		notExists.request(1);
+		assertTrue(notExists.awaitDone());
+		assertNull(notExists.error);
+		assertEquals(0, notExists.items.size());
+
+		TestSubscriber<Object> invalid = new TestSubscriber<Object>();
+		client.lsPublisher("/new", false).subscribe(invalid);
+		invalid.request(0);
+		assertTrue(invalid.awaitDone());
+		assertTrue(invalid.error instanceof IllegalArgumentException);
+
+		// onNext抛出异常时关闭迭代器和读取线程，连接可以继续使用
+		List<Thread> readers = new CopyOnWriteArrayList<Thread>();
+		CountDownLatch failed = new CountDownLatch(1);
+		TestSubscriber<Object> failing = new TestSubscriber<Object>() {
+			@Override
+			public void onNext(Object item) {
+				readers.add(Thread.currentThread());
+				failed.countDown();
+				throw new IllegalStateException("failing subscriber");
+			}
+		};
+		client.lsPublisher("/new", false).subscribe(failing);
+		failing.request(Long.MAX_VALUE);
+		assertTrue(failed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		readers.get(0).join(TIMEOUT);
+		assertFalse(readers.get(0).isAlive());
+		assertEquals(1, readers.size());
+		assertFalse(failing.awaitDone(100L));
+		assertEquals(20, client.ls("/new").size());
+	}
+
+	@Test
+	public void testWalkPublisherDownload() throws Exception {
+		remoteFolder("new", "a", "b", "c");
+		remote("/new/a/a.txt", "This is a file");
+		remote("/new/a/b/b.txt", "This is b file");
+		remote("/new/a/b/c/c.txt", "This is c file");
+		remote("/new/a/b/c/.hidden.txt", "Hidden File");
+		RemoteClient<?> c = client;
+		walk(c);
+	}
+
+	private <T> void walk(RemoteClient<T> c) throws Exception {
+		TestSubscriber<RemoteFlow.Entry<T>> entries = new TestSubscriber<RemoteFlow.Entry<T>>();
+		c.walkPublisher("/new", true).subscribe(entries);
+		entries.request(Long.MAX_VALUE);
+		assertTrue(entries.awaitDone());
+		assertNull(entries.error);
+		List<String> paths = new ArrayList<String>();
+		for(RemoteFlow.Entry<T> entry : entries.items) {
+			paths.add(entry.getPath());
+		}
+		paths.sort(null);
+		assertEquals(Arrays.asList("/new/a", "/new/a/a.txt", "/new/a/b", "/new/a/b/b.txt", "/new/a/b/c", "/new/a/b/c/c.txt"), paths);
+
+		// 下游请求2个文件时最多下载2个
+		File local = localGet("download");
+		TransferProcessor<T> downloader = c.downloader("/new", local, 2);
+		c.walkPublisher("/new", false).subscribe(downloader);
+		TestSubscriber<File> files = new TestSubscriber<File>();
+		downloader.subscribe(files);
+		files.request(2);
+		files.await(2);
+		Thread.sleep(100L);
+		assertEquals(2, files.items.size());
+		files.request(Long.MAX_VALUE);
+		assertTrue(files.awaitDone());
+		assertNull(files.error);
+		assertEquals(7, files.items.size());
+		assertTrue(localGet("/download/new/a/b/c").isDirectory());
+		assertEquals("This is a file", content(localGet("/download/new/a/a.txt")));
+		assertEquals("This is c file", content(localGet("/download/new/a/b/c/c.txt")));
+		assertEquals("Hidden File", content(localGet("/download/new/a/b/c/.hidden.txt")));
+		assertEquals(1, c.ls("/new").size());
+	}
+
 	@Test
 	public void testMkdirNull() throws IOException {
 		exception.expect(IllegalArgumentException.class);
@@ -210,6 +387,41 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertTrue(loggerAppender.contains("/ already exists"));
 	}
 
+	@Test
+	public void testMkdirRecursiveRelative() throws IOException {
+		// 相对路径相对于工作目录（根目录）创建
+		client.mkdirRecursive("rel/a/b/");
+		assertTrue(remoteGet("/rel/a/b").isDirectory());
+		client.mkdirRecursive("rel/a/b");
+		assertTrue(loggerAppender.contains("rel/a/b already exists"));
+		client.mkdirRecursive("rel/a/c");
+		assertTrue(remoteGet("/rel/a/c").isDirectory());
+	}
+
+	@Test
+	public void testMkdirRecursiveKnownPrefix() throws IOException {
+		remoteFolder("a", "b");
+		client.mkdirRecursive("/a/b/c/d/e/f/g/h");
+		assertTrue(remoteGet("/a/b/c/d/e/f/g/h").isDirectory());
+		client.mkdirRecursive("a/b/c/d/x/y");
+		assertTrue(remoteGet("/a/b/c/d/x/y").isDirectory());
+
+		// 已创建的目录不再检查是否存在
+		remoteDelete("/a/b/c/d/e/f/g/h");
+		remoteGet("/a/b/c/d/e/f/g/h").delete();
+		client.mkdirRecursive("/a/b/c/d/e/f/g/h");
+		assertTrue(loggerAppender.contains("/a/b/c/d/e/f/g/h already exists"));
+		assertFalse(remoteGet("/a/b/c/d/e/f/g/h").exists());
+		client.clearCache();
+		client.mkdirRecursive("/a/b/c/d/e/f/g/h");
+		assertTrue(remoteGet("/a/b/c/d/e/f/g/h").isDirectory());
+
+		// 删除目录后不再认为其存在
+		client.rmRecursive("/a/b/c/d");
+		client.mkdirRecursive("/a/b/c/d/e");
+		assertTrue(remoteGet("/a/b/c/d/e").isDirectory());
+	}
+
 	@Test
 	public void testGetNull() throws IOException {
 		exception.expect(IllegalArgumentException.class);
@@ -259,6 +471,81 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertTrue(loggerAppender.contains("/no.txt does not exists"));
 	}
 
+	@Test
+	public void testResumeGet() throws IOException {
+		remote("hello.txt", "Hello World");
+		// 只下载本地文件之后的部分
+		local("hello.txt", "HELLO");
+		client.resumeGet("/hello.txt", localGet("hello.txt"));
+		assertEquals("HELLO World", content(localGet("hello.txt")));
+
+		client.resumeGet("/hello.txt", localGet("hello.txt"));
+		assertEquals("HELLO World", content(localGet("hello.txt")));
+
+		// 本地文件大于远程文件时重新下载
+		localDelete("hello.txt");
+		local("hello.txt", "Hello World Again");
+		client.resumeGet("/hello.txt", localGet("hello.txt"));
+		assertEquals("Hello World", content(localGet("hello.txt")));
+
+		client.resumeGet("/new.txt", localGet("new.txt"));
+		assertTrue(loggerAppender.contains("/new.txt does not exists"));
+	}
+
+	@Test
+	public void testGetSegmented() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for(int i = 0; i < 20000; i++) {
+			content.append(i).append('\n');
+		}
+		remote("big.txt", content.toString());
+		remote("abc.txt", "abc");
+
+		client.get("/big.txt", localGet("big.txt"), 4);
+		assertEquals(content.toString(), content(localGet("big.txt")));
+
+		// 分段数不超过文件大小
+		client.get("/abc.txt", localGet("abc.txt"), 8);
+		assertEquals("abc", content(localGet("abc.txt")));
+
+		// 连接在分段下载后仍然可用
+		assertTrue(client.exists("/abc.txt"));
+		client.get("/no.txt", localGet("no.txt"), 4);
+		assertTrue(loggerAppender.contains("/no.txt does not exists"));
+	}
+
+	@Test
+	public void testGetByEntry() throws IOException {
+		RemoteClient<?> c = client;
+		remote("hello.txt", "Hello World");
+		remoteFolder("a");
+		getByEntry(c, "/hello.txt", localGet("hello.txt"));
+		assertEquals("Hello World", content(localGet("/hello.txt")));
+
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage(String.format(RemoteClient.REMOTE_PATH_MUST_BE_A_FILE, "/a"));
+		getByEntry(c, "/a", localGet("a"));
+	}
+
+	@Test
+	public void testRmByEntry() throws IOException {
+		RemoteClient<?> c = client;
+		remote("hello.txt", "Hello World");
+		remoteFolder("a", "b");
+		remote("/a/b/b.txt", "This is b file");
+
+		rmByEntry(c, "/hello.txt");
+		assertFalse(remoteGet("/hello.txt").exists());
+		assertEquals(1, lsByEntry(c, "/a/b").size());
+		rmByEntry(c, "/a/b/b.txt");
+		rmdirByEntry(c, "/a/b");
+		assertFalse(remoteGet("/a/b").exists());
+
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage(String.format(RemoteClient.REMOTE_PATH_MUST_BE_A_FILE, "/a"));
+		rmByEntry(c, "/a");
+	}
+
 	@Test
 	public void testMgetNull() throws IOException {
 		exception.expect(IllegalArgumentException.class);
@@ -363,6 +650,38 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertEquals("This is c file", content(localGet("/download/new/a/b/c/c.txt")));
 	}
 
+	@Test
+	public void testMgetParallel() throws IOException {
+		remoteFolder("new", "a", "b", "c");
+		remoteFolder("new", "d");
+		for(int i = 0; i < 20; i++) {
+			remote("/new/a/a" + i + ".txt", "This is a file " + i);
+			remote("/new/d/d" + i + ".txt", "This is d file " + i);
+		}
+		remote("/new/a/b/c/c.txt", "This is c file");
+
+		client.mget("/new", localGet("download"), 4);
+
+		for(int i = 0; i < 20; i++) {
+			assertEquals("This is a file " + i, content(localGet("/download/new/a/a" + i + ".txt")));
+			assertEquals("This is d file " + i, content(localGet("/download/new/d/d" + i + ".txt")));
+		}
+		assertTrue(localGet("/download/new/a/b").isDirectory());
+		assertEquals("This is c file", content(localGet("/download/new/a/b/c/c.txt")));
+		assertTrue(client.exists("/new/a/b/c/c.txt"));
+	}
+
+	@Test
+	public void testMgetParallelLocalAlreadyExistsFile() throws IOException {
+		remoteFolder("new", "path");
+		remote("/new/path/newfile.txt", "This is new file");
+		localFolder("download", "new");
+		local("/download/new/path", "This is path file");
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage(String.format(RemoteClient.LOCAL_PATH_MUST_BE_A_DIRECTORY, localGet("/download/new/path").getAbsolutePath()));
+		client.mget("/new", localGet("/download/"), 4);
+	}
+
 	@Test
 	public void testPutNull() throws IOException {
 		exception.expect(IllegalArgumentException.class);
@@ -424,6 +743,449 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertEquals("Hello New File", content(remoteGet("/new/newfile.txt")));
 	}
 
+	@Test
+	public void testPutGetLarge() throws IOException {
+		// 超过单次NIO传输的长度
+		byte[] data = new byte[10 * 1024 * 1024 + 123];
+		new Random(1L).nextBytes(data);
+		File local = local("large.bin", "");
+		Files.write(local.toPath(), data);
+
+		client.put(local, "/large/");
+		assertArrayEquals(data, Files.readAllBytes(remoteGet("/large/large.bin").toPath()));
+		client.get("/large/large.bin", localGet("large-copy.bin"));
+		assertArrayEquals(data, Files.readAllBytes(localGet("large-copy.bin").toPath()));
+	}
+
+	@Test
+	public void testOpenWriteRead() throws IOException {
+		try (OutputStream output = client.openWrite("/stream/a/hello.txt")) {
+			output.write("Hello ".getBytes(StandardCharsets.UTF_8));
+			output.write("Stream".getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals("Hello Stream", content(remoteGet("/stream/a/hello.txt")));
+		// 覆盖已存在的文件，关闭后连接仍然可用
+		try (OutputStream output = client.openWrite("/stream/a/hello.txt")) {
+			output.write("Hi".getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals("Hi", content(remoteGet("/stream/a/hello.txt")));
+
+		try (InputStream input = client.openRead("/stream/a/hello.txt")) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			Util.copyStream(input, output);
+			assertEquals("Hi", new String(output.toByteArray(), StandardCharsets.UTF_8));
+		}
+		// 提前关闭后连接仍然可用
+		remote("big.txt", new String(new char[1024 * 1024]).replace('\0', 'x'));
+		try (InputStream input = client.openRead("/big.txt")) {
+			assertEquals('x', input.read());
+		}
+		assertTrue(client.exists("/big.txt"));
+	}
+
+	@Test
+	public void testPutGetBytes() throws IOException {
+		client.putBytes("Hello Bytes".getBytes(StandardCharsets.UTF_8), "/bytes/a.txt");
+		assertEquals("Hello Bytes", content(remoteGet("/bytes/a.txt")));
+		assertEquals("Hello Bytes", new String(client.getBytes("/bytes/a.txt"), StandardCharsets.UTF_8));
+
+		ByteBuffer heap = ByteBuffer.wrap("xxHello Buffer".getBytes(StandardCharsets.UTF_8));
+		heap.position(2);
+		client.putBytes(heap, "/bytes/b.txt");
+		assertFalse(heap.hasRemaining());
+		assertEquals("Hello Buffer", content(remoteGet("/bytes/b.txt")));
+		ByteBuffer direct = ByteBuffer.allocateDirect(16);
+		direct.put("Hello Direct".getBytes(StandardCharsets.UTF_8)).flip();
+		client.putBytes(direct, "/bytes/c.txt");
+		assertEquals("Hello Direct", content(remoteGet("/bytes/c.txt")));
+
+		client.putStream(new ByteArrayInputStream("Hello Stream".getBytes(StandardCharsets.UTF_8)), "/bytes/d.txt");
+		assertEquals("Hello Stream", content(remoteGet("/bytes/d.txt")));
+
+		client.putBytes(new byte[0], "/bytes/empty.txt");
+		assertEquals(0, client.getBytes("/bytes/empty.txt").length);
+	}
+
+	@Test
+	public void testPutSpillBuffer() throws IOException {
+		try (SpillBuffer buffer = new SpillBuffer(16)) {
+			buffer.write("Hello Memory".getBytes(StandardCharsets.UTF_8));
+			assertFalse(buffer.isSpilled());
+			client.putBuffer(buffer, "/spill/memory.txt");
+		}
+		assertEquals("Hello Memory", content(remoteGet("/spill/memory.txt")));
+
+		byte[] data = new byte[100 * 1024];
+		new Random(1L).nextBytes(data);
+		File file;
+		try (SpillBuffer buffer = new SpillBuffer(16)) {
+			buffer.write(data, 0, 10);
+			buffer.write(data, 10, data.length - 10);
+			assertTrue(buffer.isSpilled());
+			assertEquals(data.length, buffer.size());
+			client.putBuffer(buffer, "/spill/file.bin");
+			file = buffer.getFile();
+		}
+		assertFalse(file.exists());
+		assertArrayEquals(data, client.getBytes("/spill/file.bin"));
+	}
+
+	@Test
+	public void testOpenReadNotExists() throws IOException {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage(String.format(RemoteClient.REMOTE_PATH_MUST_BE_EXISTS, "/no.txt"));
+		client.openRead("/no.txt");
+	}
+
+	@Test
+	public void testLoadTest() throws Exception {
+		File csv = localGet("load.csv");
+		Map<String, String> options = LoadTest.parse(new String[] {
+				"--type=" + (client instanceof FtpClient ? "FTP" : "SFTP"), "--host=" + HOSTNAME, "--port=" + localPort,
+				"--user=" + USERNAME, "--pass=" + PASSWORD, "--remotePath=/load", "--clients=3",
+				"--warmup=1", "--duration=1", "--interval=1", "--size=100", "--output=" + csv.getAbsolutePath() });
+		Map<TransferMetrics.Operation, LoadTest.Result> results = new LoadTest(options).run(new PrintStream(new ByteArrayOutputStream()));
+
+		assertEquals(5, results.size());
+		long count = 0;
+		for(LoadTest.Result r : results.values()) {
+			assertEquals(0, r.getErrors());
+			assertTrue(r.getP50() <= r.getP99());
+			count += r.getCount();
+		}
+		assertTrue(count > 0);
+		List<String> lines = Files.readAllLines(csv.toPath());
+		assertEquals("time,phase,operation,count,throughput,p50,p95,p99,p999,errors", lines.get(0));
+		assertTrue(lines.size() > 5);
+		assertEquals(0, remoteList("load").size());
+	}
+
+	@Test
+	public void testTuning() throws IOException {
+		File file = localGet("tuning.properties");
+		TransferTuning.setFile(file);
+		TransferTuning.setEnabled(true);
+		try {
+			char[] chars = new char[512 * 1024];
+			Arrays.fill(chars, 'a');
+			File big = local("big.txt", new String(chars));
+			try (RemoteClient<?> tuned = client.duplicate()) {
+				TransferTuning tuning = tuned.getTuning();
+				assertTrue(tuning.getRoundTripTime() >= 0);
+				assertEquals(-1L, tuning.getBandwidthDelayProduct());
+				tuned.put(big, "/new");
+				assertTrue(tuning.getThroughput() > 0);
+				assertTrue(tuning.getSocketBufferSize() > 0);
+				assertTrue(tuning.getParallelism() >= 1);
+			}
+			// 新的连接从文件中加载已学习到的参数
+			double throughput = TransferTuning.of(client instanceof FtpClient ? "FTP" : "SFTP", HOSTNAME, localPort).getThroughput();
+			TransferTuning.setFile(file);
+			try (RemoteClient<?> tuned = client.duplicate()) {
+				assertEquals(throughput, tuned.getTuning().getThroughput(), 0d);
+			}
+			// 测量结果没有明显变化时不重写属性文件
+			TransferTuning tuning = TransferTuning.of(client instanceof FtpClient ? "FTP" : "SFTP", HOSTNAME, localPort);
+			assertTrue(file.delete());
+			tuning.roundTrip((long) (tuning.getRoundTripTime() * 1e6));
+			TransferTuning.save();
+			assertFalse(file.exists());
+			tuning.roundTrip((long) ((tuning.getRoundTripTime() + 100) * 1e6));
+			TransferTuning.save();
+			assertTrue(file.exists());
+		} finally {
+			TransferTuning.setEnabled(false);
+		}
+		assertNull(client.getTuning());
+	}
+
+	@Test
+	public void testTuningSegments() throws IOException {
+		// 高延迟主机建议分段传输
+		File file = localGet("tuning-segments.properties");
+		Properties properties = new Properties();
+		properties.setProperty((client instanceof FtpClient ? "FTP" : "SFTP") + "://" + HOSTNAME + ":" + localPort + ".rtt", "120");
+		try (OutputStream output = new FileOutputStream(file)) {
+			properties.store(output, null);
+		}
+		TransferTuning.setFile(file);
+		TransferTuning.setEnabled(true);
+		try (RemoteClient<?> tuned = client.duplicate()) {
+			assertTrue(tuned.getTuning().getSegments() > 1);
+			assertTrue(tuned.defaultSegments(64L * 1024 * 1024) > 1);
+			// 小文件和需要校验摘要的文件在当前连接上传输
+			assertEquals(1, tuned.defaultSegments(10L * 1024));
+			tuned.setVerify(true);
+			assertEquals(1, tuned.defaultSegments(64L * 1024 * 1024));
+			tuned.setVerify(false);
+			long connects = tuned.getMetrics().getConnectCount();
+			remote("small.txt", "Hello World");
+			tuned.get("/small.txt", localGet("small.txt"));
+			assertEquals("Hello World", content(localGet("small.txt")));
+			assertEquals(connects, tuned.getMetrics().getConnectCount());
+		} finally {
+			TransferTuning.setEnabled(false);
+			TransferTuning.setFile(localGet("tuning.properties"));
+		}
+	}
+
+	@Test
+	public void testCompression() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for(int i = 0; i < 20000; i++) {
+			content.append(i).append(",hello,world\n");
+		}
+		File local = local("data.csv", content.toString());
+		remoteFolder("empty");
+		try (RemoteClient<?> compressed = connect(TransferCompression.DEFAULT_LEVEL)) {
+			if(compressed instanceof FtpClient) {
+				assertTrue(((FtpClient) compressed).isCompressed());
+				assertFalse(((FtpClient) client).isCompressed());
+				// 压缩级别是连接参数，复制的连接使用相同的压缩级别
+				try (RemoteClient<?> duplicate = compressed.duplicate()) {
+					assertTrue(((FtpClient) duplicate).isCompressed());
+				}
+			}
+			compressed.put(local, "/data");
+			assertEquals(content.toString(), content(remoteGet("/data/data.csv")));
+			assertEquals(1, compressed.ls("/data").size());
+			assertEquals(0, compressed.ls("/empty").size());
+			compressed.get("/data/data.csv", localGet("data-copy.csv"));
+			assertEquals(content.toString(), content(localGet("data-copy.csv")));
+
+			compressed.putBytes(new byte[0], "/data/empty.txt");
+			assertEquals(0, compressed.getBytes("/data/empty.txt").length);
+			assertEquals(content.toString(), new String(compressed.getBytes("/data/data.csv"), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testVerify() throws IOException {
+		client.setVerify(true);
+		File local = local("newfile.txt", "Hello New File");
+		client.put(local, "/new");
+		client.get("/new/newfile.txt", localGet("newfile.txt"));
+		assertEquals("Hello New File", content(localGet("newfile.txt")));
+		// 断点续传时摘要包括已存在的部分
+		remote("hello.txt", "Hello World");
+		local("hello.txt", "Hello");
+		client.resumeGet("/hello.txt", localGet("hello.txt"));
+		assertEquals("Hello World", content(localGet("hello.txt")));
+		remote("new/resume.txt", "Hello");
+		client.resumePut(local("resume.txt", "Hello World"), "/new");
+		assertEquals("Hello World", content(remoteGet("/new/resume.txt")));
+		assertFalse(loggerAppender.contains("checksum"));
+
+		// 已存在的部分与远程文件不一致时校验失败，删除下载的文件
+		remote("mismatch.txt", "Hello World");
+		local("mismatch.txt", "HELLO");
+		try {
+			client.resumeGet("/mismatch.txt", localGet("mismatch.txt"));
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("checksum mismatch"));
+		}
+		assertFalse(localGet("mismatch.txt").exists());
+		remote("new/mismatch.txt", "HELLO");
+		try {
+			client.resumePut(local("mismatch.txt", "Hello World"), "/new");
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("checksum mismatch"));
+		}
+		assertFalse(remoteGet("/new/mismatch.txt").exists());
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		TransferMetrics metrics = client.getMetrics();
+		assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(metrics.getObjectName()));
+		// 同一主机的指标在多个连接间共享，只比较增量
+		long in = metrics.getBytesIn();
+		long out = metrics.getBytesOut();
+		long gets = metrics.getOperationCounts().get("get");
+		long puts = metrics.getOperationCounts().get("put");
+
+		client.put(local("metrics.txt", "0123456789"), "/");
+		client.get("/metrics.txt", localGet("metrics.get.txt"));
+		assertEquals(out + 10, metrics.getBytesOut());
+		assertEquals(in + 10, metrics.getBytesIn());
+		assertEquals(puts + 1, metrics.getOperationCounts().get("put").longValue());
+		assertEquals(gets + 1, metrics.getOperationCounts().get("get").longValue());
+		assertEquals(metrics.getBytesIn(), ManagementFactory.getPlatformMBeanServer().getAttribute(metrics.getObjectName(), "BytesIn"));
+	}
+
+	@Test
+	public void testMetricsResumePut() throws IOException {
+		TransferMetrics metrics = client.getMetrics();
+		File local = local("metrics.txt", "Hello New File");
+		remoteFolder("new");
+		remote("new/metrics.txt", "Hello");
+		long out = metrics.getBytesOut();
+		// 已上传的部分不计入上传的字节数，包括校验摘要时读取已上传部分的情况
+		client.setVerify(true);
+		client.resumePut(local, "/new");
+		assertEquals(out + 9, metrics.getBytesOut());
+		try (InputStream input = client.openRead("/new/metrics.txt")) {
+			while(input.read() >= 0) {
+			}
+		}
+		assertTrue(metrics.getInboundThroughput() > 0);
+	}
+
+	@Test
+	public void testResumePut() throws IOException {
+		File local = local("newfile.txt", "Hello New File");
+		// 只上传远程文件之后的部分
+		remoteFolder("new");
+		remote("new/newfile.txt", "HELLO");
+		client.resumePut(local, "/new");
+		assertEquals("HELLO New File", content(remoteGet("/new/newfile.txt")));
+
+		// 远程文件大于本地文件时重新上传
+		remoteDelete("new/newfile.txt");
+		remote("new/newfile.txt", "Hello New File Again");
+		client.resumePut(local, "/new");
+		assertEquals("Hello New File", content(remoteGet("/new/newfile.txt")));
+
+		client.resumePut(local, "/other/");
+		assertEquals("Hello New File", content(remoteGet("/other/newfile.txt")));
+	}
+
+	@Test
+	public void testSyncDownload() throws IOException {
+		remoteFolder("data", "sub");
+		File a = remote("data/a.txt", "Hello");
+		remote("data/sub/b.txt", "World");
+		a.setLastModified(TIME);
+
+		client.sync("/data", localGet("data"), SyncDirection.DOWNLOAD);
+		assertEquals("Hello", content(localGet("data/a.txt")));
+		assertEquals("World", content(localGet("data/sub/b.txt")));
+		assertEquals(TIME, localGet("data/a.txt").lastModified());
+
+		// 大小和修改时间相同的文件不再下载
+		Files.write(localGet("data/a.txt").toPath(), "HELLO".getBytes());
+		localGet("data/a.txt").setLastModified(TIME);
+		local("data/extra.txt", "Extra");
+		client.sync("/data", localGet("data"), SyncDirection.DOWNLOAD);
+		assertEquals("HELLO", content(localGet("data/a.txt")));
+		assertTrue(localGet("data/extra.txt").exists());
+
+		Files.write(a.toPath(), "Hello!".getBytes());
+		client.sync("/data", localGet("data"), SyncDirection.DOWNLOAD, true);
+		assertEquals("Hello!", content(localGet("data/a.txt")));
+		assertFalse(localGet("data/extra.txt").exists());
+	}
+
+	@Test
+	public void testSyncUpload() throws IOException {
+		localFolder("data", "sub");
+		File a = local("data/a.txt", "Hello");
+		local("data/sub/b.txt", "World");
+		a.setLastModified(TIME);
+
+		client.sync("/data", localGet("data"), SyncDirection.UPLOAD);
+		assertEquals("Hello", content(remoteGet("data/a.txt")));
+		assertEquals("World", content(remoteGet("data/sub/b.txt")));
+		assertEquals(TIME, remoteGet("data/a.txt").lastModified());
+
+		// 大小和修改时间相同的文件不再上传
+		Files.write(remoteGet("data/a.txt").toPath(), "HELLO".getBytes());
+		remoteGet("data/a.txt").setLastModified(TIME);
+		remoteFolder("data", "extra");
+		client.sync("/data", localGet("data"), SyncDirection.UPLOAD);
+		assertEquals("HELLO", content(remoteGet("data/a.txt")));
+		assertTrue(remoteGet("data/extra").exists());
+
+		Files.write(a.toPath(), "Hello!".getBytes());
+		client.sync("/data", localGet("data"), SyncDirection.UPLOAD, true);
+		assertEquals("Hello!", content(remoteGet("data/a.txt")));
+		assertFalse(remoteGet("data/extra").exists());
+	}
+
+	@Test
+	public void testSnapshotDiff() throws IOException {
+		remoteFolder("data", "a");
+		remoteFolder("data", "a b");
+		remote("data/a/1.txt", "1");
+		remote("data/a b/2.txt", "2");
+		remote("data/a.txt", "a");
+		File snapshot = localGet("data.snapshot");
+
+		List<String> changes = new ArrayList<String>();
+		RemoteSnapshot.Listener listener = new RemoteSnapshot.Listener() {
+			@Override
+			public void added(RemoteSnapshot.Entry entry) { changes.add("+" + entry.getPath()); }
+			@Override
+			public void removed(RemoteSnapshot.Entry entry) { changes.add("-" + entry.getPath()); }
+			@Override
+			public void modified(RemoteSnapshot.Entry before, RemoteSnapshot.Entry after) {
+				if(!after.isDirectory()) {
+					changes.add("*" + after.getPath());
+				}
+			}
+		};
+		client.diff("/data", snapshot, listener);
+		assertEquals(Arrays.asList("+a", "+a/1.txt", "+a b", "+a b/2.txt", "+a.txt"), changes);
+
+		changes.clear();
+		client.diff("/data", snapshot, listener);
+		assertEquals(0, changes.size());
+
+		changes.clear();
+		remoteDelete("data/a/1.txt");
+		Files.write(remoteGet("data/a.txt").toPath(), "aaa".getBytes());
+		remote("data/a b/3.txt", "3");
+		client.diff("/data", snapshot, listener);
+		assertEquals(Arrays.asList("-a/1.txt", "+a b/3.txt", "*a.txt"), changes);
+
+		try (RemoteSnapshot.Reader reader = new RemoteSnapshot.Reader(snapshot)) {
+			int count = 0;
+			while(reader.hasNext()) {
+				reader.next();
+				count++;
+			}
+			assertEquals(5, count);
+		}
+	}
+
+	@Test
+	public void testSnapshotIncremental() throws IOException {
+		remoteFolder("data", "a");
+		remoteFolder("data", "b");
+		remote("data/a/1.txt", "1");
+		remote("data/b/2.txt", "2");
+		File snapshot = localGet("data.snapshot");
+
+		List<String> changes = new ArrayList<String>();
+		RemoteSnapshot.Listener listener = new RemoteSnapshot.Listener() {
+			@Override
+			public void added(RemoteSnapshot.Entry entry) { changes.add("+" + entry.getPath()); }
+			@Override
+			public void removed(RemoteSnapshot.Entry entry) { changes.add("-" + entry.getPath()); }
+			@Override
+			public void modified(RemoteSnapshot.Entry before, RemoteSnapshot.Entry after) { }
+		};
+		client.diff("/data", snapshot, listener, 60 * 60 * 1000L);
+		assertEquals(Arrays.asList("+a", "+a/1.txt", "+b", "+b/2.txt"), changes);
+
+		// 目录a的修改时间未变化，增量遍历时不再列出
+		long time = remoteGet("data/a").lastModified();
+		remote("data/a/new.txt", "new");
+		remoteGet("data/a").setLastModified(time);
+		remote("data/b/3.txt", "3");
+		remoteGet("data/b").setLastModified(TIME);
+		changes.clear();
+		client.diff("/data", snapshot, listener, 60 * 60 * 1000L);
+		assertEquals(Arrays.asList("+b/3.txt"), changes);
+
+		// 完整遍历
+		changes.clear();
+		client.diff("/data", snapshot, listener, 0L);
+		assertEquals(Arrays.asList("+a/new.txt"), changes);
+	}
+
 	@Test
 	public void testMputNull() throws IOException {
 		exception.expect(IllegalArgumentException.class);
@@ -518,6 +1280,40 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertEquals("This is c file", content(remoteGet("/upload/new/a/b/c/c.txt")));
 	}
 
+	@Test
+	public void testMputParallel() throws IOException {
+		localFolder("new", "a", "b", "c");
+		localFolder("new", "d");
+		for(int i = 0; i < 20; i++) {
+			local("/new/a/a" + i + ".txt", "This is a file " + i);
+			local("/new/d/d" + i + ".txt", "This is d file " + i);
+		}
+		local("/new/a/b/c/c.txt", "This is c file");
+		remoteFolder("upload", "new", "d");
+		remote("/upload/new/d/old.txt", "This is old file");
+
+		client.mput(localGet("/new"), "/upload", 4);
+
+		for(int i = 0; i < 20; i++) {
+			assertEquals("This is a file " + i, content(remoteGet("/upload/new/a/a" + i + ".txt")));
+			assertEquals("This is d file " + i, content(remoteGet("/upload/new/d/d" + i + ".txt")));
+		}
+		assertTrue(remoteGet("/upload/new/a/b").isDirectory());
+		assertEquals("This is c file", content(remoteGet("/upload/new/a/b/c/c.txt")));
+		assertEquals("This is old file", content(remoteGet("/upload/new/d/old.txt")));
+	}
+
+	@Test
+	public void testMputParallelRemoteAlreadyExistsFile() throws IOException {
+		localFolder("new", "path");
+		local("/new/path/newfile.txt", "This is new file");
+		remoteFolder("upload", "new");
+		remote("/upload/new/path", "This is path file");
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage(String.format(RemoteClient.REMOTE_PATH_MUST_BE_A_DIRECTORY, "/upload/new/path"));
+		client.mput(localGet("/new"), "/upload", 4);
+	}
+
 	@Test
 	public void testRmNull() throws IOException {
 		exception.expect(IllegalArgumentException.class);
@@ -661,6 +1457,27 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertFalse(remoteGet("/a").exists());
 	}
 
+	@Test
+	public void testRmRecursiveParallel() throws IOException {
+		remoteFolder("a", "b", "c");
+		remoteFolder("a", "d");
+		remoteFolder("a", "e");
+		for(int i = 0; i < 20; i++) {
+			remote("/a/b/b" + i + ".txt", "This is b file " + i);
+			remote("/a/d/d" + i + ".txt", "This is d file " + i);
+		}
+		remote("/a/b/c/c.txt", "This is c file");
+		remote("/a/.hidden.txt", "Hidden File");
+		remote("hello.txt", "Hello World");
+
+		client.rmRecursive("/a", 4);
+		assertFalse(remoteGet("/a").exists());
+		assertTrue(remoteGet("/hello.txt").exists());
+
+		client.rmRecursive("/hello.txt", 4);
+		assertFalse(remoteGet("/hello.txt").exists());
+	}
+
 	@Test
 	public void testExistsNull() {
 		assertFalse(client.exists(null));
@@ -690,6 +1507,56 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertNull(client.stat("/no.txt"));
 	}
 
+	@Test
+	public void testCache() throws IOException, InterruptedException {
+		remote("hello.txt", "Hello World");
+		remoteFolder("a");
+		remote("/a/a.txt", "This is a file");
+		client.enableCache(500L, 100);
+
+		assertTrue(client.exists("/hello.txt"));
+		assertFalse(client.exists("/no.txt"));
+		assertEquals(1, client.ls("/a").size());
+		remoteGet("/hello.txt").delete();
+		remote("no.txt", "No File");
+		remote("/a/b.txt", "This is b file");
+		// 缓存有效期内返回缓存的结果
+		assertTrue(client.exists("/hello.txt"));
+		assertFalse(isDir(client, "/hello.txt"));
+		assertFalse(client.exists("/no.txt"));
+		assertNull(client.stat("/no.txt"));
+		assertEquals(1, client.ls("/a").size());
+		assertTrue(client.exists("/a/a.txt"));
+
+		Thread.sleep(600L);
+		assertFalse(client.exists("/hello.txt"));
+		assertTrue(client.exists("/no.txt"));
+		assertEquals(2, client.ls("/a").size());
+	}
+
+	@Test
+	public void testCacheInvalidate() throws IOException {
+		client.enableCache(60 * 1000L, 100);
+
+		assertFalse(client.exists("/new"));
+		assertEquals(0, client.ls("/new").size());
+		client.put(local("newfile.txt", "Hello New File"), "/new/");
+		assertTrue(isDir(client, "/new"));
+		assertTrue(client.exists("/new/newfile.txt"));
+		assertEquals(1, client.ls("/new").size());
+
+		client.rm("/new/newfile.txt");
+		assertFalse(client.exists("/new/newfile.txt"));
+		assertEquals(0, client.ls("/new").size());
+
+		client.mkdirRecursive("/new/a/b");
+		assertTrue(client.exists("/new/a/b"));
+		assertEquals(1, client.ls("/new").size());
+		client.rmRecursive("/new", 2);
+		assertFalse(client.exists("/new/a/b"));
+		assertFalse(client.exists("/new"));
+	}
+
 	@Test
 	public void testIsDirNull() {
 		assertFalse(client.isDir(null));
@@ -700,6 +1567,313 @@ public abstract class RemoteClientTest<S, C extends RemoteClient<?>> extends Bas
 		assertNull(client.getFileName(null));
 	}
 
+	@Test
+	public void testPoolReuse() throws IOException {
+		remote("hello.txt", "Hello World");
+		try (RemoteClientPool pool = new RemoteClientPool()) {
+			RemoteClient<?> c1 = borrow(pool);
+			assertEquals(1, pool.getActiveCount(c1.getPoolKey()));
+			c1.close();
+			assertEquals(0, pool.getActiveCount(c1.getPoolKey()));
+			assertEquals(1, pool.getIdleCount(c1.getPoolKey()));
+			c1.close();
+			assertEquals(1, pool.getIdleCount(c1.getPoolKey()));
+
+			RemoteClient<?> c2 = borrow(pool);
+			assertTrue(c1 == c2);
+			assertTrue(c2.exists("/hello.txt"));
+			c2.close();
+		}
+	}
+
+	@Test
+	public void testPoolMaxPerKey() throws IOException {
+		try (RemoteClientPool pool = new RemoteClientPool(1, 60 * 1000L, 100L)) {
+			RemoteClient<?> c1 = borrow(pool);
+			try {
+				borrow(pool);
+				fail();
+			} catch (IOException e) {
+				assertEquals(String.format(RemoteClientPool.BORROW_TIMEOUT, c1.getPoolKey()), e.getMessage());
+			}
+			c1.close();
+			RemoteClient<?> c2 = borrow(pool);
+			assertTrue(c1 == c2);
+			c2.close();
+		}
+	}
+
+	@Test
+	public void testPoolEvictIdle() throws IOException, InterruptedException {
+		try (RemoteClientPool pool = new RemoteClientPool(2, 10L, 100L)) {
+			RemoteClient<?> c1 = borrow(pool);
+			c1.close();
+			Thread.sleep(50L);
+			pool.evict();
+			assertEquals(0, pool.getIdleCount(c1.getPoolKey()));
+			assertFalse(c1.isAlive());
+			RemoteClient<?> c2 = borrow(pool);
+			assertTrue(c1 != c2);
+			c2.close();
+		}
+	}
+
+	@Test
+	public void testPoolHealthCheck() throws IOException {
+		try (RemoteClientPool pool = new RemoteClientPool()) {
+			RemoteClient<?> c1 = borrow(pool);
+			assertTrue(c1.isAlive());
+			c1.close();
+			c1.disconnect();
+			RemoteClient<?> c2 = borrow(pool);
+			assertTrue(c1 != c2);
+			assertTrue(c2.isAlive());
+			c2.close();
+		}
+	}
+
+	@Test
+	public void testPoolClosed() throws IOException {
+		RemoteClientPool pool = new RemoteClientPool();
+		RemoteClient<?> c1 = borrow(pool);
+		pool.close();
+		c1.close();
+		assertFalse(c1.isAlive());
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage(RemoteClientPool.POOL_IS_CLOSED);
+		borrow(pool);
+	}
+
+	@Test
+	public void testPoolKeyCredentials() {
+		RemoteClientPool.Key k1 = new RemoteClientPool.Key("FTP", HOSTNAME, 21, USERNAME, RemoteClientPool.Key.fingerprint(PASSWORD), null, null);
+		RemoteClientPool.Key k2 = new RemoteClientPool.Key("FTP", HOSTNAME, 21, USERNAME, RemoteClientPool.Key.fingerprint("wrong"), null, null);
+		assertEquals(k1, new RemoteClientPool.Key("FTP", HOSTNAME, 21, USERNAME, RemoteClientPool.Key.fingerprint(PASSWORD), null, null));
+		assertFalse(k1.equals(k2));
+		assertFalse(RemoteClientPool.Key.fingerprint(null, "a").equals(RemoteClientPool.Key.fingerprint("a", null)));
+		assertFalse(k1.toString().contains(RemoteClientPool.Key.fingerprint(PASSWORD)));
+	}
+
+	@Test
+	public void testPoolReleaseResetsSettings() throws IOException {
+		try (RemoteClientPool pool = new RemoteClientPool(1, 60 * 1000L, 60 * 1000L)) {
+			RemoteClient<?> c = borrow(pool);
+			c.enableCache(60 * 1000L, 100);
+			c.setVerify(!c.isVerify());
+			c.mkdirRecursive("/new/cached");
+			c.close();
+			// 下一个借用者得到默认设置，不使用之前的缓存
+			RemoteClient<?> next = borrow(pool);
+			assertSame(c, next);
+			assertFalse(next.isCacheEnabled());
+			assertEquals(Boolean.getBoolean(RemoteClient.VERIFY_PROPERTY), next.isVerify());
+			remoteGet("/new/cached").delete();
+			next.mkdirRecursive("/new/cached");
+			assertTrue(remoteGet("/new/cached").isDirectory());
+			next.close();
+		}
+	}
+
+	@Test
+	public void testPoolParallelismAboveMaxPerKey() throws IOException {
+		remoteFolder("new", "a");
+		for(int i = 0; i < 10; i++) {
+			remote("/new/a/" + i + ".txt", "file " + i);
+		}
+		// 并行度超过连接池上限时以较少的连接执行，不等待超时
+		try (RemoteClientPool pool = new RemoteClientPool(2, 60 * 1000L, 60 * 1000L)) {
+			RemoteClient<?> c = borrow(pool);
+			long start = System.currentTimeMillis();
+			c.mget("/new", localGet("download"), 8);
+			assertTrue(System.currentTimeMillis() - start < 30 * 1000L);
+			assertEquals("file 9", content(localGet("/download/new/a/9.txt")));
+			assertEquals(1, pool.getActiveCount(c.getPoolKey()));
+			c.close();
+		}
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		remote("hello.txt", "Hello World");
+		remoteFolder("async");
+		try (RemoteClientPool pool = new RemoteClientPool(4, 60 * 1000L, 60 * 1000L)) {
+			RemoteClient<?> c = borrow(pool);
+			try {
+				async(c, pool);
+			} finally {
+				c.close();
+			}
+		}
+	}
+
+	@Test
+	public void testAsyncMaxConnections() throws Exception {
+		remote("hello.txt", "Hello World");
+		RemoteClient<?> c = connect(0);
+		try {
+			asyncMaxConnections(c);
+		} finally {
+			c.close();
+		}
+	}
+
+	private <T> void asyncMaxConnections(RemoteClient<T> c) throws Exception {
+		Set<RemoteClient<T>> active = ConcurrentHashMap.newKeySet();
+		Set<RemoteClient<T>> used = ConcurrentHashMap.newKeySet();
+		AtomicInteger max = new AtomicInteger();
+		try (AsyncRemoteClient<T> async = new AsyncRemoteClient<T>(c, 16, 2)) {
+			List<CompletableFuture<Boolean>> calls = new ArrayList<CompletableFuture<Boolean>>();
+			for(int i = 0; i < 20; i++) {
+				calls.add(async.submit(r -> {
+					active.add(r);
+					used.add(r);
+					max.accumulateAndGet(active.size(), Math::max);
+					try {
+						Thread.sleep(20);
+						return r.exists("/hello.txt");
+					} catch (InterruptedException e) {
+						throw new IOException(e);
+					} finally {
+						active.remove(r);
+					}
+				}));
+			}
+			for(CompletableFuture<Boolean> call : calls) {
+				assertTrue(call.get());
+			}
+		}
+		// 16个线程同时提交，连接数不超过maxConnections
+		assertTrue(max.get() <= 2);
+		assertTrue(used.size() <= 2);
+	}
+
+	private <T> void async(RemoteClient<T> c, RemoteClientPool pool) throws Exception {
+		try (AsyncRemoteClient<T> async = new AsyncRemoteClient<T>(c, 16)) {
+			List<CompletableFuture<Void>> puts = new ArrayList<CompletableFuture<Void>>();
+			for(int i = 0; i < 20; i++) {
+				puts.add(async.put(local(i + ".txt", "file " + i), "/async"));
+			}
+			CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0])).join();
+			// 除调用方的连接外最多借出3个连接，不等待连接池超时
+			assertTrue(pool.getActiveCount(c.getPoolKey()) <= 4);
+
+			assertEquals(20, async.ls("/async").get().size());
+			assertEquals(6L, c.getSize(async.stat("/async/0.txt").get()));
+			assertNull(async.stat("/async/notexists.txt").get());
+
+			async.get("/hello.txt", localGet("hello.txt")).get();
+			assertEquals("Hello World", content(localGet("hello.txt")));
+
+			async.rm("/async/0.txt").get();
+			assertFalse(remoteGet("/async/0.txt").exists());
+
+			try {
+				async.rm("/").get();
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalArgumentException);
+			}
+		}
+		// 关闭后连接全部归还
+		assertEquals(1, pool.getActiveCount(c.getPoolKey()));
+	}
+
+	/**
+	 * 远程路径是否为目录
+	 * @param client 客户端
+	 * @param remotePath 远程路径
+	 * @return 是目录返回true，否则返回false
+	 */
+	private boolean isDir(RemoteClient<?> client, String remotePath) {
+		return isDirEntry(client, remotePath);
+	}
+
+	private static <T> boolean isDirEntry(RemoteClient<T> client, String remotePath) {
+		return client.isDir(client.stat(remotePath));
+	}
+
+	private static <T> void getByEntry(RemoteClient<T> client, String remotePath, File localFile) throws IOException {
+		client.get(client.stat(remotePath), remotePath, localFile);
+	}
+
+	private static <T> List<T> lsByEntry(RemoteClient<T> client, String remotePath) throws IOException {
+		return client.ls(client.stat(remotePath), remotePath, false);
+	}
+
+	private static <T> void rmByEntry(RemoteClient<T> client, String remotePath) throws IOException {
+		client.rm(client.stat(remotePath), remotePath);
+	}
+
+	private static <T> void rmdirByEntry(RemoteClient<T> client, String remotePath) throws IOException {
+		client.rmdir(client.stat(remotePath), remotePath);
+	}
+
+	private long count(Stream<?> stream) {
+		try(Stream<?> s = stream) {
+			return s.count();
+		}
+	}
+
+	/**
+	 * 测试过程中收集发布者发送的元素
+	 */
+	private static class TestSubscriber<T> implements RemoteFlow.Subscriber<T> {
+
+		private final List<T> items = new CopyOnWriteArrayList<T>();
+		/** 调用onNext的线程 */
+		private final Set<String> threads = ConcurrentHashMap.newKeySet();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile RemoteFlow.Subscription subscription;
+		private volatile Throwable error;
+
+		public void request(long n) {
+			subscription.request(n);
+		}
+
+		/**
+		 * 等待收到指定数量的元素或结束
+		 * @param n 元素数量
+		 */
+		public void await(int n) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + TIMEOUT;
+			while(items.size() < n && done.getCount() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+		}
+
+		/**
+		 * 等待结束
+		 * @return 已结束返回true，超时返回false
+		 */
+		public boolean awaitDone() throws InterruptedException {
+			return awaitDone(TIMEOUT);
+		}
+
+		/**
+		 * 等待结束
+		 * @param timeout 等待的毫秒数
+		 * @return 已结束返回true，超时返回false
+		 */
+		public boolean awaitDone(long timeout) throws InterruptedException {
+			return done.await(timeout, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void onSubscribe(RemoteFlow.Subscription subscription) { this.subscription = subscription; }
+		@Override
+		public void onNext(T item) {
+			threads.add(Thread.currentThread().getName());
+			items.add(item);
+		}
+		@Override
+		public void onError(Throwable throwable) {
+			this.error = throwable;
+			done.countDown();
+		}
+		@Override
+		public void onComplete() { done.countDown(); }
+	}
+
 	/**
 	 * 测试过程中收集Log4j打印的日志内容
 	 */
@@ -2,43 +2,27 @@ package com.my.project;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-import org.apache.sshd.common.NamedFactory;
-import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
-import org.apache.sshd.common.io.BuiltinIoServiceFactoryFactories;
-import org.apache.sshd.server.SshServer;
-import org.apache.sshd.server.auth.AsyncAuthException;
-import org.apache.sshd.server.auth.UserAuth;
-import org.apache.sshd.server.auth.password.PasswordAuthenticator;
-import org.apache.sshd.server.auth.password.PasswordChangeRequiredException;
-import org.apache.sshd.server.auth.password.UserAuthPasswordFactory;
-import org.apache.sshd.server.auth.pubkey.UserAuthPublicKeyFactory;
-import org.apache.sshd.server.config.keys.AuthorizedKeysAuthenticator;
-import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
-import org.apache.sshd.server.scp.ScpCommandFactory;
-import org.apache.sshd.server.session.ServerSession;
-import org.apache.sshd.server.subsystem.sftp.SftpSubsystemFactory;
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import com.jcraft.jsch.ChannelSftp.LsEntry;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpException;
 
-public class SftpClientTest extends RemoteClientTest<SshServer, SftpClient> {
+public class SftpClientTest extends RemoteClientTest<EmbeddedSftpServer, SftpClient> {
 
 	private static final String PRIVATE_KEY_FILE_NAME = "id_rsa";
 	private static final String PASSPHRASE = "123456";
@@ -51,6 +35,32 @@ public class SftpClientTest extends RemoteClientTest<SshServer, SftpClient> {
 		this.testStat(this.client);
 	}
 
+	@Test
+	public void testPutSegmented() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for(int i = 0; i < 20000; i++) {
+			content.append(i).append('\n');
+		}
+		File local = local("big.txt", content.toString());
+		client.put(local, "/new", 4);
+		assertEquals(content.toString(), content(remoteGet("/new/big.txt")));
+
+		// 覆盖已存在的远程文件
+		File abc = local("abc.txt", "abc");
+		remote("new/abc.txt", "Hello World");
+		client.put(abc, "/new", 8);
+		assertEquals("abc", content(remoteGet("/new/abc.txt")));
+	}
+
+	@Test
+	public void testCompressionNegotiated() throws IOException {
+		assertEquals(Arrays.asList("none"), server.getCompressions());
+		try (RemoteClient<?> compressed = connect(TransferCompression.DEFAULT_LEVEL)) {
+			assertTrue(server.getCompressions().contains("zlib@openssh.com"));
+			assertNotNull(compressed.ls("/"));
+		}
+	}
+
 	@Test
 	public void testStatByKeyAuthClient() throws IOException, SftpException, JSchException {
 		try {
@@ -85,41 +95,12 @@ public class SftpClientTest extends RemoteClientTest<SshServer, SftpClient> {
 
 	@Override
 	public void startServer() throws IOException {
-		this.server = SshServer.setUpDefaultServer();
-		this.server.setIoServiceFactoryFactory(BuiltinIoServiceFactoryFactories.NETTY.create());
-		this.server.setPort(0);
-		VirtualFileSystemFactory fileSystemFactory = new VirtualFileSystemFactory(this.serverRoot.getRoot().toPath());
-		fileSystemFactory.setUserHomeDir(USERNAME, this.serverRoot.getRoot().toPath());
-		this.server.setFileSystemFactory(fileSystemFactory);
-		this.server.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory.Builder().build()));
-		this.server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
-
-		List<NamedFactory<UserAuth>> userAuthFactories = new ArrayList<NamedFactory<UserAuth>>();
-		userAuthFactories.add(UserAuthPublicKeyFactory.INSTANCE);
-		userAuthFactories.add(UserAuthPasswordFactory.INSTANCE);
-		this.server.setUserAuthFactories(userAuthFactories);
-
-		this.server.setCommandFactory(new ScpCommandFactory());
-
+		this.server = new EmbeddedSftpServer(USERNAME, PASSWORD, this.serverRoot.getRoot());
 		try {
-			Path publicKeyFile = Paths.get(SftpClientTest.class.getClassLoader().getResource(PUBLIC_KEY_FILE_NAME).toURI());
-			this.server.setPublickeyAuthenticator(new AuthorizedKeysAuthenticator(publicKeyFile) {
-				@Override
-				protected boolean isValidUsername(String username, ServerSession session) {
-					return USERNAME.equals(username);
-				}
-			});
+			this.server.setAuthorizedKeys(Paths.get(SftpClientTest.class.getClassLoader().getResource(PUBLIC_KEY_FILE_NAME).toURI()));
 		} catch (URISyntaxException e) {
 			throw new IOException(e);
 		}
-
-		this.server.setPasswordAuthenticator(new PasswordAuthenticator() {
-			@Override
-			public boolean authenticate(String username, String password, ServerSession session)
-					throws PasswordChangeRequiredException, AsyncAuthException {
-				return USERNAME.equals(username) && PASSWORD.equals(password);
-			}
-		});
 		this.server.start();
 		this.localPort = this.server.getPort();
 		try {
@@ -141,6 +122,20 @@ public class SftpClientTest extends RemoteClientTest<SshServer, SftpClient> {
 		}
 	}
 
+	@Override
+	public RemoteClient<?> borrow(RemoteClientPool pool) throws IOException {
+		return pool.borrowSftpClient(HOSTNAME, this.localPort, USERNAME, PASSWORD, null, null, TIMEOUT, null, null);
+	}
+
+	@Override
+	public RemoteClient<?> connect(int compression) throws IOException {
+		try {
+			return new SftpClient(HOSTNAME, this.localPort, USERNAME, PASSWORD, null, null, TIMEOUT, null, null, compression);
+		} catch (JSchException | SftpException e) {
+			throw new IOException(e);
+		}
+	}
+
 	private String inputStreamToString(InputStream input) throws IOException {
 		try(
 			InputStream in = input;